@@ -0,0 +1,130 @@
+package controllers;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Replaces a file's contents so that after a crash the file holds either its old or its new contents,
+ * never a mix: the bytes go to a temporary file beside it, are forced to disk, the temporary file is then
+ * renamed over the original, and the directory is forced to disk so the rename itself survives a crash.
+ * Each write has a temporary file of its own, so several writers may replace the same file at once; the
+ * last rename wins. The temporary file is created as any new file would be, so the umask applies, and takes
+ * the permissions of the file it replaces, which the rename would otherwise lose.
+ */
+final class AtomicFile {
+
+    /**
+     * Writes a file's new contents.
+     */
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFile() {
+    }
+
+    /**
+     * Creates a new, empty temporary file beside the target, with a name no other write is using. Unlike
+     * {@link Files#createTempFile}, which makes a file only its owner can read, the file is created with the
+     * usual permissions for a new file, or the target's own permissions when the target exists.
+     *
+     * @param target the file to replace
+     * @return the temporary file to use while replacing it
+     * @throws IOException if the file cannot be created
+     */
+    static Path tempFile(Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp;
+        while (true) {
+            String unique = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+            try {
+                temp = Files.createFile(directory.resolve(target.getFileName() + "." + unique + ".tmp"));
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // another write picked the same name; pick again
+            }
+        }
+        try {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (NoSuchFileException | UnsupportedOperationException e) {
+            // a new target, or a file system without POSIX permissions: keep the defaults
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Replaces the target file's contents with the given bytes.
+     *
+     * @param target the file to replace (created if missing)
+     * @param bytes  the new contents
+     * @throws IOException if writing or renaming fails; the target is then left as it was
+     */
+    static void write(Path target, byte[] bytes) throws IOException {
+        write(target, out -> out.write(bytes));
+    }
+
+    /**
+     * Replaces the target file's contents with whatever the content writes, streamed through a buffer.
+     *
+     * @param target  the file to replace (created if missing)
+     * @param content writes the new contents
+     * @throws IOException if writing or renaming fails; the target is then left as it was
+     */
+    static void write(Path target, Content content) throws IOException {
+        Path temp = tempFile(target);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+                content.writeTo(out);
+                out.flush();
+                channel.force(true);
+            }
+            replace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Renames a finished temporary file over the target, atomically where the file system allows it.
+     */
+    static void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces a directory's entries to disk, e.g. a rename made in it. Skipped where a directory cannot be
+     * opened for this, as on Windows.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Loads a daycare on a background thread, so the caller can carry on (e.g. show a menu) in the meantime.
+ * <p>
+ * The daycare is ready once {@link #ready()} completes: it is then loaded and journaled exactly as
+ * {@link DayCare#open(String)} or {@link DayCare#load(String)} would have left it. Until then:
+ * <ul>
+ *     <li>{@link #progress()} reports how many dogs have been decoded so far, out of how many, and how quickly;</li>
+ *     <li>{@link #view()} gives a read-only daycare of the dogs decoded so far, for listings, searches and
+ *     counts that can make do with part of the daycare.</li>
+ * </ul>
+ * Snapshots are decoded one dog at a time. A partial view is only offered when the snapshot is the whole
+ * story, i.e. there is no diff or journaled change beside it that would change the dogs already decoded.
+ * XML files are loaded in one go, so their progress stays at 0 dogs until they are ready.
+ */
+public final class BackgroundLoad {
+
+    /**
+     * Number of dogs decoded between updates of the progress seen by other threads.
+     */
+    private static final int PUBLISH_EVERY = 256;
+
+    /**
+     * How far a load has got.
+     *
+     * @param loaded       dogs decoded so far
+     * @param total        dogs in the file, or -1 while not known
+     * @param elapsedNanos time since the load started, or that it took once finished
+     */
+    public record Progress(int loaded, int total, long elapsedNanos) {
+
+        /**
+         * @return dogs decoded per second
+         */
+        public double recordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : loaded * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            String of = total < 0 ? "" : String.format("/%d (%d%%)", total, total == 0 ? 100 : loaded * 100L / total);
+            return String.format("%d%s dogs loaded, %.0f records/s", loaded, of, recordsPerSecond());
+        }
+    }
+
+    private final CompletableFuture<DayCare> ready;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    /**
+     * The snapshot being decoded, once indexed, and the dogs decoded from it. Entries below {@link #loaded}
+     * are filled in before {@code loaded} is raised past them, so other threads may read them.
+     */
+    private volatile BinarySnapshot.Index index;
+    private Dog[] decoded = new Dog[0];
+    private volatile int loaded;
+
+    /**
+     * True once it is known that the dogs decoded from the snapshot are the daycare's dogs.
+     */
+    private volatile boolean viewable;
+
+    private BackgroundLoad(String fileName) {
+        ready = CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(fileName);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                endNanos = System.nanoTime();
+            }
+        }, task -> {
+            Thread thread = new Thread(task, "daycare-loader");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Starts loading the daycare as {@link DayCare#load()} would: from the snapshot file (daycare.dat),
+     * or from the XML file (daycare.xml) when there is no snapshot yet.
+     *
+     * @return the load under way
+     */
+    public static BackgroundLoad start() {
+        return start(Files.exists(Path.of(DayCare.SNAPSHOT_FILE_NAME)) ? DayCare.SNAPSHOT_FILE_NAME : DayCare.XML_FILE_NAME);
+    }
+
+    /**
+     * Starts loading the daycare from a file: a snapshot, opened with its journal as
+     * {@link DayCare#open(String)} would, for names ending in ".dat", or XML.
+     *
+     * @param fileName the file to load
+     * @return the load under way
+     */
+    public static BackgroundLoad start(String fileName) {
+        return new BackgroundLoad(fileName);
+    }
+
+    /**
+     * @return completes with the loaded daycare, or exceptionally if loading failed
+     */
+    public CompletableFuture<DayCare> ready() {
+        return ready;
+    }
+
+    /**
+     * @return true once the load has finished, successfully or not
+     */
+    public boolean isDone() {
+        return ready.isDone();
+    }
+
+    /**
+     * @return how far the load has got
+     */
+    public Progress progress() {
+        BinarySnapshot.Index snapshot = index;
+        long end = endNanos;
+        int count = loaded;
+        int total = snapshot == null ? -1 : snapshot.size();
+        DayCare done = ready.isCompletedExceptionally() ? null : ready.getNow(null);
+        if (done != null && snapshot == null) {
+            // an XML file: its dogs are only counted once it is loaded
+            count = total = done.numberOfDogs();
+        }
+        return new Progress(count, total, (end != 0 ? end : System.nanoTime()) - startNanos);
+    }
+
+    /**
+     * Returns a daycare of the dogs loaded so far, for reading while the load goes on. It holds copies of the
+     * dogs and their owners and is not saved anywhere, so it should only be read: changes made to it are not
+     * kept.
+     *
+     * @return the partial daycare, or null when none can be offered (see the class comment) or the load
+     * has finished
+     */
+    public DayCare view() {
+        if (!viewable || ready.isDone()) return null;
+        BinarySnapshot.Index snapshot = index;
+        int count = loaded;
+        ArrayList<Dog> dogs = new ArrayList<>(count);
+        IdentityHashMap<Owner, Owner> owners = new IdentityHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Dog copy = new Dog(decoded[i]);
+            // the view indexes its owners, so it must not share those the loaded daycare will index
+            copy.getOwners().replaceAll(owner -> owners.computeIfAbsent(owner, Owner::new));
+            dogs.add(copy);
+        }
+        DayCare view = new DayCare();
+        view.restore(snapshot.name, snapshot.maxNumberOfDogs, dogs, snapshot.dogAutoID, snapshot.ownerAutoID);
+        return view;
+    }
+
+    /**
+     * Loads the daycare, on the loader thread.
+     */
+    private DayCare load(String fileName) throws Exception {
+        DayCare dayCare = new DayCare();
+        if (DayCare.FileFormat.forFile(fileName) != DayCare.FileFormat.BINARY) {
+            dayCare.load(fileName);
+            return dayCare;
+        }
+
+        Path snapshot = Path.of(fileName).toAbsolutePath().normalize();
+        BinarySnapshot.Index read = BinarySnapshot.index(snapshot);
+        decoded = new Dog[read.size()];
+        index = read;
+        viewable = !MutationJournal.hasRecords(snapshot, read.generation)
+                && !Files.exists(SnapshotDelta.fileFor(snapshot));
+
+        for (int i = 0; i < decoded.length; i++) {
+            try {
+                decoded[i] = read.dog(i);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt daycare snapshot: " + snapshot, e);
+            }
+            if ((i + 1) % PUBLISH_EVERY == 0) loaded = i + 1;
+        }
+        loaded = decoded.length;
+
+        dayCare.open(snapshot, new BinarySnapshot.Contents(read.name, read.maxNumberOfDogs, read.dogAutoID,
+                read.ownerAutoID, read.generation, new ArrayList<>(Arrays.asList(decoded))));
+        viewable = false;
+        return dayCare;
+    }
+}
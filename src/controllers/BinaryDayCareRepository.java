@@ -0,0 +1,50 @@
+package controllers;
+
+import models.Dog;
+
+import java.nio.file.Path;
+
+/**
+ * Keeps a daycare in a binary snapshot file. Loading opens the snapshot with its journal (see
+ * {@link DayCare#open(String)}), so a change to one dog is stored by appending it to the journal; a daycare
+ * not journaled to this file is written as a whole snapshot instead.
+ */
+public final class BinaryDayCareRepository implements DayCareRepository {
+
+    private final Path file;
+
+    /**
+     * @param file the snapshot file
+     */
+    public BinaryDayCareRepository(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void load(DayCare dayCare) throws Exception {
+        dayCare.open(file.toString());
+    }
+
+    @Override
+    public void save(DayCare dayCare) throws Exception {
+        dayCare.save(file.toString(), DayCare.FileFormat.BINARY);
+    }
+
+    @Override
+    public void upsert(DayCare dayCare, Dog dog) throws Exception {
+        storeChange(dayCare);
+    }
+
+    @Override
+    public void delete(DayCare dayCare, int dogID) throws Exception {
+        storeChange(dayCare);
+    }
+
+    private void storeChange(DayCare dayCare) throws Exception {
+        if (dayCare.isJournaledTo(file)) {
+            dayCare.save();
+        } else {
+            save(dayCare);
+        }
+    }
+}
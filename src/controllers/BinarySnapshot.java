@@ -0,0 +1,402 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Compact binary snapshot of a daycare, much quicker to read than XML.
+ * <p>
+ * Layout (big-endian), version 2:
+ * <pre>
+ *     int    magic "DCSB"
+ *     short  version
+ *     int    string count, then per string: int byte length, UTF-8 bytes
+ *     record daycare:  int nameRef, int maxNumberOfDogs, int dogAutoID, int ownerAutoID,
+ *            long generation (of the journal, see {@link MutationJournal}; 0 when missing)
+ *     int    owner count, then per owner a record: int id, int nameRef, int phoneRef
+ *     int    dog count, then per dog a record:
+ *            int id, int nameRef, int breedRef, byte flags (1 = dangerous, 2 = neutered), byte age,
+ *            byte sex, byte kennelDays (bit 0 = Monday), short owner count,
+ *            then per owner: int owner id
+ * </pre>
+ * Every record starts with its length in bytes, so a reader can skip fields added by later versions of the
+ * same major format. Names, breeds and phone numbers are held once in the string table and referred to by
+ * position. Each owner is held once in the owner table, however many dogs they have, and the dogs decoded
+ * from one snapshot share one {@link Owner} per owner. Version 1 snapshots, which have no owner table and
+ * hold {@code int id, int nameRef, int phoneRef} per owner of each dog, are still read.
+ * <p>
+ * Snapshots are read through a memory-mapped file, either in full or as an {@link Index} whose dogs are
+ * decoded on demand. A snapshot written with a {@link Compression} is decompressed into memory first.
+ */
+final class BinarySnapshot {
+
+    static final int MAGIC = 0x44435342;
+    static final short VERSION = 2;
+
+    /**
+     * The first version with an owner table.
+     */
+    private static final short OWNER_TABLE_VERSION = 2;
+
+    private static final int DANGEROUS_FLAG = 1;
+    private static final int NEUTERED_FLAG = 2;
+
+    /**
+     * The saved fields of a daycare, as read from a snapshot.
+     */
+    record Contents(String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID, long generation,
+                    ArrayList<Dog> dogs) {
+    }
+
+    private BinarySnapshot() {
+    }
+
+    //-------------------------------------
+    //  Writing
+    //-------------------------------------
+
+    /**
+     * @return a snapshot of the given daycare fields and dogs
+     */
+    static byte[] toBytes(String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID,
+                          long generation, List<Dog> dogs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(bytes, name, maxNumberOfDogs, dogAutoID, ownerAutoID, generation, dogs);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a snapshot of the given daycare fields and dogs to a stream, leaving the stream open.
+     *
+     * @throws IOException if writing fails
+     */
+    static void write(OutputStream stream, String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID,
+                      long generation, List<Dog> dogs) throws IOException {
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        LinkedHashMap<Integer, Owner> owners = new LinkedHashMap<>();
+        intern(strings, name);
+        for (Dog dog : dogs) {
+            intern(strings, dog.getName());
+            intern(strings, dog.getBreed());
+            for (Owner owner : dog.getOwners()) {
+                if (owners.putIfAbsent(owner.getId(), owner) == null) {
+                    intern(strings, owner.getName());
+                    intern(strings, owner.getPhoneNumber());
+                }
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(buffer);
+
+        record.writeInt(intern(strings, name));
+        record.writeInt(maxNumberOfDogs);
+        record.writeInt(dogAutoID);
+        record.writeInt(ownerAutoID);
+        record.writeLong(generation);
+        writeRecord(out, buffer);
+
+        out.writeInt(owners.size());
+        for (Owner owner : owners.values()) {
+            record.writeInt(owner.getId());
+            record.writeInt(intern(strings, owner.getName()));
+            record.writeInt(intern(strings, owner.getPhoneNumber()));
+            writeRecord(out, buffer);
+        }
+
+        out.writeInt(dogs.size());
+        for (Dog dog : dogs) {
+            record.writeInt(dog.getId());
+            record.writeInt(intern(strings, dog.getName()));
+            record.writeInt(intern(strings, dog.getBreed()));
+            record.writeByte((dog.isDangerousBreed() ? DANGEROUS_FLAG : 0) | (dog.isNeutered() ? NEUTERED_FLAG : 0));
+            record.writeByte(dog.getAge());
+            record.writeByte(dog.getSex());
+            record.writeByte(dog.getKennelDays());
+            record.writeShort(dog.getOwners().size());
+            for (Owner owner : dog.getOwners()) {
+                record.writeInt(owner.getId());
+            }
+            writeRecord(out, buffer);
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the string's position in the table, adding it if it is new (null is stored as "")
+     */
+    private static int intern(LinkedHashMap<String, Integer> strings, String string) {
+        return strings.computeIfAbsent(string == null ? "" : string, k -> strings.size());
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteArrayOutputStream buffer) throws IOException {
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+        buffer.reset();
+    }
+
+    //-------------------------------------
+    //  Reading
+    //-------------------------------------
+
+    /**
+     * Reads a snapshot through a memory-mapped view of the file.
+     *
+     * @param file the snapshot file
+     * @return the daycare fields and dogs held in it
+     * @throws IOException if the file cannot be read or is not a supported snapshot
+     */
+    static Contents read(Path file) throws IOException {
+        Index index = index(file);
+        try {
+            return contents(index);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt daycare snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Reads a snapshot held in a buffer, from its position to its limit, e.g. one embedded in another file.
+     *
+     * @param buffer the snapshot's bytes
+     * @return the daycare fields and dogs held in it
+     * @throws IOException if the bytes are not a supported snapshot
+     */
+    static Contents read(ByteBuffer buffer) throws IOException {
+        try {
+            return contents(new Index(buffer.slice()));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt daycare snapshot", e);
+        }
+    }
+
+    private static Contents contents(Index index) {
+        ArrayList<Dog> dogs = new ArrayList<>(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            dogs.add(index.dog(i));
+        }
+        return new Contents(index.name, index.maxNumberOfDogs, index.dogAutoID, index.ownerAutoID,
+                index.generation, dogs);
+    }
+
+    /**
+     * Reads only the snapshot's header and the fixed fields of each dog record, through a memory-mapped view
+     * of the file. Strings and whole dogs are decoded from the mapped file when asked for.
+     *
+     * @param file the snapshot file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not a supported snapshot
+     */
+    static Index index(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Index(Compression.decode(buffer));
+        } catch (RuntimeException e) {
+            // a truncated or corrupt file shows up as a BufferUnderflowException or bad position
+            throw new IOException("Corrupt daycare snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Lightweight index of a snapshot: the daycare's fields and, per dog, its ID, name, flags, attendance and
+     * the offset of its record. Building it costs one pass over the fixed-size fields; names, breeds and
+     * owners are decoded from the mapped file on demand.
+     */
+    static final class Index {
+
+        final String name;
+        final int maxNumberOfDogs;
+        final int dogAutoID;
+        final int ownerAutoID;
+        final long generation;
+
+        private final ByteBuffer buffer;
+        private final short version;
+        private final int[] stringOffsets;
+        private final String[] strings;
+
+        /**
+         * Owner table, by owner ID: the offset of each owner's record, and the owner once decoded.
+         */
+        private final HashMap<Integer, Integer> ownerOffsets = new HashMap<>();
+        private final HashMap<Integer, Owner> owners = new HashMap<>();
+
+        private final int[] ids;
+        private final int[] nameRefs;
+        private final byte[] flags;
+        private final byte[] kennelDays;
+        private final int[] offsets;
+
+        private Index(ByteBuffer in) throws IOException {
+            buffer = in;
+            if (in.remaining() < Integer.BYTES + Short.BYTES || in.getInt() != MAGIC) {
+                throw new IOException("Not a daycare snapshot");
+            }
+            version = in.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported daycare snapshot version " + version);
+            }
+
+            stringOffsets = new int[in.getInt()];
+            strings = new String[stringOffsets.length];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = in.position();
+                in.position(in.getInt() + in.position());
+            }
+
+            int end = in.getInt() + in.position();
+            name = string(in.getInt());
+            maxNumberOfDogs = in.getInt();
+            dogAutoID = in.getInt();
+            ownerAutoID = in.getInt();
+            generation = in.position() < end ? in.getLong() : 0;
+            in.position(end);
+
+            if (version >= OWNER_TABLE_VERSION) {
+                for (int ownerCount = in.getInt(); ownerCount > 0; ownerCount--) {
+                    end = in.getInt() + in.position();
+                    ownerOffsets.put(in.getInt(in.position()), in.position());
+                    in.position(end);
+                }
+            }
+
+            int dogCount = in.getInt();
+            ids = new int[dogCount];
+            nameRefs = new int[dogCount];
+            flags = new byte[dogCount];
+            kennelDays = new byte[dogCount];
+            offsets = new int[dogCount];
+            for (int i = 0; i < dogCount; i++) {
+                end = in.getInt() + in.position();
+                offsets[i] = in.position();
+                ids[i] = in.getInt();
+                nameRefs[i] = in.getInt();
+                in.getInt();
+                flags[i] = in.get();
+                in.get();
+                in.get();
+                kennelDays[i] = in.get();
+                in.position(end);
+            }
+        }
+
+        /**
+         * @return number of dogs in the snapshot
+         */
+        int size() {
+            return ids.length;
+        }
+
+        int id(int index) {
+            return ids[index];
+        }
+
+        String name(int index) {
+            return string(nameRefs[index]);
+        }
+
+        boolean isDangerous(int index) {
+            return (flags[index] & DANGEROUS_FLAG) != 0;
+        }
+
+        boolean isNeutered(int index) {
+            return (flags[index] & NEUTERED_FLAG) != 0;
+        }
+
+        int kennelDays(int index) {
+            return kennelDays[index];
+        }
+
+        /**
+         * Decodes the dog at the given position, with its owners. Each call returns a new dog.
+         */
+        Dog dog(int index) {
+            ByteBuffer in = buffer.duplicate();
+            in.position(offsets[index]);
+            int id = in.getInt();
+            String dogName = string(in.getInt());
+            String breed = string(in.getInt());
+            int dogFlags = in.get();
+            int age = in.get();
+            char sex = (char) in.get();
+            int days = in.get();
+
+            ArrayList<Owner> dogOwners = new ArrayList<>();
+            for (int ownerCount = in.getShort() & 0xFFFF; ownerCount > 0; ownerCount--) {
+                if (version >= OWNER_TABLE_VERSION) {
+                    dogOwners.add(owner(in.getInt()));
+                } else {
+                    dogOwners.add(new Owner(in.getInt(), string(in.getInt()), string(in.getInt())));
+                }
+            }
+
+            Dog dog = new Dog(id, dogName, breed, (dogFlags & DANGEROUS_FLAG) != 0, age, sex,
+                    (dogFlags & NEUTERED_FLAG) != 0, dogOwners);
+            dog.setKennelDays(days);
+            return dog;
+        }
+
+        /**
+         * @return the owner with the given ID from the owner table, decoded the first time it is asked for
+         */
+        private Owner owner(int id) {
+            Owner owner = owners.get(id);
+            if (owner == null) {
+                Integer offset = ownerOffsets.get(id);
+                if (offset == null) {
+                    throw new IllegalStateException("Dog refers to owner " + id + ", who is not in the owner table");
+                }
+                owner = new Owner(id, string(buffer.getInt(offset + Integer.BYTES)),
+                        string(buffer.getInt(offset + 2 * Integer.BYTES)));
+                owners.put(id, owner);
+            }
+            return owner;
+        }
+
+        /**
+         * @return the string at the given position of the table, decoded the first time it is asked for
+         */
+        private String string(int ref) {
+            String string = strings[ref];
+            if (string == null) {
+                int offset = stringOffsets[ref];
+                byte[] bytes = new byte[buffer.getInt(offset)];
+                buffer.get(offset + Integer.BYTES, bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+                strings[ref] = string;
+            }
+            return string;
+        }
+    }
+}
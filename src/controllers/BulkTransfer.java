@@ -0,0 +1,879 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import utils.Helper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports dogs into a daycare from CSV or JSON files and exports them to either, streaming the records so a
+ * file is read or written in one pass whatever its size.
+ * <p>
+ * Every record read is checked with the same {@link Helper} rules the models apply, but a record that breaks
+ * one is rejected rather than corrected: it is written to an error file, with its line number and the reason,
+ * and the import carries on. So are records that cannot be parsed, dogs whose ID is already taken and dogs
+ * beyond the daycare's limit. Valid dogs are added in batches through {@link DayCare#addDogs(List)}. Files
+ * to import may be compressed with any {@link Compression}.
+ * <p>
+ * CSV files have a header line, then one dog per line:
+ * <pre>
+ *     id,name,breed,dangerous,age,sex,neutered,days,owner id,owner name,owner phone
+ *     1001,Rex,Boxer,N,3,M,Y,YNYNN,101,Ann Murphy,0871234567
+ * </pre>
+ * {@code dangerous} and {@code neutered} are Y or N, {@code days} is a Y or N for each weekday from Monday,
+ * and each further owner adds three more fields. Fields holding commas, quotes or line breaks are quoted as
+ * in RFC 4180.
+ * <p>
+ * JSON files hold an array of dogs:
+ * <pre>
+ *     [{"id":1001,"name":"Rex","breed":"Boxer","dangerous":false,"age":3,"sex":"M","neutered":true,
+ *       "days":"YNYNN","owners":[{"id":101,"name":"Ann Murphy","phone":"0871234567"}]}]
+ * </pre>
+ */
+public final class BulkTransfer {
+
+    public static final int DEFAULT_BATCH_SIZE = 512;
+
+    /**
+     * The dog fields of a record, in CSV column order and by JSON key.
+     */
+    static final String[] DOG_FIELDS = {"id", "name", "breed", "dangerous", "age", "sex", "neutered", "days"};
+
+    /**
+     * The fields of each owner of a record.
+     */
+    static final String[] OWNER_FIELDS = {"id", "name", "phone"};
+
+    private static final String CSV_HEADER =
+            "id,name,breed,dangerous,age,sex,neutered,days,owner id,owner name,owner phone";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The file formats dogs are imported from and exported to.
+     */
+    public enum Format {
+        CSV, JSON;
+
+        /**
+         * @return the format of a file, from its extension (a compressed file may end in another one, such
+         * as {@code dogs.csv.gz})
+         * @throws IllegalArgumentException if the file is neither CSV nor JSON
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".json") || name.contains(".json.")) return JSON;
+            if (name.endsWith(".csv") || name.contains(".csv.")) return CSV;
+            throw new IllegalArgumentException("Not a CSV or JSON file: " + file);
+        }
+    }
+
+    /**
+     * What an import or export did and how quickly.
+     *
+     * @param records      dogs imported or exported
+     * @param rejected     records rejected to the error file
+     * @param elapsedNanos time taken
+     */
+    public record Report(int records, int rejected, long elapsedNanos) {
+
+        /**
+         * @return records read or written per second, rejected ones included
+         */
+        public double recordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : (records + rejected) * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d dogs, %d rejected, in %.1f ms (%.0f records/s)",
+                    records, rejected, elapsedNanos / 1e6, recordsPerSecond());
+        }
+    }
+
+    /**
+     * One record read from a file: the dog's fields and each owner's, as text, or why it could not be parsed.
+     *
+     * @param line   line the record starts on
+     * @param text   the record as it appears in the file
+     * @param fields the dog's fields, in {@link #DOG_FIELDS} order; a missing field is null
+     * @param owners each owner's fields, in {@link #OWNER_FIELDS} order
+     * @param error  why the record could not be parsed, or null
+     */
+    record Row(int line, String text, String[] fields, List<String[]> owners, String error) {
+
+        static Row malformed(int line, String text, String error) {
+            return new Row(line, text, null, null, error);
+        }
+    }
+
+    /**
+     * A record that breaks one of the rules.
+     */
+    static final class RejectedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RejectedException(String reason) {
+            super(reason);
+        }
+    }
+
+    /**
+     * Reads records one at a time.
+     */
+    private interface RowReader {
+        /**
+         * @return the next record, or null at the end of the file
+         */
+        Row next() throws IOException;
+    }
+
+    private final DayCare dayCare;
+    private final int batchSize;
+
+    /**
+     * @param dayCare the daycare dogs are imported into and exported from
+     */
+    public BulkTransfer(DayCare dayCare) {
+        this(dayCare, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param dayCare   the daycare dogs are imported into and exported from
+     * @param batchSize number of valid dogs added to the daycare at a time
+     */
+    public BulkTransfer(DayCare dayCare, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        this.dayCare = dayCare;
+        this.batchSize = batchSize;
+    }
+
+    //-------------------------------------
+    //  Import
+    //-------------------------------------
+
+    /**
+     * Imports the dogs in a file, in the format its extension names.
+     *
+     * @see #importFile(Path, Format, Path)
+     */
+    public Report importFile(Path source, Path errors) throws IOException {
+        return importFile(source, Format.of(source), errors);
+    }
+
+    /**
+     * Adds the dogs in a file to the daycare, after those it has, writing each record rejected to an error
+     * file. The error file is replaced even when nothing is rejected.
+     *
+     * @param source the file read
+     * @param format the file's format
+     * @param errors the error file
+     * @return the number of dogs added and records rejected
+     * @throws IOException if a file cannot be read or written, or the file is not one of dogs at all (a CSV
+     *                     file without the header, or JSON that is not an array); dogs added before the
+     *                     failure are kept
+     */
+    public Report importFile(Path source, Format format, Path errors) throws IOException {
+        long start = System.nanoTime();
+        int records = 0;
+        int rejected = 0;
+        HashSet<Integer> importedIDs = new HashSet<>();
+        ArrayList<Dog> batch = new ArrayList<>(batchSize);
+
+        try (Reader in = new InputStreamReader(Compression.decode(Files.newInputStream(source)), StandardCharsets.UTF_8);
+             Writer errorOut = Files.newBufferedWriter(errors, StandardCharsets.UTF_8)) {
+            RowReader reader = format == Format.CSV ? new CsvReader(in) : new JsonReader(in);
+            for (Row row = reader.next(); row != null; row = reader.next()) {
+                try {
+                    if (row.error() != null) throw new RejectedException(row.error());
+                    Dog dog = toDog(row);
+                    if (importedIDs.contains(dog.getId()) || dayCare.getDogByID(dog.getId()) != null) {
+                        throw new RejectedException("dog ID " + dog.getId() + " is already taken");
+                    }
+                    if (dayCare.numberOfDogs() + batch.size() >= dayCare.getMaxNumberOfDogs()) {
+                        throw new RejectedException("the daycare is full (" + dayCare.getMaxNumberOfDogs() + " dogs)");
+                    }
+                    importedIDs.add(dog.getId());
+                    batch.add(dog);
+                    if (batch.size() == batchSize) {
+                        records += dayCare.addDogs(batch);
+                        batch.clear();
+                    }
+                } catch (RejectedException e) {
+                    writeError(errorOut, row, e.getMessage());
+                    rejected++;
+                }
+            }
+        } finally {
+            records += dayCare.addDogs(batch);
+        }
+        return new Report(records, rejected, System.nanoTime() - start);
+    }
+
+    private static void writeError(Writer out, Row row, String reason) throws IOException {
+        out.write("line ");
+        out.write(Integer.toString(row.line()));
+        out.write(": ");
+        out.write(reason);
+        out.write(": ");
+        out.write(row.text().strip().replaceAll("\\s*[\r\n]+\\s*", " "));
+        out.write(System.lineSeparator());
+    }
+
+    //-------------------------------------
+    //  Validation
+    //-------------------------------------
+
+    /**
+     * @return the dog a record describes
+     * @throws RejectedException if a field is missing or breaks the rules for it
+     */
+    static Dog toDog(Row row) throws RejectedException {
+        String[] fields = row.fields();
+        int id = number(fields[0], "id", 1000, 9999);
+        String name = text(fields[1], "name", 20);
+        String breed = text(fields[2], "breed", Integer.MAX_VALUE);
+        boolean dangerous = yesNo(fields[3], "dangerous");
+        int age = number(fields[4], "age", 0, 20);
+        char sex = sex(fields[5]);
+        boolean neutered = yesNo(fields[6], "neutered");
+        int kennelDays = days(fields[7]);
+
+        ArrayList<Owner> owners = new ArrayList<>(row.owners().size());
+        HashSet<Integer> ownerIDs = new HashSet<>();
+        for (String[] owner : row.owners()) {
+            int ownerID = number(owner[0], "owner id", 100, 999);
+            if (!ownerIDs.add(ownerID)) throw new RejectedException("owner " + ownerID + " is listed twice");
+            String ownerName = text(owner[1], "owner name", 30);
+            String phone = present(owner[2], "owner phone");
+            if (!Helper.onlyContainsNumbers(phone) || !Helper.validateStringLength(phone, 10)) {
+                throw new RejectedException("owner phone must be up to 10 digits: " + phone);
+            }
+            owners.add(new Owner(ownerID, ownerName, phone));
+        }
+
+        Dog dog = new Dog(id, name, breed, dangerous, age, sex, neutered, owners);
+        dog.setKennelDays(kennelDays);
+        return dog;
+    }
+
+    private static String present(String value, String field) throws RejectedException {
+        if (value == null || value.isBlank()) throw new RejectedException(field + " is missing");
+        return value.strip();
+    }
+
+    private static int number(String value, String field, int min, int max) throws RejectedException {
+        String digits = present(value, field);
+        if (!Helper.onlyContainsNumbers(digits) || digits.length() > 9
+                || !Helper.validRange(Integer.parseInt(digits), min, max)) {
+            throw new RejectedException(field + " must be a whole number from " + min + " to " + max + ": " + digits);
+        }
+        return Integer.parseInt(digits);
+    }
+
+    private static String text(String value, String field, int maxLength) throws RejectedException {
+        String text = present(value, field);
+        if (!Helper.validateStringLength(text, maxLength)) {
+            throw new RejectedException(field + " must be at most " + maxLength + " characters: " + text);
+        }
+        return text;
+    }
+
+    private static boolean yesNo(String value, String field) throws RejectedException {
+        String flag = present(value, field);
+        if (flag.length() != 1 || "YyNn".indexOf(flag.charAt(0)) < 0) {
+            throw new RejectedException(field + " must be Y or N: " + flag);
+        }
+        return Helper.YNtoBoolean(flag.charAt(0));
+    }
+
+    private static char sex(String value) throws RejectedException {
+        String sex = present(value, "sex");
+        if (sex.length() != 1 || !Helper.MFSexCheck(Character.toUpperCase(sex.charAt(0)))) {
+            throw new RejectedException("sex must be M or F: " + sex);
+        }
+        return Character.toUpperCase(sex.charAt(0));
+    }
+
+    private static int days(String value) throws RejectedException {
+        String days = present(value, "days");
+        if (days.length() != Dog.DAYS_IN_WEEK) {
+            throw new RejectedException("days must be a Y or N for each of the " + Dog.DAYS_IN_WEEK + " weekdays: " + days);
+        }
+        int kennelDays = 0;
+        for (int day = 0; day < Dog.DAYS_IN_WEEK; day++) {
+            if (yesNo(days.substring(day, day + 1), "days")) kennelDays |= 1 << day;
+        }
+        return kennelDays;
+    }
+
+    //-------------------------------------
+    //  Export
+    //-------------------------------------
+
+    /**
+     * Exports the daycare's dogs to a file, in the format its extension names.
+     *
+     * @see #exportFile(Path, Format)
+     */
+    public Report exportFile(Path target) throws IOException {
+        return exportFile(target, Format.of(target));
+    }
+
+    /**
+     * Replaces a file with the daycare's dogs, in order. The file is written whole or not at all.
+     *
+     * @param target the file written
+     * @param format the file's format
+     * @return the number of dogs written
+     * @throws IOException if writing fails
+     */
+    public Report exportFile(Path target, Format format) throws IOException {
+        long start = System.nanoTime();
+        ArrayList<Dog> dogs = dayCare.getDogsArray();
+        AtomicFile.write(target, stream -> {
+            Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+            if (format == Format.CSV) {
+                writeCsv(out, dogs);
+            } else {
+                writeJson(out, dogs);
+            }
+            out.flush();
+        });
+        return new Report(dogs.size(), 0, System.nanoTime() - start);
+    }
+
+    private static void writeCsv(Writer out, List<Dog> dogs) throws IOException {
+        out.write(CSV_HEADER);
+        out.write('\n');
+        for (Dog dog : dogs) {
+            out.write(Integer.toString(dog.getId()));
+            writeCsvField(out, dog.getName());
+            writeCsvField(out, dog.getBreed());
+            writeCsvField(out, String.valueOf(Helper.booleanToYN(dog.isDangerousBreed())));
+            writeCsvField(out, Integer.toString(dog.getAge()));
+            writeCsvField(out, String.valueOf(dog.getSex()));
+            writeCsvField(out, String.valueOf(Helper.booleanToYN(dog.isNeutered())));
+            writeCsvField(out, daysOf(dog));
+            for (Owner owner : dog.getOwners()) {
+                writeCsvField(out, Integer.toString(owner.getId()));
+                writeCsvField(out, owner.getName());
+                writeCsvField(out, owner.getPhoneNumber());
+            }
+            out.write('\n');
+        }
+    }
+
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        out.write(',');
+        if (value == null) return;
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+        } else {
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    private static void writeJson(Writer out, List<Dog> dogs) throws IOException {
+        out.write('[');
+        for (int i = 0; i < dogs.size(); i++) {
+            Dog dog = dogs.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("{\"id\":" + dog.getId() + ",\"name\":");
+            writeJsonString(out, dog.getName());
+            out.write(",\"breed\":");
+            writeJsonString(out, dog.getBreed());
+            out.write(",\"dangerous\":" + dog.isDangerousBreed() + ",\"age\":" + dog.getAge() + ",\"sex\":");
+            writeJsonString(out, String.valueOf(dog.getSex()));
+            out.write(",\"neutered\":" + dog.isNeutered() + ",\"days\":\"" + daysOf(dog) + "\",\"owners\":[");
+            ArrayList<Owner> owners = dog.getOwners();
+            for (int j = 0; j < owners.size(); j++) {
+                Owner owner = owners.get(j);
+                out.write(j == 0 ? "{\"id\":" : ",{\"id\":");
+                out.write(Integer.toString(owner.getId()));
+                out.write(",\"name\":");
+                writeJsonString(out, owner.getName());
+                out.write(",\"phone\":");
+                writeJsonString(out, owner.getPhoneNumber());
+                out.write('}');
+            }
+            out.write("]}");
+        }
+        out.write("\n]\n");
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    private static String daysOf(Dog dog) {
+        char[] days = new char[Dog.DAYS_IN_WEEK];
+        for (int day = 0; day < days.length; day++) {
+            days[day] = Helper.booleanToYN(dog.isInKennel(day));
+        }
+        return new String(days);
+    }
+
+    //-------------------------------------
+    //  Parsing
+    //-------------------------------------
+
+    /**
+     * Buffered characters of a file, counting lines and keeping a copy of the text of the record being read.
+     */
+    private static final class Text {
+
+        private final Reader in;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private int line = 1;
+        private StringBuilder record;
+
+        Text(Reader in) {
+            this.in = in;
+        }
+
+        int peek() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+
+        int read() throws IOException {
+            int c = peek();
+            if (c < 0) return -1;
+            position++;
+            if (c == '\n') line++;
+            if (record != null) record.append((char) c);
+            return c;
+        }
+
+        int line() {
+            return line;
+        }
+
+        /**
+         * Starts copying the characters read, for the record about to be read.
+         */
+        void startRecord() {
+            record = new StringBuilder();
+        }
+
+        /**
+         * @return the characters read since {@link #startRecord()}
+         */
+        String endRecord() {
+            String text = record.toString();
+            record = null;
+            return text;
+        }
+    }
+
+    /**
+     * Reads RFC 4180 records, after checking the header.
+     */
+    private static final class CsvReader implements RowReader {
+
+        private final Text text;
+
+        CsvReader(Reader in) throws IOException {
+            text = new Text(in);
+            text.startRecord();
+            readLine();
+            String header = text.endRecord().strip();
+            if (!header.toLowerCase(Locale.ROOT).startsWith(String.join(",", DOG_FIELDS))) {
+                throw new IOException("Not a CSV file of dogs, the header should be: " + CSV_HEADER);
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            int c = text.peek();
+            while (c == '\n' || c == '\r') {
+                text.read();
+                c = text.peek();
+            }
+            if (c < 0) return null;
+
+            int line = text.line();
+            text.startRecord();
+            ArrayList<String> fields = new ArrayList<>(DOG_FIELDS.length + OWNER_FIELDS.length);
+            String error = readFields(fields);
+            String record = text.endRecord();
+            if (error != null) return Row.malformed(line, record, error);
+
+            int owners = fields.size() - DOG_FIELDS.length;
+            if (owners < 0 || owners % OWNER_FIELDS.length != 0) {
+                return Row.malformed(line, record, "expected " + DOG_FIELDS.length + " fields and "
+                        + OWNER_FIELDS.length + " for each owner, found " + fields.size());
+            }
+            ArrayList<String[]> ownerFields = new ArrayList<>(owners / OWNER_FIELDS.length);
+            for (int at = DOG_FIELDS.length; at < fields.size(); at += OWNER_FIELDS.length) {
+                ownerFields.add(fields.subList(at, at + OWNER_FIELDS.length).toArray(new String[0]));
+            }
+            return new Row(line, record, fields.subList(0, DOG_FIELDS.length).toArray(new String[0]), ownerFields, null);
+        }
+
+        /**
+         * Reads the fields of one record, up to and including its line break.
+         *
+         * @return why the record is malformed, or null; the rest of a malformed line is skipped
+         */
+        private String readFields(ArrayList<String> fields) throws IOException {
+            StringBuilder field = new StringBuilder();
+            boolean inQuotes = false;
+            boolean quoted = false;
+            while (true) {
+                int c = text.read();
+                if (inQuotes) {
+                    if (c < 0) return "a quoted field is not closed";
+                    if (c != '"') {
+                        field.append((char) c);
+                    } else if (text.peek() == '"') {
+                        field.append((char) text.read());
+                    } else {
+                        inQuotes = false;
+                    }
+                } else if (c < 0 || c == '\n' || c == '\r') {
+                    if (c == '\r' && text.peek() == '\n') text.read();
+                    fields.add(field.toString());
+                    return null;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    quoted = false;
+                } else if (quoted) {
+                    readLine();
+                    return "text after the closing quote of a field";
+                } else if (c == '"') {
+                    if (field.length() > 0) {
+                        readLine();
+                        return "a quote inside a field that is not quoted";
+                    }
+                    inQuotes = true;
+                    quoted = true;
+                } else {
+                    field.append((char) c);
+                }
+            }
+        }
+
+        /**
+         * Skips to the start of the next line.
+         */
+        private void readLine() throws IOException {
+            int c;
+            do {
+                c = text.read();
+            } while (c >= 0 && c != '\n' && c != '\r');
+            if (c == '\r' && text.peek() == '\n') text.read();
+        }
+    }
+
+    /**
+     * Reads the elements of a JSON array of dog objects. An element that is not valid JSON is skipped up to
+     * the comma or bracket that ends it.
+     */
+    private static final class JsonReader implements RowReader {
+
+        /**
+         * JSON that does not parse.
+         */
+        private static final class SyntaxException extends Exception {
+            private static final long serialVersionUID = 1L;
+
+            SyntaxException(String message) {
+                super(message);
+            }
+        }
+
+        private final Text text;
+        private boolean first = true;
+        private boolean ended;
+
+        /**
+         * Number of arrays and objects open inside the current element.
+         */
+        private int depth;
+
+        JsonReader(Reader in) throws IOException {
+            text = new Text(in);
+            skipWhitespace();
+            if (text.read() != '[') throw new IOException("Not a JSON array of dogs");
+        }
+
+        @Override
+        public Row next() throws IOException {
+            if (ended) return null;
+            skipWhitespace();
+            int c = text.peek();
+            if (c == ']') {
+                text.read();
+                ended = true;
+                return null;
+            }
+            if (c < 0) throw new IOException("JSON array of dogs is not closed");
+            if (!first) {
+                if (c != ',') throw new IOException("Expected , or ] between dogs on line " + text.line());
+                text.read();
+                skipWhitespace();
+            }
+            first = false;
+
+            int line = text.line();
+            text.startRecord();
+            depth = 0;
+            try {
+                Object element = readValue();
+                return toRow(line, text.endRecord(), element);
+            } catch (SyntaxException e) {
+                skipElement();
+                return Row.malformed(line, text.endRecord(), e.getMessage());
+            }
+        }
+
+        private static Row toRow(int line, String record, Object element) {
+            if (!(element instanceof Map<?, ?> dog)) return Row.malformed(line, record, "not a JSON object");
+            String[] fields = fieldsOf(dog, DOG_FIELDS);
+            ArrayList<String[]> owners = new ArrayList<>();
+            Object list = dog.get("owners");
+            if (list instanceof List<?> ownerList) {
+                for (Object owner : ownerList) {
+                    if (!(owner instanceof Map<?, ?> ownerMap)) return Row.malformed(line, record, "an owner is not a JSON object");
+                    owners.add(fieldsOf(ownerMap, OWNER_FIELDS));
+                }
+            } else if (list != null) {
+                return Row.malformed(line, record, "owners is not a JSON array");
+            }
+            return new Row(line, record, fields, owners, null);
+        }
+
+        /**
+         * @return the named members of an object as text, booleans as Y or N
+         */
+        private static String[] fieldsOf(Map<?, ?> object, String[] names) {
+            String[] fields = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                Object value = object.get(names[i]);
+                if (value instanceof Boolean flag) {
+                    fields[i] = String.valueOf(Helper.booleanToYN(flag));
+                } else if (value != null) {
+                    fields[i] = value.toString();
+                }
+            }
+            return fields;
+        }
+
+        /**
+         * Skips the rest of an element that did not parse, up to the comma or bracket that ends it.
+         */
+        private void skipElement() throws IOException {
+            boolean inString = false;
+            for (int c = text.peek(); c >= 0; c = text.peek()) {
+                if (inString) {
+                    text.read();
+                    if (c == '\\') {
+                        text.read();
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (depth == 0 && (c == ',' || c == ']')) {
+                    return;
+                } else {
+                    text.read();
+                    if (c == '"') inString = true;
+                    if (c == '{' || c == '[') depth++;
+                    if ((c == '}' || c == ']') && depth > 0) depth--;
+                }
+            }
+        }
+
+        private Object readValue() throws IOException, SyntaxException {
+            skipWhitespace();
+            int c = text.peek();
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    readWord("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    readWord("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    readWord("null");
+                    return null;
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+                    throw unexpected(c);
+            }
+        }
+
+        private Map<String, Object> readObject() throws IOException, SyntaxException {
+            text.read();
+            depth++;
+            LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+            skipWhitespace();
+            if (text.peek() == '}') {
+                text.read();
+                depth--;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (text.peek() != '"') throw unexpected(text.peek());
+                String key = readString();
+                skipWhitespace();
+                if (text.peek() != ':') throw unexpected(text.peek());
+                text.read();
+                object.put(key, readValue());
+                skipWhitespace();
+                int c = text.peek();
+                if (c != ',' && c != '}') throw unexpected(c);
+                text.read();
+                if (c == '}') {
+                    depth--;
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> readArray() throws IOException, SyntaxException {
+            text.read();
+            depth++;
+            ArrayList<Object> array = new ArrayList<>();
+            skipWhitespace();
+            if (text.peek() == ']') {
+                text.read();
+                depth--;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipWhitespace();
+                int c = text.peek();
+                if (c != ',' && c != ']') throw unexpected(c);
+                text.read();
+                if (c == ']') {
+                    depth--;
+                    return array;
+                }
+            }
+        }
+
+        private String readString() throws IOException, SyntaxException {
+            text.read();
+            StringBuilder string = new StringBuilder();
+            while (true) {
+                int c = text.read();
+                if (c < 0 || c == '\n') throw new SyntaxException("a string is not closed");
+                if (c == '"') return string.toString();
+                if (c != '\\') {
+                    string.append((char) c);
+                    continue;
+                }
+                int escaped = text.read();
+                switch (escaped) {
+                    case '"', '\\', '/' -> string.append((char) escaped);
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(text.read(), 16);
+                            if (digit < 0) throw new SyntaxException("bad \\u escape in a string");
+                            code = code << 4 | digit;
+                        }
+                        string.append((char) code);
+                    }
+                    default -> throw new SyntaxException("bad escape in a string");
+                }
+            }
+        }
+
+        /**
+         * @return the text of a number, checked later by the rules for the field it is in
+         */
+        private String readNumber() throws IOException {
+            StringBuilder number = new StringBuilder();
+            for (int c = text.peek(); c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'
+                    || (c >= '0' && c <= '9'); c = text.peek()) {
+                number.append((char) text.read());
+            }
+            return number.toString();
+        }
+
+        private void readWord(String word) throws IOException, SyntaxException {
+            for (int i = 0; i < word.length(); i++) {
+                int c = text.peek();
+                if (c != word.charAt(i)) throw unexpected(c);
+                text.read();
+            }
+        }
+
+        private void skipWhitespace() throws IOException {
+            for (int c = text.peek(); c == ' ' || c == '\n' || c == '\r' || c == '\t'; c = text.peek()) {
+                text.read();
+            }
+        }
+
+        private SyntaxException unexpected(int c) {
+            return new SyntaxException(c < 0 ? "the file ends inside a dog"
+                    : "unexpected '" + (char) c + "' on line " + text.line());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package controllers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How daycare files (snapshots, journals and XML) are compressed when written. Files are read whatever their
+ * compression: it is recognised from the first bytes of the file.
+ */
+public enum Compression {
+
+    /**
+     * Written as is.
+     */
+    NONE,
+
+    /**
+     * GZIP, through {@link java.util.zip}: the smallest files, at the highest cost in time.
+     */
+    GZIP,
+
+    /**
+     * The fast LZ codec in {@link LzCodec}: larger files than GZIP, but quick to write and to read.
+     */
+    LZ;
+
+    private static final int GZIP_MAGIC = 0x1F8B;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes content through this compression onto a stream, finishing the compressed stream but leaving the
+     * stream beneath open.
+     *
+     * @param out     the stream written to
+     * @param content writes the uncompressed content
+     * @throws IOException if writing fails
+     */
+    void writeTo(OutputStream out, AtomicFile.Content content) throws IOException {
+        switch (this) {
+            case NONE -> content.writeTo(out);
+            case GZIP -> {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+                content.writeTo(gzip);
+                gzip.finish();
+            }
+            case LZ -> {
+                LzCodec.Output lz = new LzCodec.Output(out);
+                content.writeTo(lz);
+                lz.finish();
+            }
+        }
+    }
+
+    /**
+     * @return the bytes compressed with this compression
+     */
+    byte[] compress(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try {
+            writeTo(out, stream -> stream.write(bytes));
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the compression of bytes beginning with the given ones
+     */
+    static Compression detect(int firstByte, int secondByte, int firstInt) {
+        if (((firstByte & 0xFF) << 8 | (secondByte & 0xFF)) == GZIP_MAGIC) return GZIP;
+        if (firstInt == LzCodec.MAGIC) return LZ;
+        return NONE;
+    }
+
+    /**
+     * Decompresses a buffer read from a file, from its position to its limit.
+     *
+     * @param in the bytes read
+     * @return the buffer itself if it is not compressed, else a buffer of the decompressed bytes
+     * @throws IOException if the bytes are compressed but corrupt
+     */
+    static ByteBuffer decode(ByteBuffer in) throws IOException {
+        int start = in.position();
+        if (in.remaining() < Integer.BYTES) return in;
+        Compression compression = detect(in.get(start), in.get(start + 1), in.getInt(start));
+        if (compression == NONE) return in;
+
+        byte[] bytes = new byte[in.remaining()];
+        in.duplicate().get(bytes);
+        try (InputStream decoded = compression.open(new ByteArrayInputStream(bytes))) {
+            return ByteBuffer.wrap(decoded.readAllBytes());
+        }
+    }
+
+    /**
+     * Wraps a stream read from a file so that it reads decompressed bytes, whatever the compression.
+     *
+     * @param in the stream read
+     * @return a buffered stream of the decompressed bytes
+     * @throws IOException if reading the first bytes fails
+     */
+    static InputStream decode(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(Integer.BYTES);
+        byte[] first = buffered.readNBytes(Integer.BYTES);
+        buffered.reset();
+        if (first.length < Integer.BYTES) return buffered;
+
+        Compression compression = detect(first[0], first[1], ByteBuffer.wrap(first).getInt());
+        return compression == NONE ? buffered : new BufferedInputStream(compression.open(buffered), BUFFER_SIZE);
+    }
+
+    private InputStream open(InputStream in) throws IOException {
+        return switch (this) {
+            case NONE -> in;
+            case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+            case LZ -> new LzCodec.Input(in);
+        };
+    }
+}
@@ -0,0 +1,468 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@link DayCare} that several threads can share, e.g. a few front-desk threads and a reporting thread.
+ * <p>
+ * Every method takes a {@link StampedLock} around the same method of a daycare held inside. Changes (dog and
+ * owner CRUD, settings, loading and saving) take the write lock, so they run one at a time and never while
+ * anything is being read. The {@code list*}, {@code search*} and lookup methods take the read lock, so
+ * readers never hold up one another. The settings and the running counts (number of dogs, dangerous and
+ * neutered dogs, kennel days, weekly income) are a few fields each: they are read optimistically, without
+ * locking at all, and only read again under the read lock when a change was made while they were read.
+ * <p>
+ * {@link #withReadLock(Function)} and {@link #withWriteLock(Function)} run several calls as one step, e.g.
+ * finding a dog and updating it, or writing a listing to a stream. New IDs need no lock: they come from
+ * {@link #getDogIDs()} and {@link #getOwnerIDs()}, which never hand out the same ID twice.
+ * <p>
+ * The dogs and owners returned are the daycare's own, so they should be changed only through this class,
+ * e.g. with {@link #updateDog(int, Dog)}, and not through their setters. A daycare opened lazily would
+ * change itself while being read, so snapshots are always loaded in full.
+ */
+public final class ConcurrentDayCare implements AutoCloseable {
+
+    /**
+     * A step run on the daycare that may fail, e.g. loading or saving.
+     */
+    private interface Action<T> {
+        T run(DayCare dayCare) throws Exception;
+    }
+
+    private final DayCare dayCare;
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Constructs an empty daycare with a name and a maximum number of dogs.
+     *
+     * @param name            The name of the daycare (max 10 characters).
+     * @param maxNumberOfDogs The maximum number of dogs allowed.
+     */
+    public ConcurrentDayCare(String name, int maxNumberOfDogs) {
+        this(new DayCare(name, maxNumberOfDogs));
+    }
+
+    /**
+     * Constructs an empty daycare, to be loaded from a file.
+     */
+    public ConcurrentDayCare() {
+        this(new DayCare());
+    }
+
+    /**
+     * Shares an existing daycare between threads. The daycare should only be used through this object from
+     * now on.
+     *
+     * @param dayCare the daycare, loaded in full
+     */
+    public ConcurrentDayCare(DayCare dayCare) {
+        this.dayCare = dayCare;
+        // loads the rest of a daycare opened lazily, so that reading it changes nothing
+        dayCare.getDogsArray();
+    }
+
+    //-------------------------------------
+    //  Locking
+    //-------------------------------------
+
+    /**
+     * Reads a few fields optimistically, and again under the read lock if a change was made while they were
+     * read. Only for reads that copy fields and cannot fail however a change leaves them, such as the running
+     * counts: anything that walks the daycare's lists or maps goes through {@link #read(Supplier)}.
+     */
+    private <T> T readOptimistically(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = reader.get();
+            if (lock.validate(stamp)) return result;
+        }
+        return read(reader);
+    }
+
+    /**
+     * Runs a read under the read lock.
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs several reads as one step, while no change can be made.
+     *
+     * @param reader reads the daycare
+     * @return what the reader returns
+     */
+    public <T> T withReadLock(Function<DayCare, T> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.apply(dayCare);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs several calls as one step, while nothing else reads or changes the daycare.
+     *
+     * @param writer reads and changes the daycare
+     * @return what the writer returns
+     */
+    public <T> T withWriteLock(Function<DayCare, T> writer) {
+        long stamp = lock.writeLock();
+        try {
+            return writer.apply(dayCare);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs a step that may fail, such as loading or saving, while nothing else reads or changes the daycare.
+     */
+    private <T> T writeChecked(Action<T> action) throws Exception {
+        long stamp = lock.writeLock();
+        try {
+            return action.run(dayCare);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes a listing to a stream under the read lock, e.g.
+     * {@code write(out, d -> d::listAllDogs)}. Listings are written under the lock rather than optimistically,
+     * since what has been written to the stream cannot be taken back.
+     *
+     * @param out     where to write
+     * @param listing picks the listing
+     * @throws IOException if writing fails
+     */
+    public void write(Appendable out, Function<DayCare, DayCare.Listing> listing) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            listing.apply(dayCare).writeTo(out);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //-------------------------------------
+    //  Settings
+    //-------------------------------------
+
+    public String getName() {
+        return readOptimistically(dayCare::getName);
+    }
+
+    public void setName(String name) {
+        withWriteLock(d -> {
+            d.setName(name);
+            return null;
+        });
+    }
+
+    public int getMaxNumberOfDogs() {
+        return readOptimistically(dayCare::getMaxNumberOfDogs);
+    }
+
+    public void setMaxNumberOfDogs(int maxNumberOfDogs) {
+        withWriteLock(d -> {
+            d.setMaxNumberOfDogs(maxNumberOfDogs);
+            return null;
+        });
+    }
+
+    public int getDogAutoID() {
+        return dayCare.getDogAutoID();
+    }
+
+    public int getOwnerAutoID() {
+        return dayCare.getOwnerAutoID();
+    }
+
+    /**
+     * @return the allocator of dog IDs, which threads may take IDs from without taking the lock
+     */
+    public IdAllocator getDogIDs() {
+        return dayCare.getDogIDs();
+    }
+
+    /**
+     * @return the allocator of owner IDs, which threads may take IDs from without taking the lock
+     */
+    public IdAllocator getOwnerIDs() {
+        return dayCare.getOwnerIDs();
+    }
+
+    /**
+     * @return a copy of the list of dogs, in order
+     */
+    public ArrayList<Dog> getDogsArray() {
+        return read(() -> new ArrayList<>(dayCare.getDogsArray()));
+    }
+
+    //-------------------------------------
+    //  Dog and owner CRUD
+    //-------------------------------------
+
+    public Dog getDog(int input) {
+        return read(() -> dayCare.getDog(input));
+    }
+
+    public Dog getDogByID(int id) {
+        return read(() -> dayCare.getDogByID(id));
+    }
+
+    public Dog getDogByIndex(int index) {
+        return read(() -> dayCare.getDogByIndex(index));
+    }
+
+    public boolean addDog(Dog dog) {
+        return withWriteLock(d -> d.addDog(dog));
+    }
+
+    public int addDogs(List<Dog> dogs) {
+        return withWriteLock(d -> d.addDogs(dogs));
+    }
+
+    public Dog updateDog(int id, Dog dog) {
+        return withWriteLock(d -> d.updateDog(id, dog));
+    }
+
+    public Dog removeDog(int id) {
+        return withWriteLock(d -> d.removeDog(id));
+    }
+
+    public boolean addOwner(Owner owner, int dogID) {
+        return withWriteLock(d -> d.addOwner(owner, dogID));
+    }
+
+    public Owner updateOwner(int dogID, int ownerID, Owner owner) {
+        return withWriteLock(d -> d.updateOwner(dogID, ownerID, owner));
+    }
+
+    public Owner removeOwner(int ownerID, int dogID) {
+        return withWriteLock(d -> d.removeOwner(ownerID, dogID));
+    }
+
+    //-------------------------------------
+    //  Listings
+    //-------------------------------------
+
+    public String listAllDogs() {
+        return read(dayCare::listAllDogs);
+    }
+
+    public String listAllDangerousDogs() {
+        return read(dayCare::listAllDangerousDogs);
+    }
+
+    public String listDogsByBreed(String breed) {
+        return read(() -> dayCare.listDogsByBreed(breed));
+    }
+
+    public String listDogsByGender(char gender) {
+        return read(() -> dayCare.listDogsByGender(gender));
+    }
+
+    public String listNeuteredDogs() {
+        return read(dayCare::listNeuteredDogs);
+    }
+
+    public String listAllDogsByOwner(Owner owner) {
+        return read(() -> dayCare.listAllDogsByOwner(owner));
+    }
+
+    public String listDogsByOwnerID(int ownerID) {
+        return read(() -> dayCare.listDogsByOwnerID(ownerID));
+    }
+
+    public String listDogsByOwnerName(String name) {
+        return read(() -> dayCare.listDogsByOwnerName(name));
+    }
+
+    public String getDogsByOwnersName(String namePart) {
+        return read(() -> dayCare.getDogsByOwnersName(namePart));
+    }
+
+    public String listAllOwnersByDogID(int dogID) {
+        return read(() -> dayCare.listAllOwnersByDogID(dogID));
+    }
+
+    public String listOwners() {
+        return read(dayCare::listOwners);
+    }
+
+    public String ownerReport() {
+        return read(dayCare::ownerReport);
+    }
+
+    public String listAllDogsThatStayMoreThanDays(int days) {
+        return read(() -> dayCare.listAllDogsThatStayMoreThanDays(days));
+    }
+
+    public String listDogsByDayOfWeek(int day) {
+        return read(() -> dayCare.listDogsByDayOfWeek(day));
+    }
+
+    //-------------------------------------
+    //  Counts
+    //-------------------------------------
+
+    public int numberOfDogs() {
+        return readOptimistically(dayCare::numberOfDogs);
+    }
+
+    public int numberOfDangerousDogs() {
+        return readOptimistically(dayCare::numberOfDangerousDogs);
+    }
+
+    public int numberOfNeuteredDogs() {
+        return readOptimistically(dayCare::numberOfNeuteredDogs);
+    }
+
+    public double getWeeklyIncome() {
+        return readOptimistically(dayCare::getWeeklyIncome);
+    }
+
+    public long getWeeklyIncomeInCents() {
+        return readOptimistically(dayCare::getWeeklyIncomeInCents);
+    }
+
+    public int numberOfDogsOnDay(int day) {
+        return read(() -> dayCare.numberOfDogsOnDay(day));
+    }
+
+    public int totalKennelDays() {
+        return readOptimistically(dayCare::totalKennelDays);
+    }
+
+    public float getAverageNumDaysPerWeek() {
+        return readOptimistically(dayCare::getAverageNumDaysPerWeek);
+    }
+
+    //-------------------------------------
+    //  Owners and search
+    //-------------------------------------
+
+    public ArrayList<Owner> getOwners() {
+        return read(dayCare::getOwners);
+    }
+
+    public Owner getOwner(int id) {
+        return read(() -> dayCare.getOwner(id));
+    }
+
+    public ArrayList<Dog> getDogsByOwnerID(int ownerID) {
+        return read(() -> dayCare.getDogsByOwnerID(ownerID));
+    }
+
+    public Dog getDog(String name) {
+        return read(() -> dayCare.getDog(name));
+    }
+
+    public Dog findDogByOwnerAndBreedAndAge(String ownerName, String breed, int age) {
+        return read(() -> dayCare.findDogByOwnerAndBreedAndAge(ownerName, breed, age));
+    }
+
+    public ArrayList<Dog> searchDogsByOwnerName(String namePart) {
+        return read(() -> dayCare.searchDogsByOwnerName(namePart));
+    }
+
+    public ArrayList<Dog> searchDogsByOwner(Owner owner) {
+        return read(() -> dayCare.searchDogsByOwner(owner));
+    }
+
+    public String searchDogsByName(String namePart) {
+        return read(() -> dayCare.searchDogsByName(namePart));
+    }
+
+    //-------------------------------------
+    //  Persistence
+    //-------------------------------------
+
+    /**
+     * Loads the daycare as {@link DayCare#load()} does, in full.
+     *
+     * @throws Exception if loading fails
+     */
+    public void load() throws Exception {
+        writeChecked(d -> {
+            d.load();
+            return null;
+        });
+    }
+
+    public void open(String fileName) throws Exception {
+        writeChecked(d -> {
+            d.open(fileName);
+            return null;
+        });
+    }
+
+    public void load(String fileName) throws Exception {
+        writeChecked(d -> {
+            d.load(fileName);
+            return null;
+        });
+    }
+
+    public void save() throws Exception {
+        writeChecked(d -> {
+            d.save();
+            return null;
+        });
+    }
+
+    public void save(String fileName) throws Exception {
+        writeChecked(d -> {
+            d.save(fileName);
+            return null;
+        });
+    }
+
+    /**
+     * Saves as {@link DayCare#saveAsync()} does. Only the copy taken for the background write is made under
+     * the lock.
+     */
+    public CompletableFuture<Void> saveAsync() throws Exception {
+        return writeChecked(DayCare::saveAsync);
+    }
+
+    /**
+     * Closes the daycare as {@link DayCare#close()} does.
+     *
+     * @throws IOException if a background save failed or the journal cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeChecked(d -> {
+                d.close();
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a background save");
+        } catch (Exception e) {
+            throw new IOException("Could not close the daycare", e);
+        }
+    }
+}
@@ -1,17 +1,44 @@
 package controllers;
 
 import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.XStreamException;
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.core.MapBackedDataHolder;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
+import com.thoughtworks.xstream.mapper.Mapper;
 import models.Dog;
+import models.DogListener;
 import models.Owner;
+import models.OwnerListener;
 import utils.Helper;
+import utils.NGramIndex;
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 
 
 /**
@@ -41,14 +68,156 @@ public class DayCare {
     private int maxNumberOfDogs = 10;
 
     /**
-     * Auto-generated ID for dogs
+     * Hands out dog IDs; saved as the next one it would hand out (dogAutoID)
      */
-    private int dogAutoID = 1000;
+    private final IdAllocator dogIDs = new IdAllocator(1000, 9999);
 
     /**
-     * Auto-generated ID for owners
+     * Hands out owner IDs; saved as the next one it would hand out (ownerAutoID)
      */
-    private int ownerAutoID = 100;
+    private final IdAllocator ownerIDs = new IdAllocator(100, 999);
+
+    /**
+     * Next dog and owner IDs in the latest settings record of the journal, to tell when IDs handed out since
+     * need journaling.
+     */
+    private transient int journaledDogID;
+    private transient int journaledOwnerID;
+
+    /**
+     * Index of dog ID to the positions in dogsArray holding a dog with that ID, in ascending order.
+     * Derived from dogsArray, so it is not persisted and is rebuilt on load.
+     */
+    private transient HashMap<Integer, ArrayList<Integer>> dogIndex = new HashMap<>();
+
+    /**
+     * Column copy of the dogs' flags, ages and attendance by position in dogsArray, used by the
+     * counting and filtering methods.
+     */
+    private transient DogColumns columns = new DogColumns();
+
+    /**
+     * Canonical owner for each owner ID held by at least one dog, shared by all of that owner's dogs.
+     */
+    private transient HashMap<Integer, Owner> ownerRegistry = new HashMap<>();
+
+    /**
+     * Reverse index of owner ID to the dogs that owner is registered on.
+     */
+    private transient HashMap<Integer, ArrayList<Dog>> dogsByOwner = new HashMap<>();
+
+    /**
+     * N-gram index of registered owners' names by owner ID. Follows owners added to or removed from the
+     * registry and renames of registered owners, whether made through {@link #updateOwner(int, int, Owner)}
+     * or through the owner's setters.
+     */
+    private transient NGramIndex ownerNameIndex = new NGramIndex();
+
+    /**
+     * Keeps the indexes in step with changes made directly on a dog (e.g. {@code dog.setId(...)}).
+     */
+    private transient DogListener dogWatcher = new DogWatcher();
+
+    /**
+     * Number of positions in dogsArray holding each dog object. The watcher is registered once per object,
+     * however many positions hold it, so a change to it is handled once.
+     */
+    private transient IdentityHashMap<Dog, Integer> watchedDogs = new IdentityHashMap<>();
+
+    /**
+     * Keeps the owner indexes and the journal in step with changes made directly on a registered owner
+     * (e.g. {@code getOwner(101).setName(...)}).
+     */
+    private transient OwnerListener ownerWatcher = new OwnerWatcher();
+
+    /**
+     * Default for {@link #getParallelThreshold()}.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 2048;
+
+    /**
+     * Listings with more rows than this are formatted in parallel chunks of this many rows.
+     */
+    private transient int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Default for {@link #getJournalCompactionThreshold()}: 1 MiB.
+     */
+    public static final long DEFAULT_JOURNAL_COMPACTION_THRESHOLD = 1 << 20;
+
+    /**
+     * Journal of the changes made since the last snapshot. Open once the daycare has been loaded from or
+     * saved to the snapshot file by {@link #load()} or {@link #save()}; null otherwise.
+     */
+    private transient MutationJournal journal;
+
+    /**
+     * Snapshot file the open journal belongs to.
+     */
+    private transient Path journalSnapshot;
+
+    /**
+     * Journal size in bytes above which a save compacts the journal into a new snapshot.
+     */
+    private transient long journalCompactionThreshold = DEFAULT_JOURNAL_COMPACTION_THRESHOLD;
+
+    /**
+     * The latest background write of the journal's snapshot, started by a compaction or by
+     * {@link #saveAsync()}, if any.
+     */
+    private transient CompletableFuture<Void> snapshotWrite;
+
+    /**
+     * True while the snapshot the open journal follows is still being written. Until it is on disk the
+     * journal's records describe changes to a state that is not, so they are not synced before it.
+     */
+    private transient boolean journalAwaitsSnapshot;
+
+    /**
+     * Runs snapshot writes, compactions and exports one at a time, off the caller's thread.
+     */
+    private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "daycare-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Background saves of this daycare, coalesced per file.
+     */
+    private transient SaveQueue saves = new SaveQueue(BACKGROUND);
+
+    /**
+     * Default for {@link #getLazyCacheSize()}.
+     */
+    public static final int DEFAULT_LAZY_CACHE_SIZE = 256;
+
+    /**
+     * Dogs of the snapshot opened by {@link #openLazily(String)}, until the daycare is loaded in full;
+     * null otherwise.
+     */
+    private transient LazyDogs lazyDogs;
+
+    /**
+     * Snapshot file the lazy dogs come from.
+     */
+    private transient Path lazySnapshot;
+
+    /**
+     * Most dogs kept decoded while the daycare is open lazily.
+     */
+    private transient int lazyCacheSize = DEFAULT_LAZY_CACHE_SIZE;
+
+    /**
+     * Which dogs differ from the snapshot last written in full by {@link #saveDelta(String)}, or null when
+     * no delta save is based on a snapshot.
+     */
+    private transient DogChanges changes;
+
+    /**
+     * Compression of the snapshots, journals and XML files written.
+     */
+    private transient Compression compression = Compression.NONE;
 
     //-------------------------------------
     //  Constructor
@@ -88,8 +257,10 @@ public class DayCare {
      * @param name the new name
      */
     public void setName(String name) {
+        ensureLoaded();
         if (Helper.validateStringLength(name, 10)) {
             this.name = name;
+            journalSettings();
         }
     }
 
@@ -106,15 +277,19 @@ public class DayCare {
      * @param maxNumberOfDogs the new maximum
      */
     public void setMaxNumberOfDogs(int maxNumberOfDogs) {
+        ensureLoaded();
         if (Helper.validRange(maxNumberOfDogs, 10, 100)) {
             this.maxNumberOfDogs = maxNumberOfDogs;
+            journalSettings();
         }
     }
 
     /**
-     * @return the list of all dogs in the daycare
+     * @return the list of all dogs in the daycare (add and remove dogs through
+     * {@link #addDog(Dog)}/{@link #removeDog(int)} so the ID index stays in step)
      */
     public ArrayList<Dog> getDogsArray() {
+        ensureLoaded();
         return dogsArray;
     }
 
@@ -124,21 +299,69 @@ public class DayCare {
      * @param dogsArray the new list of dogs
      */
     public void setDogsArray(ArrayList<Dog> dogsArray) {
+        ensureLoaded();
+        detachDogs();
         this.dogsArray = dogsArray;
+        attachDogs();
+        changes = null;
+        journalReset();
     }
 
     /**
-     * @return the current dog auto-increment ID
+     * @return the next dog ID that would be handed out; reading it does not reserve it, so take IDs from
+     * {@link #getDogIDs()} instead
      */
     public int getDogAutoID() {
-        return dogAutoID;
+        return dogIDs.peek();
     }
 
     /**
-     * @return the current owner auto-increment ID
+     * @return the next owner ID that would be handed out; reading it does not reserve it, so take IDs from
+     * {@link #getOwnerIDs()} instead
      */
     public int getOwnerAutoID() {
-        return ownerAutoID;
+        return ownerIDs.peek();
+    }
+
+    /**
+     * Returns the allocator of dog IDs, from which any thread may take IDs for new dogs without locking. It
+     * never hands out the ID of a dog in the daycare, and the IDs it has handed out are saved with the daycare.
+     *
+     * @return the dog ID allocator
+     */
+    public IdAllocator getDogIDs() {
+        ensureLoaded();
+        return dogIDs;
+    }
+
+    /**
+     * Returns the allocator of owner IDs, as {@link #getDogIDs()} does for dogs.
+     *
+     * @return the owner ID allocator
+     */
+    public IdAllocator getOwnerIDs() {
+        ensureLoaded();
+        return ownerIDs;
+    }
+
+    /**
+     * @return the most rows a listing or report formats on the calling thread; longer ones are split into
+     * chunks of this many rows and formatted on the fork-join pool
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the parallel threshold. The text of a listing is the same either way; use
+     * {@code Integer.MAX_VALUE} to always format on the calling thread.
+     *
+     * @param parallelThreshold rows per chunk (1 or more; other values are ignored)
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold >= 1) {
+            this.parallelThreshold = parallelThreshold;
+        }
     }
 
     //-------------------------------------
@@ -166,12 +389,12 @@ public class DayCare {
      * @return the matching dog or null
      */
     public Dog getDogByID(int id) {
-        for (Dog dog : dogsArray) {
-            if (dog.getId() == id) {
-                return dog;
-            }
+        if (lazyDogs != null) {
+            int position = lazyDogs.positionOf(id);
+            return position == -1 ? null : lazyDogs.get(position);
         }
-        return null;
+        int index = getDogIndexByID(id);
+        return index == -1 ? null : dogsArray.get(index);
     }
 
     /**
@@ -181,6 +404,9 @@ public class DayCare {
      * @return the dog or null if out of bounds
      */
     public Dog getDogByIndex(int index) {
+        if (lazyDogs != null) {
+            return index >= 0 && index < lazyDogs.size() ? lazyDogs.get(index) : null;
+        }
         if (isValidDogIndex(index)) {
             return dogsArray.get(index);
         } else {
@@ -195,15 +421,44 @@ public class DayCare {
      * @return true if added
      */
     public boolean addDog(Dog dog) {
+        ensureLoaded();
         if (dog != null && (dogsArray.size() < maxNumberOfDogs)) {
-            dogsArray.add(dog);
-            dogAutoID++;
+            appendDog(dog);
+            if (journal != null) {
+                journal.logAppend(dog);
+                journalSettings();
+            }
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Adds dogs in one batch, as {@link #addDog(Dog)} would one at a time, stopping at the first null dog or
+     * at the maximum dog limit. The daycare's settings are journaled once for the batch rather than once per dog.
+     *
+     * @param dogs the dogs to add, in order
+     * @return number of dogs added, from the start of the list
+     */
+    public int addDogs(List<Dog> dogs) {
+        ensureLoaded();
+        int added = 0;
+        dogsArray.ensureCapacity(Math.min(dogsArray.size() + dogs.size(), maxNumberOfDogs));
+        for (Dog dog : dogs) {
+            if (dog == null || dogsArray.size() >= maxNumberOfDogs) break;
+            appendDog(dog);
+            added++;
+        }
+        if (journal != null && added > 0) {
+            for (Dog dog : dogs.subList(0, added)) {
+                journal.logAppend(dog);
+            }
+            journalSettings();
+        }
+        return added;
+    }
+
     /**
      * Updates an existing dog.
      *
@@ -212,8 +467,11 @@ public class DayCare {
      * @return the updated dog or null
      */
     public Dog updateDog(int id, Dog dog) {
+        ensureLoaded();
         if (isValidDogID(id) && (dog != null)) {
-            dogsArray.set(getDogIndexByID(id), dog);
+            int index = getDogIndexByID(id);
+            replaceDogAt(index, dog);
+            if (journal != null) journal.logSet(index, dog);
             return dog;
         } else {
             return null;
@@ -227,8 +485,12 @@ public class DayCare {
      * @return the removed dog or null
      */
     public Dog removeDog(int id) {
+        ensureLoaded();
         if (isValidDogID(id)) {
-            return dogsArray.remove(getDogIndexByID(id));
+            int index = getDogIndexByID(id);
+            Dog removed = removeDogAt(index);
+            if (journal != null) journal.logRemove(index);
+            return removed;
         } else {
             return null;
         }
@@ -246,9 +508,11 @@ public class DayCare {
      * @return true if added successfully
      */
     public boolean addOwner(Owner owner, int dogID) {
+        ensureLoaded();
         if (owner != null && isValidDogID(dogID)) {
-            ownerAutoID++;
-            return dogsArray.get(getDogIndexByID(dogID)).addOwner(owner);
+            boolean added = dogsArray.get(getDogIndexByID(dogID)).addOwner(owner);
+            journalSettings();
+            return added;
         } else {
             return false;
         }
@@ -263,8 +527,16 @@ public class DayCare {
      * @return the updated owner or null
      */
     public Owner updateOwner(int dogID, int ownerID, Owner owner) {
+        ensureLoaded();
         if (isValidDogID(dogID) && isValidOwnerID(ownerID)) {
-            return dogsArray.get(getDogIndexByID(dogID)).updateOwner(ownerID, owner);
+            Dog dog = dogsArray.get(getDogIndexByID(dogID));
+            Owner canonical = ownerRegistry.get(ownerID);
+            if (owner != null && owner.getId() == ownerID && canonical != null && dog.getOwnerByID(ownerID) == canonical) {
+                // the owner instance is shared, so this updates the owner on every one of their dogs
+                updateRegisteredOwner(canonical, owner.getName(), owner.getPhoneNumber());
+                return canonical;
+            }
+            return dog.updateOwner(ownerID, owner);
         } else {
             return null;
         }
@@ -278,6 +550,7 @@ public class DayCare {
      * @return the removed owner or null
      */
     public Owner removeOwner(int ownerID, int dogID) {
+        ensureLoaded();
         if (isValidDogID(dogID) && isValidOwnerID(ownerID)) {
             return dogsArray.get(getDogIndexByID(dogID)).removeOwner(ownerID);
         } else {
@@ -300,496 +573,1911 @@ public class DayCare {
      * @return true if ID is a valid dog ID
      */
     private boolean isValidDogID(int id) {
-        return getDogByID(id) != null;
+        return dogIndex.containsKey(id);
     }
     /**
      * @return true if ID is a valid owner ID
      */
     private boolean isValidOwnerID(int id) {
-        return id >= 100 && id <= ownerAutoID;
+        return ownerRegistry.containsKey(id);
     }
 
     /**
-     * @return index of owner by ID, or -1 if not found
+     * @return index of dog by ID, or -1 if not found
      */
-    private int getOwnerIndexByID(int id) {
-        for (Owner owner : getOwners()) {
-            if (owner.getId() == id) {
-                return getOwners().indexOf(owner);
-            }
-        }
-        return -1;
+    private int getDogIndexByID(int id) {
+        ArrayList<Integer> positions = dogIndex.get(id);
+        return positions == null ? -1 : positions.get(0);
     }
 
     /**
-     * @return index of dog by ID, or -1 if not found
+     * Appends a dog to dogsArray and indexes it.
      */
-    private int getDogIndexByID(int id) {
-        for (Dog dog : dogsArray) {
-            if (dog.getId() == id) {
-                return dogsArray.indexOf(dog);
-            }
-        }
-        return -1;
+    private void appendDog(Dog dog) {
+        dogsArray.add(dog);
+        indexDogAt(dogsArray.size() - 1);
+        watchDog(dog);
+        if (changes != null) changes.appended();
     }
-    //------------------------------------
-    // LISTING METHODS - Basic and Advanced
-    //------------------------------------
 
     /**
-     * Lists all dogs and their owners.
-     *
-     * @return Formatted list of all dogs in the daycare.
+     * Puts a dog in place of the one at the given position and indexes it.
      */
-    public String listAllDogs() {
-        if (dogsArray.isEmpty()) {
-            return "There are no dogs registered at the moment";
-        }
-
-        StringBuilder result = new StringBuilder();
-        for (Dog dog : dogsArray) {
-            result.append(dog.toString()).append("\nOwners:\n").append(dog.listOwners()).append("\n");
+    private void replaceDogAt(int index, Dog dog) {
+        Dog old = dogsArray.set(index, dog);
+        unwatchDog(old);
+        watchDog(dog);
+        if (old.getId() != dog.getId()) {
+            moveIndexEntry(index, old.getId(), dog.getId());
         }
-        return result.toString();
+        columns.set(index, dog);
     }
 
     /**
-     * Lists all dogs marked as dangerous.
-     *
-     * @return Formatted list or message if none found.
+     * Removes the dog at the given position and moves the index entries of the dogs after it down by one.
      */
-    public String listAllDangerousDogs() {
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment";
-
-        StringBuilder result = new StringBuilder();
-        for (Dog dog : dogsArray) {
-            if (dog.isDangerousBreed()) result.append(dog.toString()).append("\n");
+    private Dog removeDogAt(int index) {
+        Dog removed = dogsArray.remove(index);
+        unwatchDog(removed);
+        if (changes != null) changes.removed(index);
+
+        ArrayList<Integer> positions = dogIndex.get(removed.getId());
+        positions.remove(Integer.valueOf(index));
+        if (positions.isEmpty()) dogIndex.remove(removed.getId());
+        // each later dog's position is in its list once, as the old position, one above the new one
+        for (int i = index; i < dogsArray.size(); i++) {
+            ArrayList<Integer> shifted = dogIndex.get(dogsArray.get(i).getId());
+            shifted.set(shifted.indexOf(i + 1), i);
         }
+        columns.remove(index);
+        return removed;
+    }
 
-        return result.length() == 0 ? "No Dangerous Breeds at the moment" : result.toString();
+    /**
+     * Files the position of a dog whose ID has changed under its new ID, keeping each list of positions in
+     * ascending order.
+     */
+    private void moveIndexEntry(int index, int oldID, int newID) {
+        ArrayList<Integer> positions = dogIndex.get(oldID);
+        positions.remove(Integer.valueOf(index));
+        if (positions.isEmpty()) dogIndex.remove(oldID);
+
+        ArrayList<Integer> now = dogIndex.computeIfAbsent(newID, k -> new ArrayList<>(1));
+        now.add(-Collections.binarySearch(now, index) - 1, index);
+        dogIDs.advanceTo(newID + 1);
     }
 
     /**
-     * Lists dogs that match a given breed.
-     *
-     * @param breed Breed name or partial match.
-     * @return List of matching dogs or message if none found.
+     * Changes a registered owner's details, which every one of their dogs shares. The owner watcher re-indexes
+     * and journals the change.
      */
-    public String listDogsByBreed(String breed) {
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment";
+    private void updateRegisteredOwner(Owner canonical, String name, String phoneNumber) {
+        canonical.setName(name);
+        canonical.setPhoneNumber(phoneNumber);
+    }
 
-        StringBuilder result = new StringBuilder();
-        for (Dog dog : dogsArray) {
-            if (dog.getBreed().toLowerCase().contains(breed.toLowerCase())) {
-                result.append(dog.toString()).append("\n");
-            }
+    /**
+     * Rebuilds the ID index and column store from dogsArray.
+     */
+    private void rebuildDogIndex() {
+        dogIndex.clear();
+        columns.clear();
+        for (int i = 0; i < dogsArray.size(); i++) {
+            indexDogAt(i);
         }
+    }
 
-        return result.length() == 0 ? "No dog that Breed at the moment" : result.toString();
+    /**
+     * Adds the dog at the given position to the ID index and column store.
+     * Positions must be indexed in ascending order.
+     */
+    private void indexDogAt(int index) {
+        Dog dog = dogsArray.get(index);
+        dogIndex.computeIfAbsent(dog.getId(), k -> new ArrayList<>(1)).add(index);
+        columns.set(index, dog);
+        dogIDs.advanceTo(dog.getId() + 1);
     }
 
     /**
-     * Lists dogs filtered by gender.
-     *
-     * @param gender 'M' or 'F'
-     * @return Matching dogs or message if none found.
+     * Marks every position in dogsArray holding this dog object.
      */
-    public String listDogsByGender(char gender) {
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment";
+    private void markPositions(Dog dog, BitSet positions) {
+        ArrayList<Integer> indexes = dogIndex.get(dog.getId());
+        if (indexes == null) return;
 
-        StringBuilder result = new StringBuilder();
-        for (Dog dog : dogsArray) {
-            if (dog.getSex() == gender) result.append(dog.toString()).append("\n");
+        for (int index : indexes) {
+            if (dogsArray.get(index) == dog) positions.set(index);
         }
-
-        return result.length() == 0 ? "No dog found" : result.toString();
     }
 
     /**
-     * Lists all neutered dogs.
-     *
-     * @return Formatted list or message if none found.
+     * @return IDs of registered owners whose name contains the given text, ignoring case
      */
-    public String listNeuteredDogs() {
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment";
-
-        StringBuilder result = new StringBuilder();
-        for (Dog dog : dogsArray) {
-            if (dog.isNeutered()) result.append(dog.toString()).append("\n");
+    private BitSet ownersNamed(String namePart) {
+        BitSet ids = ownerNameIndex.candidates(namePart);
+        if (!NGramIndex.isExact(namePart)) {
+            String folded = namePart.toLowerCase();
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                if (!ownerRegistry.get(id).getName().toLowerCase().contains(folded)) ids.clear(id);
+            }
         }
-
-        return result.length() == 0 ? "No Neutered dogs at the moment" : result.toString();
+        return ids;
     }
 
     /**
-     * Lists all dogs associated with a given owner.
-     *
-     * @param owner Owner to match.
-     * @return List of dogs or a message.
+     * @return positions in dogsArray of the dogs registered to the given owner
      */
-    public String listAllDogsByOwner(Owner owner) {
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment.";
-
-        ArrayList<Dog> foundDogs = searchDogsByOwner(owner);
-        if (foundDogs.isEmpty()) return "No Dogs have that owner.";
-
-        StringBuilder result = new StringBuilder();
-        for (Dog dog : foundDogs) result.append(dog.toString()).append("\n");
+    BitSet positionsOfOwner(int ownerID) {
+        BitSet positions = new BitSet();
+        ArrayList<Dog> dogs = dogsByOwner.get(ownerID);
+        if (dogs != null) {
+            for (Dog dog : dogs) {
+                markPositions(dog, positions);
+            }
+        }
+        return positions;
+    }
 
-        return result.toString();
+    /**
+     * @return positions in dogsArray of the dogs with an owner whose name contains the given text
+     */
+    BitSet positionsOfOwnersNamed(String namePart) {
+        BitSet positions = new BitSet();
+        BitSet ids = ownersNamed(namePart);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            for (Dog dog : dogsByOwner.get(id)) {
+                markPositions(dog, positions);
+            }
+        }
+        return positions;
     }
 
     /**
-     * Lists all dogs that belong to an owner with the specified ID.
-     *
-     * @param ownerID ID of the owner.
-     * @return List or not-found message.
+     * @return number of dogs registered to the given owner
      */
-    public String listDogsByOwnerID(int ownerID) {
-        Owner owner = getOwner(ownerID);
-        return owner == null ? "Owner with ID " + ownerID + " not found." : listAllDogsByOwner(owner);
+    int countDogsOfOwner(int ownerID) {
+        ArrayList<Dog> dogs = dogsByOwner.get(ownerID);
+        return dogs == null ? 0 : dogs.size();
     }
 
     /**
-     * Lists dogs by owner's name (partial match).
-     *
-     * @param name Part or full name of the owner.
-     * @return Formatted dog list per owner.
+     * @return the column store, for {@link DogQuery}
      */
-    public String listDogsByOwnerName(String name) {
-        ArrayList<Owner> matchingOwners = new ArrayList<>();
+    DogColumns getColumns() {
+        return columns;
+    }
 
-        for (Owner owner : getOwners()) {
-            if (owner.getName().toLowerCase().contains(name.toLowerCase())) {
-                matchingOwners.add(owner);
+    /**
+     * Adds the dog under each of its owners, swapping in the canonical owner where one is already registered.
+     */
+    private void indexOwners(Dog dog) {
+        ArrayList<Owner> owners = dog.getOwners();
+        for (int i = 0; i < owners.size(); i++) {
+            Owner owner = owners.get(i);
+            if (owner == null) continue;
+
+            Owner canonical = ownerRegistry.putIfAbsent(owner.getId(), owner);
+            if (canonical == null) {
+                owner.addListener(ownerWatcher);
+                ownerNameIndex.add(owner.getId(), owner.getName());
+                ownerIDs.advanceTo(owner.getId() + 1);
+            } else if (canonical != owner) {
+                owners.set(i, canonical);
             }
+            dogsByOwner.computeIfAbsent(owner.getId(), k -> new ArrayList<>()).add(dog);
         }
-
-        if (matchingOwners.isEmpty()) return "No owners found with name containing: " + name;
-
-        StringBuilder result = new StringBuilder();
-        for (Owner owner : matchingOwners) {
-            result.append("Dogs owned by ").append(owner.getName())
-                    .append(" (ID: ").append(owner.getId()).append("):\n")
-                    .append(listAllDogsByOwner(owner)).append("\n");
-        }
-
-        return result.toString();
     }
 
     /**
-     * Lists dogs whose owners match a given name part.
-     *
-     * @param namePart partial owner name
-     * @return List of dogs or message.
+     * Removes the dog from under each of the given owners, dropping owners that have no dogs left.
      */
-    public String getDogsByOwnersName(String namePart) {
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment.";
+    private void unindexOwners(Dog dog, ArrayList<Owner> owners) {
+        for (Owner owner : owners) {
+            if (owner == null) continue;
 
-        ArrayList<Dog> dogs = searchDogsByOwnerName(namePart);
-        if (dogs.isEmpty()) return "No Dogs have that owner";
+            ArrayList<Dog> dogs = dogsByOwner.get(owner.getId());
+            if (dogs == null) continue;
 
-        StringBuilder result = new StringBuilder();
-        for (Dog dog : dogs) result.append(dog.toString()).append("\n");
-
-        return result.toString();
+            // by identity, as Dog.equals would match a different dog with the same details
+            for (int i = 0; i < dogs.size(); i++) {
+                if (dogs.get(i) == dog) {
+                    dogs.remove(i);
+                    break;
+                }
+            }
+            if (dogs.isEmpty()) {
+                dogsByOwner.remove(owner.getId());
+                Owner registered = ownerRegistry.remove(owner.getId());
+                registered.removeListener(ownerWatcher);
+                ownerNameIndex.remove(owner.getId(), registered.getName());
+            }
+        }
     }
 
     /**
-     * Lists owners for a specific dog.
-     *
-     * @param dogID ID of the dog
-     * @return Owner list or message.
+     * Starts tracking a dog that has just been placed in dogsArray.
      */
-    public String listAllOwnersByDogID(int dogID) {
-        if (!isValidDogID(dogID)) return "Dog not found";
-
-        int index = getDogIndexByID(dogID);
-        if (index == -1) return "Dog not found";
-
-        ArrayList<Owner> ownerList = dogsArray.get(index).getOwners();
-        if (ownerList.isEmpty()) return "No Owners have that dog";
-
-        StringBuilder result = new StringBuilder();
-        for (Owner owner : ownerList) result.append(owner.toString()).append("\n");
-
-        return result.toString();
+    private void watchDog(Dog dog) {
+        if (watchedDogs.merge(dog, 1, Integer::sum) == 1) dog.addListener(dogWatcher);
+        indexOwners(dog);
     }
 
     /**
-     * Lists all unique owners in the system.
-     *
-     * @return All owners or a message.
+     * Stops tracking a dog that has just been taken out of dogsArray.
      */
-    public String listOwners() {
-        ArrayList<Owner> owners = getOwners();
-        if (owners.isEmpty()) return "There are no owners at the moment.";
-
-        StringBuilder result = new StringBuilder();
-        for (Owner owner : owners) result.append(owner.toString()).append("\n");
-
-        return result.toString();
+    private void unwatchDog(Dog dog) {
+        if (watchedDogs.merge(dog, -1, Integer::sum) == 0) {
+            watchedDogs.remove(dog);
+            dog.removeListener(dogWatcher);
+        }
+        unindexOwners(dog, dog.getOwners());
     }
 
     /**
-     * Lists dogs that stayed in the kennel more than the specified number of days.
-     *
-     * @param days threshold of days
-     * @return Matching dogs or message.
+     * Starts watching every dog in dogsArray and rebuilds the indexes.
      */
-    public String listAllDogsThatStayMoreThanDays(int days) {
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment";
-
-        StringBuilder result = new StringBuilder();
+    private void attachDogs() {
+        ownerRegistry.clear();
+        dogsByOwner.clear();
+        ownerNameIndex.clear();
         for (Dog dog : dogsArray) {
-            if (dog.numOfDaysInKennel() > days) {
-                result.append(dog.toString()).append("\n");
-            }
+            watchDog(dog);
         }
-
-        return result.length() == 0 ?
-                "No Dogs stay longer than " + days + " days at the moment" :
-                result.toString();
+        rebuildDogIndex();
     }
 
     /**
-     * Lists dogs in the kennel on a specific weekday (0=Monday, 4=Friday).
+     * Stops watching every dog in dogsArray and every registered owner.
+     */
+    private void detachDogs() {
+        for (Dog dog : watchedDogs.keySet()) {
+            dog.removeListener(dogWatcher);
+        }
+        watchedDogs.clear();
+        for (Owner owner : ownerRegistry.values()) {
+            owner.removeListener(ownerWatcher);
+        }
+    }
+
+    /**
+     * Listener registered on every dog held by this daycare.
+     */
+    private class DogWatcher implements DogListener {
+
+        private int idBeforeChange;
+        private ArrayList<Owner> ownersBeforeChange;
+
+        @Override
+        public void beforeDogChange(Dog dog) {
+            idBeforeChange = dog.getId();
+            ownersBeforeChange = new ArrayList<>(dog.getOwners());
+        }
+
+        @Override
+        public void afterDogChange(Dog dog) {
+            // a dog added more than once is at several positions, each indexed and filed under its owners
+            if (dog.getId() != idBeforeChange) {
+                for (int index : new ArrayList<>(dogIndex.get(idBeforeChange))) {
+                    if (dogsArray.get(index) == dog) {
+                        moveIndexEntry(index, idBeforeChange, dog.getId());
+                    }
+                }
+            }
+            for (int index : dogIndex.get(dog.getId())) {
+                if (dogsArray.get(index) == dog) {
+                    columns.set(index, dog);
+                }
+            }
+            if (!sameOwners(ownersBeforeChange, dog.getOwners())) {
+                for (int i = watchedDogs.get(dog); i > 0; i--) {
+                    unindexOwners(dog, ownersBeforeChange);
+                    indexOwners(dog);
+                }
+            }
+            journalDog(dog);
+        }
+
+        private boolean sameOwners(ArrayList<Owner> before, ArrayList<Owner> after) {
+            if (before.size() != after.size()) return false;
+            for (int i = 0; i < before.size(); i++) {
+                if (before.get(i) != after.get(i)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Journals a dog at every position in dogsArray holding it.
+     */
+    private void journalDog(Dog dog) {
+        if (journal == null) return;
+        BitSet positions = new BitSet();
+        markPositions(dog, positions);
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            journal.logSet(i, dog);
+        }
+    }
+
+    /**
+     * Listener registered on every owner in the owner registry.
+     */
+    private class OwnerWatcher implements OwnerListener {
+
+        private int idBeforeChange;
+        private String nameBeforeChange;
+
+        @Override
+        public void beforeOwnerChange(Owner owner) {
+            idBeforeChange = owner.getId();
+            nameBeforeChange = owner.getName();
+        }
+
+        @Override
+        public void afterOwnerChange(Owner owner) {
+            if (owner.getId() != idBeforeChange) {
+                changeOwnerID(owner);
+            } else {
+                if (!owner.getName().equals(nameBeforeChange)) {
+                    ownerNameIndex.remove(owner.getId(), nameBeforeChange);
+                    ownerNameIndex.add(owner.getId(), owner.getName());
+                }
+                if (journal != null) journal.logOwner(owner);
+            }
+        }
+
+        /**
+         * Files the owner's dogs under the owner's new ID. When another owner is already registered under
+         * that ID, the dogs are given that owner instead, as they would be on load.
+         */
+        private void changeOwnerID(Owner owner) {
+            ownerRegistry.remove(idBeforeChange);
+            ownerNameIndex.remove(idBeforeChange, nameBeforeChange);
+            ArrayList<Dog> dogs = dogsByOwner.remove(idBeforeChange);
+
+            Owner canonical = ownerRegistry.putIfAbsent(owner.getId(), owner);
+            if (canonical == null) {
+                ownerNameIndex.add(owner.getId(), owner.getName());
+                ownerIDs.advanceTo(owner.getId() + 1);
+            } else {
+                owner.removeListener(this);
+                for (Dog dog : dogs) {
+                    dog.getOwners().replaceAll(held -> held == owner ? canonical : held);
+                }
+            }
+            dogsByOwner.computeIfAbsent(owner.getId(), k -> new ArrayList<>()).addAll(dogs);
+            for (Dog dog : dogs) {
+                journalDog(dog);
+            }
+        }
+    }
+    //------------------------------------
+    // LISTING METHODS - Basic and Advanced
+    //------------------------------------
+    //  Each listing has a String version and a version that writes to an Appendable (e.g. System.out
+    //  or a Writer) one row at a time, so large listings start at once and need no large String.
+
+    /**
+     * A listing that writes itself to an Appendable.
+     */
+    public interface Listing {
+
+        /**
+         * Writes the listing.
+         *
+         * @param out where to write
+         * @throws IOException if writing fails
+         */
+        void writeTo(Appendable out) throws IOException;
+    }
+
+    /**
+     * Renders a listing into a String.
+     */
+    private static String render(Listing listing) {
+        StringBuilder result = new StringBuilder();
+        try {
+            listing.writeTo(result);
+        } catch (IOException e) {
+            // StringBuilder does not throw IOException
+            throw new UncheckedIOException(e);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Lists all dogs and their owners.
+     *
+     * @return Formatted list of all dogs in the daycare.
+     */
+    public String listAllDogs() {
+        return render(this::listAllDogs);
+    }
+
+    /**
+     * Writes all dogs and their owners.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void listAllDogs(Appendable out) throws IOException {
+        ensureLoaded();
+        if (dogsArray.isEmpty()) {
+            out.append("There are no dogs registered at the moment");
+            return;
+        }
+
+        ParallelFormatter.writeRows(dogsArray.size(), parallelThreshold, (i, row) -> {
+            Dog dog = dogsArray.get(i);
+            row.append(dog.toString()).append("\nOwners:\n").append(dog.listOwners()).append("\n");
+        }, out);
+    }
+
+    /**
+     * Lists all dogs marked as dangerous.
+     *
+     * @return Formatted list or message if none found.
+     */
+    public String listAllDangerousDogs() {
+        return render(this::listAllDangerousDogs);
+    }
+
+    /**
+     * Writes all dogs marked as dangerous.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void listAllDangerousDogs(Appendable out) throws IOException {
+        ensureLoaded();
+        writeDogs(out, columns.dangerous(), "No Dangerous Breeds at the moment");
+    }
+
+    /**
+     * Lists dogs that match a given breed.
+     *
+     * @param breed Breed name or partial match.
+     * @return List of matching dogs or message if none found.
+     */
+    public String listDogsByBreed(String breed) {
+        return render(out -> listDogsByBreed(breed, out));
+    }
+
+    /**
+     * Writes dogs that match a given breed.
+     *
+     * @param breed Breed name or partial match.
+     * @param out   where to write
+     * @throws IOException if writing fails
+     */
+    public void listDogsByBreed(String breed, Appendable out) throws IOException {
+        ensureLoaded();
+        writeDogs(out, columns.breedContains(breed), "No dog that Breed at the moment");
+    }
+
+    /**
+     * Lists dogs filtered by gender.
+     *
+     * @param gender 'M' or 'F'
+     * @return Matching dogs or message if none found.
+     */
+    public String listDogsByGender(char gender) {
+        return render(out -> listDogsByGender(gender, out));
+    }
+
+    /**
+     * Writes dogs filtered by gender.
+     *
+     * @param gender 'M' or 'F'
+     * @param out    where to write
+     * @throws IOException if writing fails
+     */
+    public void listDogsByGender(char gender, Appendable out) throws IOException {
+        ensureLoaded();
+        writeDogs(out, columns.bySex(gender), "No dog found");
+    }
+
+    /**
+     * Lists all neutered dogs.
+     *
+     * @return Formatted list or message if none found.
+     */
+    public String listNeuteredDogs() {
+        return render(this::listNeuteredDogs);
+    }
+
+    /**
+     * Writes all neutered dogs.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void listNeuteredDogs(Appendable out) throws IOException {
+        ensureLoaded();
+        writeDogs(out, columns.neutered(), "No Neutered dogs at the moment");
+    }
+
+    /**
+     * Lists all dogs associated with a given owner.
+     *
+     * @param owner Owner to match.
+     * @return List of dogs or a message.
+     */
+    public String listAllDogsByOwner(Owner owner) {
+        return render(out -> listAllDogsByOwner(owner, out));
+    }
+
+    /**
+     * Writes all dogs associated with a given owner.
+     *
+     * @param owner Owner to match.
+     * @param out   where to write
+     * @throws IOException if writing fails
+     */
+    public void listAllDogsByOwner(Owner owner, Appendable out) throws IOException {
+        ensureLoaded();
+        if (dogsArray.isEmpty()) {
+            out.append("There are no dogs registered at the moment.");
+            return;
+        }
+
+        ArrayList<Dog> foundDogs = searchDogsByOwner(owner);
+        if (foundDogs.isEmpty()) {
+            out.append("No Dogs have that owner.");
+            return;
+        }
+
+        for (Dog dog : foundDogs) out.append(dog.toString()).append("\n");
+    }
+
+    /**
+     * Lists all dogs that belong to an owner with the specified ID.
+     *
+     * @param ownerID ID of the owner.
+     * @return List or not-found message.
+     */
+    public String listDogsByOwnerID(int ownerID) {
+        ensureLoaded();
+        Owner owner = getOwner(ownerID);
+        return owner == null ? "Owner with ID " + ownerID + " not found." : listAllDogsByOwner(owner);
+    }
+
+    /**
+     * Lists dogs by owner's name (partial match).
+     *
+     * @param name Part or full name of the owner.
+     * @return Formatted dog list per owner.
+     */
+    public String listDogsByOwnerName(String name) {
+        return render(out -> listDogsByOwnerName(name, out));
+    }
+
+    /**
+     * Writes dogs by owner's name (partial match), grouped by owner.
+     *
+     * @param name Part or full name of the owner.
+     * @param out  where to write
+     * @throws IOException if writing fails
+     */
+    public void listDogsByOwnerName(String name, Appendable out) throws IOException {
+        ensureLoaded();
+        BitSet ids = ownersNamed(name);
+        if (ids.isEmpty()) {
+            out.append("No owners found with name containing: ").append(name);
+            return;
+        }
+
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            Owner owner = ownerRegistry.get(id);
+            out.append("Dogs owned by ").append(owner.getName())
+                    .append(" (ID: ").append(String.valueOf(owner.getId())).append("):\n");
+            listAllDogsByOwner(owner, out);
+            out.append("\n");
+        }
+    }
+
+    /**
+     * Lists dogs whose owners match a given name part.
+     *
+     * @param namePart partial owner name
+     * @return List of dogs or message.
+     */
+    public String getDogsByOwnersName(String namePart) {
+        return render(out -> getDogsByOwnersName(namePart, out));
+    }
+
+    /**
+     * Writes dogs whose owners match a given name part.
+     *
+     * @param namePart partial owner name
+     * @param out      where to write
+     * @throws IOException if writing fails
+     */
+    public void getDogsByOwnersName(String namePart, Appendable out) throws IOException {
+        ensureLoaded();
+        if (dogsArray.isEmpty()) {
+            out.append("There are no dogs registered at the moment.");
+            return;
+        }
+        writeDogs(out, positionsOfOwnersNamed(namePart), "No Dogs have that owner");
+    }
+
+    /**
+     * Lists owners for a specific dog.
+     *
+     * @param dogID ID of the dog
+     * @return Owner list or message.
+     */
+    public String listAllOwnersByDogID(int dogID) {
+        return render(out -> listAllOwnersByDogID(dogID, out));
+    }
+
+    /**
+     * Writes owners for a specific dog.
+     *
+     * @param dogID ID of the dog
+     * @param out   where to write
+     * @throws IOException if writing fails
+     */
+    public void listAllOwnersByDogID(int dogID, Appendable out) throws IOException {
+        ensureLoaded();
+        int index = getDogIndexByID(dogID);
+        if (index == -1) {
+            out.append("Dog not found");
+            return;
+        }
+
+        ArrayList<Owner> ownerList = dogsArray.get(index).getOwners();
+        if (ownerList.isEmpty()) {
+            out.append("No Owners have that dog");
+            return;
+        }
+
+        for (Owner owner : ownerList) out.append(owner.toString()).append("\n");
+    }
+
+    /**
+     * Lists all unique owners in the system.
+     *
+     * @return All owners or a message.
+     */
+    public String listOwners() {
+        return render(this::listOwners);
+    }
+
+    /**
+     * Writes all unique owners in the system.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void listOwners(Appendable out) throws IOException {
+        ensureLoaded();
+        if (ownerRegistry.isEmpty()) {
+            out.append("There are no owners at the moment.");
+            return;
+        }
+
+        for (Owner owner : ownerRegistry.values()) out.append(owner.toString()).append("\n");
+    }
+
+    /**
+     * Hands each registered owner, with the dogs registered to them, to the given action. The dogs are read
+     * from the owner index kept up to date as dogs and owners change, so the whole roster is grouped in one
+     * pass rather than a scan per owner. Owners come in the same order as {@link #getOwners()}.
+     *
+     * @param action receives each owner and a read-only list of their dogs
+     */
+    public void forEachOwner(BiConsumer<Owner, List<Dog>> action) {
+        ensureLoaded();
+        for (Owner owner : ownerRegistry.values()) {
+            ArrayList<Dog> dogs = dogsByOwner.get(owner.getId());
+            action.accept(owner, dogs == null ? List.of() : Collections.unmodifiableList(dogs));
+        }
+    }
+
+    /**
+     * Builds the owner report: every owner with their phone number and dogs.
+     *
+     * @return the report or a message if there are no owners.
+     */
+    public String ownerReport() {
+        return render(this::ownerReport);
+    }
+
+    /**
+     * Writes the owner report: every owner with their phone number and dogs.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void ownerReport(Appendable out) throws IOException {
+        ensureLoaded();
+        if (ownerRegistry.isEmpty()) {
+            out.append("No owners found.\n");
+            return;
+        }
+
+        Owner[] owners = ownerRegistry.values().toArray(new Owner[0]);
+        ParallelFormatter.writeRows(owners.length, parallelThreshold, (i, row) -> {
+            Owner owner = owners[i];
+            row.append("Owner: ").append(owner.getName()).append(" (ID: ").append(owner.getId()).append(")\n");
+            row.append("Phone: ").append(owner.getPhoneNumber()).append("\n");
+
+            ArrayList<Dog> dogs = dogsByOwner.get(owner.getId());
+            if (dogs == null || dogs.isEmpty()) {
+                row.append("  No dogs assigned.\n\n");
+            } else {
+                for (Dog dog : dogs) {
+                    row.append("  - ").append(dog.getName()).append(" (").append(dog.getBreed()).append(")\n");
+                }
+                row.append("\n");
+            }
+        }, out);
+    }
+
+    /**
+     * Lists dogs that stayed in the kennel more than the specified number of days.
+     *
+     * @param days threshold of days
+     * @return Matching dogs or message.
+     */
+    public String listAllDogsThatStayMoreThanDays(int days) {
+        return render(out -> listAllDogsThatStayMoreThanDays(days, out));
+    }
+
+    /**
+     * Writes dogs that stayed in the kennel more than the specified number of days.
+     *
+     * @param days threshold of days
+     * @param out  where to write
+     * @throws IOException if writing fails
+     */
+    public void listAllDogsThatStayMoreThanDays(int days, Appendable out) throws IOException {
+        ensureLoaded();
+        writeDogs(out, columns.stayingMoreThan(days), "No Dogs stay longer than " + days + " days at the moment");
+    }
+
+    /**
+     * Lists dogs in the kennel on a specific weekday (0=Monday, 4=Friday).
      *
      * @param day index of the day
      * @return Formatted dog list or error message.
      */
-    public String listDogsByDayOfWeek(int day) {
-        if (!Helper.validRange(day, 0, 4)) return "Invalid day selected";
-        if (dogsArray.isEmpty()) return "There are no dogs registered at the moment";
+    public String listDogsByDayOfWeek(int day) {
+        return render(out -> listDogsByDayOfWeek(day, out));
+    }
+
+    /**
+     * Writes dogs in the kennel on a specific weekday (0=Monday, 4=Friday).
+     *
+     * @param day index of the day
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void listDogsByDayOfWeek(int day, Appendable out) throws IOException {
+        ensureLoaded();
+        if (!Helper.validRange(day, 0, 4)) {
+            out.append("Invalid day selected");
+            return;
+        }
+        if (dogsArray.isEmpty()) {
+            out.append("There are no dogs registered at the moment");
+            return;
+        }
+
+        String[] dayNames = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday"};
+        BitSet roster = columns.onDay(day);
+        if (roster.isEmpty()) {
+            out.append("No Dogs in the kennel on ").append(dayNames[day]);
+            return;
+        }
+
+        out.append("Dogs in the kennel on ").append(dayNames[day]).append(":\n\n");
+        int[] positions = roster.stream().toArray();
+        ParallelFormatter.writeRows(positions.length, parallelThreshold, (i, row) ->
+                row.append(i + 1).append(": ").append(dogsArray.get(positions[i]).toString()).append("\n"), out);
+        out.append("\nTotal dogs: ").append(String.valueOf(positions.length));
+    }
+
+    /**
+     * Writes the dogs at the given positions one per line, or a message when there are none.
+     */
+    private void writeDogs(Appendable out, BitSet positions, String noneFound) throws IOException {
+        if (dogsArray.isEmpty()) {
+            out.append("There are no dogs registered at the moment");
+        } else if (positions.isEmpty()) {
+            out.append(noneFound);
+        } else {
+            int[] rows = positions.stream().toArray();
+            ParallelFormatter.writeRows(rows.length, parallelThreshold, (i, row) ->
+                    row.append(dogsArray.get(rows[i]).toString()).append("\n"), out);
+        }
+    }
+
+    //-------------------------------------
+    //  Counting Methods
+    //-------------------------------------
+
+    /**
+     * @return Total number of dogs
+     */
+    public int numberOfDogs() {
+        return lazyDogs != null ? lazyDogs.size() : dogsArray.size();
+    }
+
+    /**
+     * @return Number of dogs marked as dangerous
+     */
+    public int numberOfDangerousDogs() {
+        return lazyDogs != null ? lazyDogs.countDangerous() : columns.countDangerous();
+    }
+
+    /**
+     * @return Number of neutered dogs
+     */
+    public int numberOfNeuteredDogs() {
+        return lazyDogs != null ? lazyDogs.countNeutered() : columns.countNeutered();
+    }
+
+    /**
+     * @return Combined weekly bill for all dogs
+     */
+    public double getWeeklyIncome() {
+        return getWeeklyIncomeInCents() / 100.0;
+    }
+
+    /**
+     * @return Combined weekly bill for all dogs, in cents
+     */
+    public long getWeeklyIncomeInCents() {
+        return lazyDogs != null ? lazyDogs.weeklyIncomeCents() : columns.weeklyIncomeCents();
+    }
+
+    /**
+     * @param day index of the day (0=Monday, 4=Friday)
+     * @return Number of dogs in the kennel on that day, 0 for an invalid day
+     */
+    public int numberOfDogsOnDay(int day) {
+        if (!Helper.validRange(day, 0, 4)) return 0;
+        return lazyDogs != null ? lazyDogs.countOnDay(day) : columns.countOnDay(day);
+    }
+
+    /**
+     * @return Total number of kennel days booked across all dogs for the week
+     */
+    public int totalKennelDays() {
+        return lazyDogs != null ? lazyDogs.totalKennelDays() : columns.totalKennelDays();
+    }
+
+    /**
+     * @return Average number of days dogs stay in the kennel
+     */
+    public float getAverageNumDaysPerWeek() {
+        return (float) totalKennelDays() / numberOfDogs();
+    }
+
+    //------------------------------
+    //  FINDING METHODS
+    //------------------------------
+
+    /**
+     * Gets a unique list of owners from all dogs.
+     *
+     * @return List of unique owners.
+     */
+    public ArrayList<Owner> getOwners() {
+        ensureLoaded();
+        return new ArrayList<>(ownerRegistry.values());
+    }
+
+    /**
+     * Finds a specific owner by ID.
+     *
+     * @param id the owner's ID
+     * @return the Owner or null
+     */
+    public Owner getOwner(int id) {
+        ensureLoaded();
+        return ownerRegistry.get(id);
+    }
+
+    /**
+     * Gets the dogs registered to the owner with the given ID.
+     *
+     * @param ownerID the owner's ID
+     * @return list of dogs, empty if the owner is unknown
+     */
+    public ArrayList<Dog> getDogsByOwnerID(int ownerID) {
+        ensureLoaded();
+        ArrayList<Dog> dogs = dogsByOwner.get(ownerID);
+        return dogs == null ? new ArrayList<>() : new ArrayList<>(dogs);
+    }
+
+    /**
+     * Finds a dog by exact name match.
+     *
+     * @param name the name
+     * @return the dog or null
+     */
+    public Dog getDog(String name) {
+        ensureLoaded();
+        BitSet candidates = columns.nameContains(name);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            Dog dog = dogsArray.get(i);
+            if (dog.getName().equals(name)) return dog;
+        }
+        return null;
+    }
+
+    /**
+     * Finds a dog by owner's name, breed, and age.
+     *
+     * @param ownerName the dog name (likely misnamed param)
+     * @param breed     the breed
+     * @param age       the age
+     * @return the matched dog or null
+     */
+    public Dog findDogByOwnerAndBreedAndAge(String ownerName, String breed, int age) {
+        ensureLoaded();
+        BitSet candidates = columns.nameContains(ownerName);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            Dog dog = dogsArray.get(i);
+            if (dog.getAge() == age && dog.getName().equals(ownerName) && dog.getBreed().equals(breed)) {
+                return dog;
+            }
+        }
+        return null;
+    }
+
+    //------------------------------
+    //  SEARCHING METHODS
+    //------------------------------
+
+    /**
+     * Starts a query that can combine any of the filters offered by the listing methods.
+     *
+     * @return a new, unfiltered query over this daycare's dogs
+     */
+    public DogQuery query() {
+        ensureLoaded();
+        return new DogQuery(this);
+    }
+
+    /**
+     * Searches for dogs whose owners match a name part.
+     *
+     * @param namePart partial name
+     * @return list of matching dogs
+     */
+    public ArrayList<Dog> searchDogsByOwnerName(String namePart) {
+        ensureLoaded();
+        BitSet positions = positionsOfOwnersNamed(namePart);
+
+        ArrayList<Dog> result = new ArrayList<>();
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            result.add(dogsArray.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Searches for all dogs associated with a given owner.
+     *
+     * @param owner the owner
+     * @return list of dogs
+     */
+    public ArrayList<Dog> searchDogsByOwner(Owner owner) {
+        ensureLoaded();
+        ArrayList<Dog> result = new ArrayList<>();
+        if (owner == null) return result;
+
+        for (Dog dog : getDogsByOwnerID(owner.getId())) {
+            if (dog.getOwners().contains(owner)) result.add(dog);
+        }
+        return result;
+    }
+
+    /**
+     * Searches dogs by partial name.
+     *
+     * @param namePart part of the dog's name
+     * @return formatted string of matches
+     */
+    public String searchDogsByName(String namePart) {
+        return render(out -> searchDogsByName(namePart, out));
+    }
+
+    /**
+     * Writes dogs matching a partial name, numbered by their position in the daycare.
+     *
+     * @param namePart part of the dog's name
+     * @param out      where to write
+     * @throws IOException if writing fails
+     */
+    public void searchDogsByName(String namePart, Appendable out) throws IOException {
+        ensureLoaded();
+        if (dogsArray.isEmpty()) {
+            out.append("No dogs registered.");
+            return;
+        }
+
+        BitSet matches = columns.nameContains(namePart);
+        if (matches.isEmpty()) {
+            out.append("No dogs found with that name.");
+            return;
+        }
+
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            out.append(String.valueOf(i + 1)).append(": ").append(dogsArray.get(i).toString()).append("\n");
+        }
+    }
+
+    //---------------------------------
+    //  Methods for Persistence
+    //---------------------------------
+
+    /**
+     * File the daycare is kept in between runs, as a binary snapshot.
+     */
+    public static final String SNAPSHOT_FILE_NAME = "daycare.dat";
+
+    /**
+     * XML file the daycare was kept in by earlier versions, still used for import and export.
+     */
+    public static final String XML_FILE_NAME = "daycare.xml";
+
+    /**
+     * Formats the daycare can be saved in.
+     */
+    public enum FileFormat {
+        /**
+         * XStream object-stream XML, readable by earlier versions.
+         */
+        XML,
+        /**
+         * Compact binary snapshot, quickest to load.
+         */
+        BINARY;
+
+        /**
+         * @param fileName name of a daycare file
+         * @return BINARY for names ending in ".dat", XML for anything else
+         */
+        public static FileFormat forFile(String fileName) {
+            return fileName.toLowerCase().endsWith(".dat") ? BINARY : XML;
+        }
+    }
+
+    /**
+     * Loads daycare data from the snapshot file (daycare.dat) and replays the changes journaled since it was
+     * written, then opens a journal for further changes. When there is no snapshot yet the XML file
+     * (daycare.xml) is loaded instead, and the journal starts with the first {@link #save()}.
+     *
+     * @throws Exception if loading fails
+     */
+    public void load() throws Exception {
+        if (Files.exists(Path.of(SNAPSHOT_FILE_NAME))) {
+            open(SNAPSHOT_FILE_NAME);
+        } else {
+            load(XML_FILE_NAME);
+        }
+    }
+
+    /**
+     * Loads daycare data from a snapshot file, replays the changes journaled since it was written and
+     * opens a journal beside it, so that {@link #save()} records further changes there.
+     *
+     * @param fileName the snapshot file
+     * @throws Exception if loading fails
+     */
+    public void open(String fileName) throws Exception {
+        Path snapshot = Path.of(fileName).toAbsolutePath().normalize();
+        open(snapshot, BinarySnapshot.read(snapshot));
+    }
+
+    /**
+     * Opens a snapshot file like {@link #open(String)}, from contents already read from it, e.g. by a
+     * {@link BackgroundLoad} that decoded the dogs one at a time.
+     *
+     * @param snapshot the snapshot file, absolute and normalized
+     * @param contents what was read from it
+     * @throws Exception if the diff or journals beside it cannot be read, or the journal cannot be opened
+     */
+    void open(Path snapshot, BinarySnapshot.Contents contents) throws Exception {
+        close();
+        long lastJournal = loadSnapshot(snapshot, contents);
+        // the journal holds the changes from here on
+        changes = null;
+        journal = MutationJournal.create(snapshot, lastJournal + 1, compression);
+        journalSnapshot = snapshot;
+    }
+
+    /**
+     * Loads daycare data like {@link #load()}, but opens the snapshot file lazily (see
+     * {@link #openLazily(String)}).
+     *
+     * @throws Exception if loading fails
+     */
+    public void loadLazily() throws Exception {
+        if (Files.exists(Path.of(SNAPSHOT_FILE_NAME))) {
+            openLazily(SNAPSHOT_FILE_NAME);
+        } else {
+            load(XML_FILE_NAME);
+        }
+    }
+
+    /**
+     * Opens a snapshot file lazily. Only a lightweight index of it is read: the daycare's fields and each
+     * dog's ID, name, flags, attendance and file offset. That is enough for the counts, the weekly income
+     * and finding a dog by ID or position; those dogs are decoded, with their owners, the first time they
+     * are asked for and kept in a cache of {@link #getLazyCacheSize()} dogs.
+     * <p>
+     * Anything else, including any change (also one made through a dog's setters), first loads the rest of
+     * the daycare and opens the journal as {@link #open(String)} does. Dogs already handed out stay the
+     * daycare's own. When the journal holds changes not yet in the snapshot, the file is opened in full
+     * straight away.
+     *
+     * @param fileName the snapshot file
+     * @throws Exception if the snapshot cannot be read
+     */
+    public void openLazily(String fileName) throws Exception {
+        close();
+        Path snapshot = Path.of(fileName).toAbsolutePath().normalize();
+        BinarySnapshot.Index index = BinarySnapshot.index(snapshot);
+        if (MutationJournal.hasRecords(snapshot, index.generation) || Files.exists(SnapshotDelta.fileFor(snapshot))) {
+            open(fileName);
+            return;
+        }
+
+        restore(index.name, index.maxNumberOfDogs, new ArrayList<>(), index.dogAutoID, index.ownerAutoID);
+        lazyDogs = new LazyDogs(index, lazyCacheSize, new LazyDogWatcher());
+        lazySnapshot = snapshot;
+    }
+
+    /**
+     * @return true if the changes to this daycare are being journaled beside the given snapshot file
+     */
+    boolean isJournaledTo(Path snapshot) {
+        return journal != null && snapshot.toAbsolutePath().normalize().equals(journalSnapshot);
+    }
+
+    /**
+     * @return true once every dog has been loaded, false while the daycare is open lazily
+     */
+    public boolean isFullyLoaded() {
+        return lazyDogs == null;
+    }
 
-        String[] dayNames = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday"};
-        StringBuilder result = new StringBuilder("Dogs in the kennel on " + dayNames[day] + ":\n\n");
-        int counter = 0;
+    /**
+     * @return most dogs kept decoded while the daycare is open lazily
+     */
+    public int getLazyCacheSize() {
+        return lazyCacheSize;
+    }
 
-        for (Dog dog : dogsArray) {
-            if (dog.isInKennel(day)) {
-                counter++;
-                result.append(counter).append(": ").append(dog.toString()).append("\n");
-            }
+    /**
+     * Sets the lazy cache size, for snapshots opened from now on.
+     *
+     * @param lazyCacheSize number of dogs (1 or more; other values are ignored)
+     */
+    public void setLazyCacheSize(int lazyCacheSize) {
+        if (lazyCacheSize >= 1) {
+            this.lazyCacheSize = lazyCacheSize;
         }
-
-        return counter == 0
-                ? "No Dogs in the kennel on " + dayNames[day]
-                : result.append("\nTotal dogs: ").append(counter).toString();
     }
 
-    //-------------------------------------
-    //  Counting Methods
-    //-------------------------------------
-
     /**
-     * @return Total number of dogs
+     * @return the compression of the snapshots, journals and XML files written
      */
-    public int numberOfDogs() {
-        return dogsArray.size();
+    public Compression getCompression() {
+        return compression;
     }
 
     /**
-     * @return Number of dogs marked as dangerous
+     * Sets the compression of the snapshots, journals and XML files written from now on. Files are read
+     * whatever their compression, so files written before the change still load. A journal already open
+     * keeps its compression until the next snapshot.
+     *
+     * @param compression the compression (null is ignored)
      */
-    public int numberOfDangerousDogs() {
-        int result = 0;
-        for (Dog dog : dogsArray) {
-            if (dog.isDangerousBreed()) result++;
+    public void setCompression(Compression compression) {
+        if (compression != null) {
+            this.compression = compression;
         }
-        return result;
     }
 
     /**
-     * @return Number of neutered dogs
+     * Loads the rest of a lazily opened snapshot, if one is open.
      */
-    public int numberOfNeuteredDogs() {
-        int neutered = 0;
-        for (Dog dog : dogsArray) {
-            if (dog.isNeutered()) neutered++;
+    private void ensureLoaded() {
+        if (lazyDogs != null) {
+            loadInFull(null);
         }
-        return neutered;
     }
 
     /**
-     * @return Combined weekly bill for all dogs
+     * Decodes every dog not yet handed out, rebuilds the indexes and opens the journal.
+     *
+     * @param changed a dog handed out lazily that has just been changed through its setters, or null
+     * @throws UncheckedIOException if the journal cannot be opened
      */
-    public double getWeeklyIncome() {
-        double result = 0;
-        for (Dog dog : dogsArray) {
-            result += dog.getWeeklyBill();
+    private void loadInFull(Dog changed) {
+        LazyDogs lazy = lazyDogs;
+        int changedPosition = changed == null ? -1 : lazy.positionOf(changed);
+
+        ArrayList<Dog> dogs = new ArrayList<>(lazy.size());
+        for (int i = 0; i < lazy.size(); i++) {
+            Dog dog = lazy.held(i);
+            dogs.add(dog != null ? dog : lazy.index().dog(i));
+        }
+        restore(name, maxNumberOfDogs, dogs, dogIDs.peek(), ownerIDs.peek());
+
+        Path snapshot = lazySnapshot;
+        lazySnapshot = null;
+        try {
+            TreeMap<Long, Path> journals = MutationJournal.journalFiles(snapshot);
+            long lastJournal = lazy.index().generation - 1;
+            if (!journals.isEmpty()) lastJournal = Math.max(lastJournal, journals.lastKey());
+            journal = MutationJournal.create(snapshot, lastJournal + 1, compression);
+            journalSnapshot = snapshot;
+        } catch (IOException e) {
+            // the daycare is loaded; without a journal the next save writes it in full
+            throw new UncheckedIOException(e);
+        }
+        if (changedPosition != -1) {
+            journal.logSet(changedPosition, changed);
         }
-        return result;
     }
 
     /**
-     * @return Average number of days dogs stay in the kennel
+     * Listener on the dogs handed out while the daycare is open lazily.
      */
-    public float getAverageNumDaysPerWeek() {
-        float result = 0;
-        for (Dog dog : dogsArray) {
-            result += dog.numOfDaysInKennel();
+    private class LazyDogWatcher implements DogListener {
+
+        @Override
+        public void beforeDogChange(Dog dog) {
+        }
+
+        @Override
+        public void afterDogChange(Dog dog) {
+            if (lazyDogs != null) {
+                loadInFull(dog);
+            }
         }
-        return result / dogsArray.size();
     }
 
-    //------------------------------
-    //  FINDING METHODS
-    //------------------------------
+    /**
+     * Loads daycare data from a file, in the format given by its extension.
+     *
+     * @param fileName the file to read
+     * @throws Exception if loading fails
+     */
+    public void load(String fileName) throws Exception {
+        load(fileName, FileFormat.forFile(fileName));
+    }
 
     /**
-     * Gets a unique list of owners from all dogs.
+     * Loads daycare data from a file in the given format.
+     * <p>
+     * Snapshots are read through a memory-mapped file. XML is read with a StAX pull parser and the dogs are
+     * bound one at a time, so apart from the dogs already loaded only one record is held in memory. XML files
+     * written by older versions, where a dog or owner may refer back to one stored in an earlier record, are
+     * bound in a single pass instead.
      *
-     * @return List of unique owners.
+     * @param fileName the file to read
+     * @param format   the format the file is in
+     * @throws Exception if loading fails
      */
-    public ArrayList<Owner> getOwners() {
-        HashMap<Integer, Owner> uniqueOwners = new HashMap<>();
-        for (Dog dog : dogsArray) {
-            for (Owner owner : dog.getOwners()) {
-                uniqueOwners.putIfAbsent(owner.getId(), owner);
+    public void load(String fileName, FileFormat format) throws Exception {
+        if (format == FileFormat.BINARY) {
+            loadSnapshot(Path.of(fileName), BinarySnapshot.read(Path.of(fileName)));
+            return;
+        }
+
+        XStream xstream = DayCareXStream.get();
+
+        DayCare loadedData;
+        try (Reader in = new InputStreamReader(Compression.decode(Files.newInputStream(Path.of(fileName))))) {
+            loadedData = readXml(xstream, new StaxDriver().createReader(in));
+        } catch (XStreamException e) {
+            try (ObjectInputStream is = xstream.createObjectInputStream(
+                    new InputStreamReader(Compression.decode(Files.newInputStream(Path.of(fileName)))))) {
+                loadedData = (DayCare) is.readObject();
             }
+            // read through DayCareXStream.LegacyDayCareConverter, which indexed the dogs it read; they are
+            // this daycare's now
+            loadedData.detachDogs();
         }
-        return new ArrayList<>(uniqueOwners.values());
+
+        restore(loadedData.getName(), loadedData.getMaxNumberOfDogs(), loadedData.getDogsArray(),
+                loadedData.getDogAutoID(), loadedData.getOwnerAutoID());
     }
 
     /**
-     * Finds a specific owner by ID.
+     * Loads a snapshot, lays over it the diff beside it if that was written against this snapshot (see
+     * {@link #saveDelta(String)}), and replays the journals beside it, journaling the result as one change if
+     * this daycare's own journal is open.
      *
-     * @param id the owner's ID
-     * @return the Owner or null
+     * @param snapshot the snapshot file
+     * @param contents what was read from it
+     * @return the number of the last journal replayed, or the snapshot's generation - 1 if there were none
      */
-    public Owner getOwner(int id) {
-        if (getOwnerIndexByID(id) == -1) return null;
-        else {
-            return getOwners().get(getOwnerIndexByID(id));
+    private long loadSnapshot(Path snapshot, BinarySnapshot.Contents contents) throws IOException {
+        MutationJournal open = journal;
+        long lastJournal;
+        journal = null;
+        try {
+            SnapshotDelta delta = SnapshotDelta.read(snapshot);
+            if (delta != null && delta.base().equals(SnapshotDelta.base(snapshot))) {
+                BinarySnapshot.Contents fields = delta.contents();
+                ArrayList<Dog> dogs = delta.apply(contents.dogs());
+                restore(fields.name(), fields.maxNumberOfDogs(), dogs, fields.dogAutoID(), fields.ownerAutoID());
+                changes = new DogChanges(snapshot.toAbsolutePath().normalize(), contents.dogs().size(), delta, dogs);
+            } else {
+                restore(contents.name(), contents.maxNumberOfDogs(), contents.dogs(),
+                        contents.dogAutoID(), contents.ownerAutoID());
+            }
+            lastJournal = MutationJournal.replay(snapshot, contents.generation(), new JournalReplay());
+        } finally {
+            journal = open;
         }
+        journalReset();
+        return lastJournal;
     }
 
     /**
-     * Finds a dog by exact name match.
+     * Replaces this daycare's saved fields with loaded ones and rebuilds the indexes. Used by the loaders
+     * here and by the {@link DayCareRepository} implementations. The ID allocators are moved up to the saved
+     * auto IDs and past the IDs of the loaded dogs and owners, in case the saved auto IDs lag behind them. They
+     * never move back, as other threads may be taking IDs from them: an ID handed out before the load is not
+     * handed out again.
+     */
+    void restore(String name, int maxNumberOfDogs, ArrayList<Dog> dogs, int dogAutoID, int ownerAutoID) {
+        if (lazyDogs != null) {
+            lazyDogs.release();
+            lazyDogs = null;
+        }
+        this.name = name;
+        this.maxNumberOfDogs = maxNumberOfDogs;
+        dogIDs.advanceTo(dogAutoID);
+        ownerIDs.advanceTo(ownerAutoID);
+        detachDogs();
+        this.dogsArray = dogs;
+        attachDogs();
+        changes = null;
+        journalReset();
+    }
+
+    /**
+     * Saves the changes made since the last save to the journal beside the open snapshot file (see
+     * {@link #open(String)}), so the cost follows the size of the change. Once the journal grows past the
+     * compaction threshold it is folded into a new snapshot on a background thread.
+     * <p>
+     * When no journal is open yet (e.g. after importing XML) the whole daycare is written to the snapshot
+     * file (daycare.dat) and the journal starts from there.
      *
-     * @param name the name
-     * @return the dog or null
+     * @throws Exception if saving fails, or the previous background snapshot write failed
      */
-    public Dog getDog(String name) {
-        for (Dog dog : dogsArray) {
-            if (dog.getName().equals(name)) return dog;
+    public void save() throws Exception {
+        if (lazyDogs != null) {
+            // nothing has changed since the snapshot was opened, or it would have been loaded in full
+            return;
         }
-        return null;
+        if (journal == null) {
+            saveSnapshot(Path.of(SNAPSHOT_FILE_NAME));
+            return;
+        }
+        syncJournal();
     }
 
     /**
-     * Finds a dog by owner's name, breed, and age.
+     * Saves like {@link #save()}, but writes whole snapshots on a background thread.
+     * <p>
+     * The journal is synced on the calling thread as before, since its cost follows the size of the change.
+     * When no journal is open yet the daycare is copied, a journal is opened, and the copy is written to the
+     * snapshot file in the background through a temporary file that is forced to disk and renamed over the
+     * old snapshot, so a crash leaves either the old snapshot or the new one. Saves made before that write
+     * has started are folded into it.
      *
-     * @param ownerName the dog name (likely misnamed param)
-     * @param breed     the breed
-     * @param age       the age
-     * @return the matched dog or null
+     * @return completes once everything saved so far is on disk
+     * @throws Exception if syncing the journal fails, or the previous background write failed
      */
-    public Dog findDogByOwnerAndBreedAndAge(String ownerName, String breed, int age) {
-        for (Dog dog : dogsArray) {
-            if (dog.getAge() == age && dog.getName().equals(ownerName) && dog.getBreed().equals(breed)) {
-                return dog;
+    public CompletableFuture<Void> saveAsync() throws Exception {
+        if (lazyDogs != null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (journal == null) {
+            startSnapshot(Path.of(SNAPSHOT_FILE_NAME).toAbsolutePath().normalize());
+        } else {
+            syncJournal();
+        }
+        return snapshotWrite == null ? CompletableFuture.completedFuture(null) : snapshotWrite;
+    }
+
+    /**
+     * Syncs the journal and compacts it once it has grown past the compaction threshold.
+     */
+    private void syncJournal() throws Exception {
+        if (journalAwaitsSnapshot) {
+            try {
+                awaitSnapshotWrite();
+            } catch (Exception e) {
+                // the journal follows a snapshot that was never written; start over on the next save
+                journal.close();
+                journal = null;
+                journalSnapshot = null;
+                journalAwaitsSnapshot = false;
+                throw e;
             }
+            journalAwaitsSnapshot = false;
+        } else if (snapshotWrite != null && snapshotWrite.isDone()) {
+            awaitSnapshotWrite();
+        }
+
+        if (dogIDs.peek() != journaledDogID || ownerIDs.peek() != journaledOwnerID) {
+            // IDs handed out since the last change, e.g. a block reserved for a batch not yet added
+            journalSettings();
+        }
+        journal.sync();
+        if (snapshotWrite == null && journal.size() > journalCompactionThreshold) {
+            compact();
         }
-        return null;
     }
 
-    //------------------------------
-    //  SEARCHING METHODS
-    //------------------------------
+    /**
+     * @return journal size in bytes above which {@link #save()} compacts the journal into a new snapshot
+     */
+    public long getJournalCompactionThreshold() {
+        return journalCompactionThreshold;
+    }
 
     /**
-     * Searches for dogs whose owners match a name part.
+     * Sets the journal compaction threshold.
      *
-     * @param namePart partial name
-     * @return list of matching dogs
+     * @param journalCompactionThreshold size in bytes (0 or more; other values are ignored)
      */
-    public ArrayList<Dog> searchDogsByOwnerName(String namePart) {
-        ArrayList<Dog> result = new ArrayList<>();
-        for (Dog dog : dogsArray) {
-            for (Owner owner : dog.getOwners()) {
-                if (owner.getName().toLowerCase().contains(namePart.toLowerCase())) {
-                    result.add(dog);
-                    break;
-                }
+    public void setJournalCompactionThreshold(long journalCompactionThreshold) {
+        if (journalCompactionThreshold >= 0) {
+            this.journalCompactionThreshold = journalCompactionThreshold;
+        }
+    }
+
+    /**
+     * Waits for background saves to finish and closes the journal. Changes not saved are dropped, as they
+     * would be without a journal.
+     *
+     * @throws Exception if the background snapshot write failed or the journal cannot be closed
+     */
+    public void close() throws Exception {
+        try {
+            saves.awaitIdle();
+            awaitSnapshotWrite();
+        } finally {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+                journalSnapshot = null;
+                journalAwaitsSnapshot = false;
             }
         }
-        return result;
     }
 
     /**
-     * Searches for all dogs associated with a given owner.
+     * Writes the whole daycare as a new snapshot and opens a new journal beside it.
+     */
+    private void saveSnapshot(Path snapshot) throws Exception {
+        close();
+        snapshot = snapshot.toAbsolutePath().normalize();
+        forgetDeltaBase(snapshot);
+        long generation = writeSnapshot(snapshot);
+        journal = MutationJournal.create(snapshot, generation, compression);
+        journalSnapshot = snapshot;
+    }
+
+    /**
+     * Writes the whole daycare as a snapshot numbered after any journal beside it, then deletes those
+     * journals, as the snapshot now holds their changes.
      *
-     * @param owner the owner
-     * @return list of dogs
+     * @return the snapshot's generation
      */
-    public ArrayList<Dog> searchDogsByOwner(Owner owner) {
-        ArrayList<Dog> result = new ArrayList<>();
+    private long writeSnapshot(Path snapshot) throws IOException {
+        long generation = nextGeneration(snapshot);
+        writeSnapshot(snapshot, generation);
+        return generation;
+    }
+
+    /**
+     * @return the generation of the next snapshot written to the given file: one after its last journal
+     */
+    private static long nextGeneration(Path snapshot) throws IOException {
+        TreeMap<Long, Path> journals = MutationJournal.journalFiles(snapshot);
+        return journals.isEmpty() ? 1 : journals.lastKey() + 1;
+    }
+
+    /**
+     * Replaces the snapshot file with this daycare, as the given generation, then deletes the journals and
+     * the diff the snapshot now holds.
+     */
+    private void writeSnapshot(Path snapshot, long generation) throws IOException {
+        AtomicFile.write(snapshot, out -> compression.writeTo(out, stream -> BinarySnapshot.write(stream, name,
+                maxNumberOfDogs, dogIDs.peek(), ownerIDs.peek(), generation, dogsArray)));
+        MutationJournal.deleteBefore(snapshot, generation);
+        Files.deleteIfExists(SnapshotDelta.fileFor(snapshot));
+    }
+
+    /**
+     * Stops basing delta saves on the given snapshot, which is about to be written in full.
+     */
+    private void forgetDeltaBase(Path snapshot) {
+        if (changes != null && changes.snapshot().equals(snapshot)) changes = null;
+    }
+
+    /**
+     * Opens a journal beside the snapshot file and writes the whole daycare to the snapshot in the
+     * background. The journal's records are not synced until the snapshot is on disk.
+     */
+    private void startSnapshot(Path snapshot) throws Exception {
+        close();
+        forgetDeltaBase(snapshot);
+        long generation = nextGeneration(snapshot);
+        journal = MutationJournal.create(snapshot, generation, compression);
+        journalSnapshot = snapshot;
+        journalAwaitsSnapshot = true;
+
+        DayCare copy = copyForSave();
+        snapshotWrite = saves.submit(snapshot, () -> copy.writeSnapshot(snapshot, generation));
+    }
+
+    /**
+     * Starts a new journal and, in the background, replaces the snapshot with the current state and deletes
+     * the journals it now holds. The state is copied before returning, so later changes are not part of it;
+     * they go to the new journal, which the new snapshot does not cover.
+     */
+    private void compact() throws IOException {
+        if (!journalAwaitsSnapshot) {
+            // the new snapshot holds these records, but the old one is what survives a crash before it is written
+            journal.sync();
+        }
+        long generation = journal.getGeneration() + 1;
+        DayCare copy = copyForSave();
+        journal.close();
+        journal = MutationJournal.create(journalSnapshot, generation, compression);
+
+        Path snapshot = journalSnapshot;
+        snapshotWrite = saves.submit(snapshot, () -> copy.writeSnapshot(snapshot, generation));
+    }
+
+    /**
+     * Waits for the latest background snapshot write, if any, and reports its failure.
+     */
+    private void awaitSnapshotWrite() throws Exception {
+        if (snapshotWrite == null) return;
+        try {
+            snapshotWrite.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            snapshotWrite = null;
+        }
+    }
+
+    /**
+     * Copies the saved fields and the dogs, with their owners, for a background save. The copy shares no
+     * mutable objects with this daycare and has no indexes or journal.
+     */
+    private DayCare copyForSave() {
+        DayCare copy = new DayCare();
+        copy.name = name;
+        copy.maxNumberOfDogs = maxNumberOfDogs;
+        copy.dogIDs.advanceTo(dogIDs.peek());
+        copy.ownerIDs.advanceTo(ownerIDs.peek());
+        copy.compression = compression;
+
+        IdentityHashMap<Owner, Owner> owners = new IdentityHashMap<>();
+        copy.dogsArray.ensureCapacity(dogsArray.size());
         for (Dog dog : dogsArray) {
-            if (dog.getOwners().contains(owner)) result.add(dog);
+            Dog dogCopy = new Dog(dog);
+            dogCopy.getOwners().replaceAll(owner -> owners.computeIfAbsent(owner, Owner::new));
+            copy.dogsArray.add(dogCopy);
         }
-        return result;
+        return copy;
     }
 
     /**
-     * Searches dogs by partial name.
-     *
-     * @param namePart part of the dog's name
-     * @return formatted string of matches
+     * Journals the daycare's name, limit and auto IDs.
      */
-    public String searchDogsByName(String namePart) {
-        if (dogsArray.isEmpty()) return "No dogs registered.";
+    private void journalSettings() {
+        if (journal == null) return;
+        journaledDogID = dogIDs.peek();
+        journaledOwnerID = ownerIDs.peek();
+        journal.logSettings(name, maxNumberOfDogs, journaledDogID, journaledOwnerID);
+    }
 
-        StringBuilder result = new StringBuilder();
-        int index = 1;
+    /**
+     * Journals the whole daycare, after its dogs have been replaced at once.
+     */
+    private void journalReset() {
+        if (journal == null) return;
+        journal.logClear();
         for (Dog dog : dogsArray) {
-            if (dog.getName().toLowerCase().contains(namePart.toLowerCase())) {
-                result.append(index).append(": ").append(dog.toString()).append("\n");
-            }
-            index++;
+            journal.logAppend(dog);
+        }
+        journalSettings();
+    }
+
+    /**
+     * Applies journaled changes while loading, before the journal is open.
+     */
+    private class JournalReplay implements MutationJournal.Target {
+
+        @Override
+        public void append(Dog dog) {
+            appendDog(dog);
+        }
+
+        @Override
+        public void set(int index, Dog dog) {
+            replaceDogAt(index, dog);
+        }
+
+        @Override
+        public void remove(int index) {
+            removeDogAt(index);
+        }
+
+        @Override
+        public void clear() {
+            setDogsArray(new ArrayList<>());
+        }
+
+        @Override
+        public void settings(String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID) {
+            DayCare.this.name = name;
+            DayCare.this.maxNumberOfDogs = maxNumberOfDogs;
+            // IDs of the dogs replayed so far stay taken, as they did when the changes were made
+            dogIDs.advanceTo(dogAutoID);
+            ownerIDs.advanceTo(ownerAutoID);
         }
 
-        return result.length() == 0 ? "No dogs found with that name." : result.toString();
+        @Override
+        public void owner(int id, String name, String phoneNumber) {
+            Owner canonical = ownerRegistry.get(id);
+            if (canonical != null) {
+                updateRegisteredOwner(canonical, name, phoneNumber);
+            }
+        }
     }
 
-    //---------------------------------
-    //  Methods for Persistence
-    //---------------------------------
+    /**
+     * Saves the current daycare data to a file, in the format given by its extension.
+     *
+     * @param fileName the file to write
+     * @throws Exception if saving fails
+     */
+    public void save(String fileName) throws Exception {
+        save(fileName, FileFormat.forFile(fileName));
+    }
 
     /**
-     * Loads daycare data from XML file (daycare.xml).
+     * Saves the current daycare data to a file in the given format.
+     * <p>
+     * XML is written in XStream's object-stream format with the compact names and attributes described in
+     * {@link DayCareXStream}, one dog at a time through a buffered writer. Each dog is written in full,
+     * without references to other records, so the file can be read back record by record.
+     * <p>
+     * Either way the file is written to a temporary file beside it, forced to disk and renamed over the old
+     * file, so a crash leaves either the old contents or the new ones.
      *
-     * @throws Exception if loading fails
+     * @param fileName the file to write
+     * @param format   the format to write
+     * @throws Exception if saving fails
      */
-    @SuppressWarnings("unchecked")
-    public void load() throws Exception {
-        Class<?>[] classes = new Class[]{Dog.class, DayCare.class, Owner.class};
+    public void save(String fileName, FileFormat format) throws Exception {
+        ensureLoaded();
+        if (format == FileFormat.BINARY) {
+            Path snapshot = Path.of(fileName).toAbsolutePath().normalize();
+            if (snapshot.equals(journalSnapshot)) {
+                saveSnapshot(snapshot);
+            } else {
+                forgetDeltaBase(snapshot);
+                writeSnapshot(snapshot);
+            }
+            return;
+        }
+
+        writeXmlFile(Path.of(fileName));
+    }
 
-        XStream xstream = new XStream(new DomDriver());
-        XStream.setupDefaultSecurity(xstream);
-        xstream.allowTypes(classes);
+    /**
+     * Saves the daycare to a file, in the format given by its extension, on a background thread.
+     *
+     * @param fileName the file to write
+     * @return completes once the file has been written
+     * @throws Exception if the daycare's own journal cannot be synced
+     * @see #saveAsync(String, FileFormat)
+     */
+    public CompletableFuture<Void> saveAsync(String fileName) throws Exception {
+        return saveAsync(fileName, FileFormat.forFile(fileName));
+    }
 
-        ObjectInputStream is = xstream.createObjectInputStream(new FileReader("daycare.xml"));
-        DayCare loadedData = (DayCare) is.readObject();
-        is.close();
+    /**
+     * Saves the daycare to a file in the given format on a background thread, as {@link #save(String,
+     * FileFormat)} would. The daycare is copied before returning, so changes made afterwards are not part of
+     * the file. Saves to a file made before its previous background save has started are folded into that
+     * one, which then writes the latest copy.
+     *
+     * @param fileName the file to write
+     * @param format   the format to write
+     * @return completes once the file has been written, or exceptionally if writing it fails
+     * @throws Exception if the file is the open snapshot and its journal cannot be synced
+     */
+    public CompletableFuture<Void> saveAsync(String fileName, FileFormat format) throws Exception {
+        ensureLoaded();
+        Path file = Path.of(fileName).toAbsolutePath().normalize();
+        if (format == FileFormat.BINARY && file.equals(journalSnapshot)) {
+            if (snapshotWrite != null && snapshotWrite.isDone()) {
+                awaitSnapshotWrite();
+            }
+            compact();
+            return snapshotWrite;
+        }
 
-        this.name = loadedData.getName();
-        this.maxNumberOfDogs = loadedData.getMaxNumberOfDogs();
-        this.dogsArray = loadedData.getDogsArray();
-        this.dogAutoID = loadedData.getDogAutoID();
-        this.ownerAutoID = loadedData.getOwnerAutoID();
+        DayCare copy = copyForSave();
+        if (format == FileFormat.BINARY) {
+            forgetDeltaBase(file);
+            return saves.submit(file, () -> copy.writeSnapshot(file));
+        }
+        return saves.submit(file, () -> copy.writeXmlFile(file));
     }
 
     /**
-     * Saves the current daycare data to XML file (daycare.xml).
+     * Saves the daycare to a binary snapshot file, writing only the dogs added, changed or removed since the
+     * snapshot was last written in full. They go to a diff file beside it ({@code <file>.diff}) that replaces
+     * the previous one and is laid over the snapshot when it is loaded. A dog counts as changed once it has
+     * been replaced, or changed through the daycare or through its own or its owners' setters.
+     * <p>
+     * The snapshot is written in full instead, with an empty diff, the first time it is saved this way (or
+     * after it was written by other means) and once the diff would hold more records than half the snapshot's
+     * dogs. When the file is the snapshot whose journal is open, the journal already holds only the changes
+     * and this saves as {@link #save()} does.
      *
+     * @param fileName the snapshot file
      * @throws Exception if saving fails
      */
-    public void save() throws Exception {
-        XStream xstream = new XStream(new DomDriver());
-        ObjectOutputStream out = xstream.createObjectOutputStream(new FileWriter("daycare.xml"));
-        out.writeObject(this);
-        out.close();
+    public void saveDelta(String fileName) throws Exception {
+        ensureLoaded();
+        Path snapshot = Path.of(fileName).toAbsolutePath().normalize();
+        if (snapshot.equals(journalSnapshot)) {
+            save();
+            return;
+        }
+        if (changes != null && changes.snapshot().equals(snapshot)) {
+            SnapshotDelta delta = changes.delta(name, maxNumberOfDogs, dogIDs.peek(), ownerIDs.peek(), dogsArray);
+            if (delta.recordCount() * 2L <= changes.baseSize()) {
+                delta.write(snapshot);
+                return;
+            }
+        }
+
+        writeSnapshot(snapshot);
+        changes = new DogChanges(snapshot, SnapshotDelta.base(snapshot), dogsArray);
+        changes.delta(name, maxNumberOfDogs, dogIDs.peek(), ownerIDs.peek(), dogsArray).write(snapshot);
+    }
+
+    /**
+     * Replaces the file with this daycare as XML.
+     */
+    private void writeXmlFile(Path file) throws IOException {
+        XStream xstream = DayCareXStream.get();
+        AtomicFile.write(file, out -> compression.writeTo(out, stream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream));
+            PrettyPrintWriter xml = new PrettyPrintWriter(writer);
+            writeXml(xstream, xml);
+            xml.flush();
+        }));
+    }
+
+    /**
+     * Reads an object-stream holding one daycare, binding each dog as soon as its element has been read.
+     * The daycare's fields are read from its attributes or, in files from earlier versions, its child
+     * elements. Elements for fields this version does not know are skipped.
+     */
+    private static DayCare readXml(XStream xstream, HierarchicalStreamReader reader) {
+        Mapper mapper = xstream.getMapper();
+        DayCare data = new DayCare();
+        HashMap<Integer, Owner> owners = new HashMap<>();
+        MapBackedDataHolder ownerTable = new MapBackedDataHolder();
+        ownerTable.put(DayCareXStream.OWNER_TABLE, owners);
+
+        reader.moveDown();
+        if (mapper.realClass(reader.getNodeName()) != DayCare.class) {
+            throw new ConversionException("Expected a daycare but found " + reader.getNodeName());
+        }
+        for (String field : new String[]{"name", "maxNumberOfDogs", "dogAutoID", "ownerAutoID"}) {
+            String value = reader.getAttribute(mapper.serializedMember(DayCare.class, field));
+            if (value != null) {
+                data.readField(field, value);
+            }
+        }
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            String field = mapper.realMember(DayCare.class, reader.getNodeName());
+            switch (field) {
+                case "owners" -> {
+                    while (reader.hasMoreChildren()) {
+                        reader.moveDown();
+                        Owner owner = (Owner) xstream.unmarshal(reader);
+                        owners.put(owner.getId(), owner);
+                        reader.moveUp();
+                    }
+                }
+                case "dogsArray" -> {
+                    while (reader.hasMoreChildren()) {
+                        reader.moveDown();
+                        data.dogsArray.add((Dog) xstream.unmarshal(reader, null, ownerTable));
+                        reader.moveUp();
+                    }
+                }
+                default -> data.readField(field, reader.getValue());
+            }
+            reader.moveUp();
+        }
+        reader.moveUp();
+        reader.close();
+        return data;
+    }
+
+    /**
+     * Sets one of the daycare's saved fields from its text. Fields this version does not know are ignored.
+     */
+    private void readField(String field, String value) {
+        switch (field) {
+            case "name" -> name = value;
+            case "maxNumberOfDogs" -> maxNumberOfDogs = Integer.parseInt(value);
+            case "dogAutoID" -> dogIDs.advanceTo(Integer.parseInt(value));
+            case "ownerAutoID" -> ownerIDs.advanceTo(Integer.parseInt(value));
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Writes this daycare as an object-stream holding one daycare element, with its fields as attributes, then
+     * a table of its owners and its dogs, written by XStream. Dogs refer to their owners by ID.
+     */
+    private void writeXml(XStream xstream, HierarchicalStreamWriter writer) {
+        Mapper mapper = xstream.getMapper();
+
+        writer.startNode("object-stream");
+        writer.startNode(mapper.serializedClass(DayCare.class));
+        if (name != null) {
+            writer.addAttribute(mapper.serializedMember(DayCare.class, "name"), name);
+        }
+        writer.addAttribute(mapper.serializedMember(DayCare.class, "maxNumberOfDogs"), String.valueOf(maxNumberOfDogs));
+        writer.addAttribute(mapper.serializedMember(DayCare.class, "dogAutoID"), String.valueOf(dogIDs.peek()));
+        writer.addAttribute(mapper.serializedMember(DayCare.class, "ownerAutoID"), String.valueOf(ownerIDs.peek()));
+
+        LinkedHashMap<Integer, Owner> owners = new LinkedHashMap<>();
+        for (Dog dog : dogsArray) {
+            for (Owner owner : dog.getOwners()) {
+                owners.putIfAbsent(owner.getId(), owner);
+            }
+        }
+        writer.startNode("owners");
+        for (Owner owner : owners.values()) {
+            xstream.marshal(owner, writer);
+        }
+        writer.endNode();
+
+        MapBackedDataHolder ownerTable = new MapBackedDataHolder();
+        ownerTable.put(DayCareXStream.OWNER_TABLE, owners);
+        writer.startNode(mapper.serializedMember(DayCare.class, "dogsArray"));
+        for (Dog dog : dogsArray) {
+            xstream.marshal(dog, writer, ownerTable);
+        }
+        writer.endNode();
+
+        writer.endNode();
+        writer.endNode();
     }
-}
\ No newline at end of file
+}
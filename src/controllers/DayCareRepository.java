@@ -0,0 +1,82 @@
+package controllers;
+
+import models.Dog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Where a daycare is kept between runs.
+ * <p>
+ * {@link #load(DayCare)} and {@link #save(DayCare)} move the whole daycare. {@link #upsert(DayCare, Dog)}
+ * and {@link #delete(DayCare, int)} store a change to one dog after it has been made on the daycare; a
+ * repository that can store a single row writes just that row, others save the whole daycare.
+ */
+public interface DayCareRepository extends Closeable {
+
+    /**
+     * Replaces the daycare's contents with the stored ones.
+     *
+     * @param dayCare the daycare to fill
+     * @throws Exception if reading fails
+     */
+    void load(DayCare dayCare) throws Exception;
+
+    /**
+     * Stores the whole daycare, replacing what was stored.
+     *
+     * @param dayCare the daycare to store
+     * @throws Exception if writing fails
+     */
+    void save(DayCare dayCare) throws Exception;
+
+    /**
+     * Stores one dog as it now is in the daycare, with its owners and attendance, adding it if it is not
+     * stored yet. The daycare's own fields (name, limit, auto IDs) are stored too.
+     *
+     * @param dayCare the daycare holding the dog
+     * @param dog     the dog added or changed
+     * @throws Exception if writing fails
+     */
+    void upsert(DayCare dayCare, Dog dog) throws Exception;
+
+    /**
+     * Removes a dog that has been removed from the daycare.
+     *
+     * @param dayCare the daycare the dog was removed from
+     * @param dogID   the removed dog's ID
+     * @throws Exception if writing fails
+     */
+    void delete(DayCare dayCare, int dogID) throws Exception;
+
+    /**
+     * Releases what the repository holds open. Repositories that hold nothing open do nothing.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Picks the repository for a location: a JDBC URL ({@code jdbc:...}) opens an
+     * {@link JdbcDayCareRepository}, a directory (an existing one, or a name ending in "/") a
+     * {@link ShardedDayCareRepository}, a file ending in ".dat" a {@link BinaryDayCareRepository}, and any
+     * other file an {@link XmlDayCareRepository}.
+     *
+     * @param location JDBC URL, directory or file name
+     * @return the repository
+     */
+    static DayCareRepository forLocation(String location) {
+        if (location.startsWith("jdbc:")) {
+            return new JdbcDayCareRepository(location);
+        }
+        if (location.endsWith("/") || Files.isDirectory(Path.of(location))) {
+            return new ShardedDayCareRepository(Path.of(location));
+        }
+        return switch (DayCare.FileFormat.forFile(location)) {
+            case BINARY -> new BinaryDayCareRepository(Path.of(location));
+            case XML -> new XmlDayCareRepository(Path.of(location));
+        };
+    }
+}
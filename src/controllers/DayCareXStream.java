@@ -0,0 +1,239 @@
+package controllers;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.SingleValueConverter;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.collections.CollectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
+import com.thoughtworks.xstream.mapper.Mapper;
+import models.Dog;
+import models.Owner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The XStream used for daycare XML, configured once and shared: setting one up costs reflection and
+ * converter registration, and a configured instance is safe to use from several threads.
+ * <p>
+ * Files are written with short element names ({@code daycare}, {@code dogs}, {@code dog}, {@code owner}),
+ * scalar fields as attributes and attendance as one token of day letters, e.g. {@code days="MT--F"}. Each
+ * owner is written once, in an owner table ahead of the dogs, and a dog lists its owners' IDs:
+ * <pre>
+ * &lt;daycare name="Paws" maxNumberOfDogs="30" dogAutoID="1002" ownerAutoID="101"&gt;
+ *   &lt;owners&gt;
+ *     &lt;owner id="101" name="Alice" phone="0871234567"/&gt;
+ *   &lt;/owners&gt;
+ *   &lt;dogs&gt;
+ *     &lt;dog id="1001" name="Rex" breed="Boxer" dangerous="true" age="4" sex="M" neutered="false" days="MT--F"&gt;
+ *       &lt;owners&gt;101&lt;/owners&gt;
+ *     &lt;/dog&gt;
+ * </pre>
+ * The table is handed to {@link OwnerRefsConverter} through the data holder of the marshal or unmarshal
+ * call, under {@link #OWNER_TABLE}, so the dogs read share one {@link Owner} per owner. Files written by
+ * earlier versions, with each dog's owners written out in full, fully qualified element names, one element
+ * per field and attendance as an integer or as one {@code <boolean>} per day, are still read; the daycare
+ * element of such a file is read by {@link LegacyDayCareConverter}. Only the daycare's own classes may be
+ * read.
+ */
+final class DayCareXStream {
+
+    /**
+     * Data holder key of the owner table ({@code Map<Integer, Owner>}, by owner ID) while marshalling or
+     * unmarshalling dogs.
+     */
+    static final String OWNER_TABLE = "daycare.ownerTable";
+
+    private static final XStream XSTREAM = create();
+
+    private DayCareXStream() {
+    }
+
+    /**
+     * @return the shared, configured XStream
+     */
+    static XStream get() {
+        return XSTREAM;
+    }
+
+    private static XStream create() {
+        XStream xstream = new XStream(new StaxDriver());
+        XStream.setupDefaultSecurity(xstream);
+        xstream.allowTypes(new Class<?>[]{Dog.class, DayCare.class, Owner.class});
+
+        xstream.alias("daycare", DayCare.class);
+        xstream.alias("dog", Dog.class);
+        xstream.alias("owner", Owner.class);
+        xstream.aliasField("dogs", DayCare.class, "dogsArray");
+        xstream.aliasField("phone", Owner.class, "phoneNumber");
+        xstream.aliasField("days", Dog.class, "kennelDays");
+
+        for (String field : new String[]{"id", "name", "breed", "dangerous", "age", "sex", "neutered", "kennelDays"}) {
+            xstream.useAttributeFor(Dog.class, field);
+        }
+        for (String field : new String[]{"id", "name", "phoneNumber"}) {
+            xstream.useAttributeFor(Owner.class, field);
+        }
+        xstream.registerLocalConverter(Dog.class, "kennelDays", new KennelDaysConverter());
+        xstream.registerLocalConverter(Dog.class, "owners", new OwnerRefsConverter(xstream.getMapper()));
+        xstream.registerConverter(new LegacyDayCareConverter(xstream.getMapper()));
+        return xstream;
+    }
+
+    /**
+     * Writes a dog's attendance bits as one letter per day, or '-' for a day not booked, Monday first.
+     * Also reads the plain integer written by earlier versions.
+     */
+    static final class KennelDaysConverter implements SingleValueConverter {
+
+        private static final String DAY_LETTERS = "MTWTF";
+
+        @Override
+        public boolean canConvert(@SuppressWarnings("rawtypes") Class type) {
+            return type == int.class || type == Integer.class;
+        }
+
+        @Override
+        public String toString(Object value) {
+            int kennelDays = (Integer) value;
+            char[] token = new char[Dog.DAYS_IN_WEEK];
+            for (int day = 0; day < token.length; day++) {
+                token[day] = (kennelDays & (1 << day)) != 0 ? DAY_LETTERS.charAt(day) : '-';
+            }
+            return new String(token);
+        }
+
+        @Override
+        public Object fromString(String token) {
+            if (!token.isEmpty() && Character.isDigit(token.charAt(0))) {
+                return Integer.parseInt(token);
+            }
+            if (token.length() != Dog.DAYS_IN_WEEK) {
+                throw new ConversionException("Invalid kennel days: " + token);
+            }
+            int kennelDays = 0;
+            for (int day = 0; day < token.length(); day++) {
+                if (token.charAt(day) != '-') kennelDays |= 1 << day;
+            }
+            return kennelDays;
+        }
+    }
+
+    /**
+     * Writes a dog's owners as their IDs, e.g. {@code <owners>101 102</owners>}, when an owner table holding
+     * them is in the context, and reads them back as the table's owners. Owners written out in full, as by
+     * earlier versions or without a table, are read and written as a plain collection.
+     */
+    static final class OwnerRefsConverter implements Converter {
+
+        private final CollectionConverter collection;
+
+        OwnerRefsConverter(Mapper mapper) {
+            this.collection = new CollectionConverter(mapper);
+        }
+
+        @Override
+        public boolean canConvert(@SuppressWarnings("rawtypes") Class type) {
+            return type == ArrayList.class;
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+            Map<?, ?> table = (Map<?, ?>) context.get(OWNER_TABLE);
+            ArrayList<?> owners = (ArrayList<?>) source;
+            if (table == null || !owners.stream().allMatch(owner -> table.containsKey(((Owner) owner).getId()))) {
+                collection.marshal(source, writer, context);
+                return;
+            }
+
+            StringBuilder ids = new StringBuilder();
+            for (Object owner : owners) {
+                if (ids.length() > 0) ids.append(' ');
+                ids.append(((Owner) owner).getId());
+            }
+            writer.setValue(ids.toString());
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+            if (reader.hasMoreChildren()) {
+                return collection.unmarshal(reader, context);
+            }
+
+            ArrayList<Owner> owners = new ArrayList<>();
+            String ids = reader.getValue().trim();
+            if (ids.isEmpty()) return owners;
+            @SuppressWarnings("unchecked")
+            Map<Integer, Owner> table = (Map<Integer, Owner>) context.get(OWNER_TABLE);
+            for (String id : ids.split("\\s+")) {
+                Owner owner = table == null ? null : table.get(Integer.parseInt(id));
+                if (owner == null) {
+                    throw new ConversionException("Dog refers to owner " + id + ", who is not in the owner table");
+                }
+                owners.add(owner);
+            }
+            return owners;
+        }
+    }
+
+    /**
+     * Reads the daycare element of an object-stream written by earlier versions, one element per field, whose
+     * dogs may refer back to owners stored in an earlier record. The fields are read by name, fields this
+     * version does not know are skipped, and the daycare is built through {@link DayCare#restore}, so its
+     * indexes and ID allocators are set up as for any other load. Daycares are written by
+     * {@link DayCare#save(String)}, never through this converter.
+     */
+    static final class LegacyDayCareConverter implements Converter {
+
+        private final Mapper mapper;
+
+        LegacyDayCareConverter(Mapper mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean canConvert(@SuppressWarnings("rawtypes") Class type) {
+            return type == DayCare.class;
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+            throw new ConversionException("Daycares are written by DayCare.save, not by XStream");
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+            HashMap<String, String> fields = new HashMap<>();
+            for (String field : new String[]{"name", "maxNumberOfDogs", "dogAutoID", "ownerAutoID"}) {
+                String value = reader.getAttribute(mapper.serializedMember(DayCare.class, field));
+                if (value != null) fields.put(field, value);
+            }
+            ArrayList<Dog> dogs = new ArrayList<>();
+            while (reader.hasMoreChildren()) {
+                reader.moveDown();
+                String field = mapper.realMember(DayCare.class, reader.getNodeName());
+                if (field.equals("dogsArray")) {
+                    for (Object dog : (ArrayList<?>) context.convertAnother(null, ArrayList.class)) {
+                        dogs.add((Dog) dog);
+                    }
+                } else if (!reader.hasMoreChildren()) {
+                    fields.put(field, reader.getValue());
+                }
+                reader.moveUp();
+            }
+
+            DayCare dayCare = new DayCare();
+            dayCare.restore(fields.getOrDefault("name", ""),
+                    Integer.parseInt(fields.getOrDefault("maxNumberOfDogs", "10")), dogs,
+                    Integer.parseInt(fields.getOrDefault("dogAutoID", "1000")),
+                    Integer.parseInt(fields.getOrDefault("ownerAutoID", "100")));
+            return dayCare;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Tracks which of a daycare's dogs differ from the base snapshot they were saved to, so a delta save writes
+ * only those (see {@link SnapshotDelta}).
+ * <p>
+ * One slot is kept per position in the daycare, in step with its list of dogs: the dog's position in the
+ * base, or -1 for a dog added since, and the dog object with its change count and its owner objects and
+ * their change counts as they were in the base. A dog is changed when another object has taken its place,
+ * it has other owner objects (e.g. after owners were merged by an ID change) or any of the counts has moved
+ * on, which covers changes made through the setters of a dog or a shared owner as well as through the
+ * daycare.
+ */
+final class DogChanges {
+
+    private static final class Slot {
+        private final int basePosition;
+        private final Dog saved;
+        private final long dogVersion;
+        private final Owner[] owners;
+        private final long[] ownerVersions;
+
+        private Slot(int basePosition, Dog saved) {
+            this.basePosition = basePosition;
+            this.saved = saved;
+            this.dogVersion = saved == null ? 0 : saved.getVersion();
+            this.owners = saved == null ? new Owner[0] : saved.getOwners().toArray(new Owner[0]);
+            this.ownerVersions = new long[owners.length];
+            for (int i = 0; i < owners.length; i++) {
+                ownerVersions[i] = owners[i].getVersion();
+            }
+        }
+
+        private boolean isChanged(Dog dog) {
+            if (dog != saved || dog.getVersion() != dogVersion) return true;
+            List<Owner> current = dog.getOwners();
+            if (current.size() != owners.length) return true;
+            for (int i = 0; i < owners.length; i++) {
+                if (current.get(i) != owners[i] || owners[i].getVersion() != ownerVersions[i]) return true;
+            }
+            return false;
+        }
+    }
+
+    private final Path snapshot;
+    private final SnapshotDelta.Base base;
+    private final int baseSize;
+    private final ArrayList<Slot> slots;
+
+    /**
+     * Starts tracking a daycare whose dogs are as in the base.
+     *
+     * @param snapshot the base snapshot file
+     * @param base     identifies the base's contents
+     * @param dogs     the daycare's dogs, which the base holds
+     */
+    DogChanges(Path snapshot, SnapshotDelta.Base base, List<Dog> dogs) {
+        this.snapshot = snapshot;
+        this.base = base;
+        this.baseSize = dogs.size();
+        this.slots = new ArrayList<>(dogs.size());
+        for (int i = 0; i < dogs.size(); i++) {
+            slots.add(new Slot(i, dogs.get(i)));
+        }
+    }
+
+    /**
+     * Starts tracking a daycare just rebuilt from a base and the diff over it. The dogs the diff replaced or
+     * added stay changed, so the next diff still holds them.
+     *
+     * @param snapshot the base snapshot file
+     * @param baseSize number of dogs in the base
+     * @param delta    the diff read
+     * @param dogs     the daycare's dogs, rebuilt with {@link SnapshotDelta#apply(List)}
+     */
+    DogChanges(Path snapshot, int baseSize, SnapshotDelta delta, List<Dog> dogs) {
+        this.snapshot = snapshot;
+        this.base = delta.base();
+        this.baseSize = baseSize;
+        this.slots = new ArrayList<>(dogs.size());
+
+        BitSet replaced = new BitSet(baseSize);
+        for (int position : delta.replacedPositions()) {
+            replaced.set(position);
+        }
+        BitSet removed = new BitSet(baseSize);
+        for (int position : delta.removedPositions()) {
+            removed.set(position);
+        }
+        // the dogs kept from the base come first, in base order, then the ones added since
+        int position = removed.nextClearBit(0);
+        int survivors = dogs.size() - delta.addedCount();
+        for (int i = 0; i < survivors; i++, position = removed.nextClearBit(position + 1)) {
+            slots.add(new Slot(position, replaced.get(position) ? null : dogs.get(i)));
+        }
+        for (int i = survivors; i < dogs.size(); i++) {
+            slots.add(new Slot(-1, null));
+        }
+    }
+
+    /**
+     * @return the base snapshot file
+     */
+    Path snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return number of dogs in the base
+     */
+    int baseSize() {
+        return baseSize;
+    }
+
+    /**
+     * Records a dog added at the end of the daycare.
+     */
+    void appended() {
+        slots.add(new Slot(-1, null));
+    }
+
+    /**
+     * Records the removal of the dog at the given position.
+     */
+    void removed(int index) {
+        slots.remove(index);
+    }
+
+    /**
+     * Works out the diff between the base and the daycare as it now is.
+     *
+     * @param name            the daycare's name
+     * @param maxNumberOfDogs the daycare's limit
+     * @param dogAutoID       the next dog ID
+     * @param ownerAutoID     the next owner ID
+     * @param dogs            the daycare's dogs, in step with the slots
+     * @return the diff
+     */
+    SnapshotDelta delta(String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID, List<Dog> dogs) {
+        BitSet kept = new BitSet(baseSize);
+        ArrayList<Integer> replacedPositions = new ArrayList<>();
+        ArrayList<Dog> changed = new ArrayList<>();
+        ArrayList<Dog> added = new ArrayList<>();
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            Dog dog = dogs.get(i);
+            if (slot.basePosition < 0) {
+                added.add(dog);
+            } else {
+                kept.set(slot.basePosition);
+                if (slot.isChanged(dog)) {
+                    replacedPositions.add(slot.basePosition);
+                    changed.add(dog);
+                }
+            }
+        }
+
+        int[] removed = new int[baseSize - kept.cardinality()];
+        int next = 0;
+        for (int position = kept.nextClearBit(0); position < baseSize; position = kept.nextClearBit(position + 1)) {
+            removed[next++] = position;
+        }
+        changed.addAll(added);
+        return new SnapshotDelta(base, removed, replacedPositions.stream().mapToInt(Integer::intValue).toArray(),
+                new BinarySnapshot.Contents(name, maxNumberOfDogs, dogAutoID, ownerAutoID, 0, changed));
+    }
+}
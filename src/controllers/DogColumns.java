@@ -0,0 +1,322 @@
+package controllers;
+
+import models.Dog;
+import utils.NGramIndex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Column store kept alongside {@link DayCare#getDogsArray()}: position i of every column describes the dog
+ * at position i of the daycare's list. Flags and attendance are held as bit sets and the numeric fields as
+ * primitive arrays, so filters are bitwise operations rather than a walk over every {@link Dog} object.
+ * Names and breeds are kept with an n-gram index so partial-match searches only look at candidate rows.
+ * <p>
+ * Running totals are kept as rows are written: the old row's contribution is taken off before it is
+ * overwritten, so the counts and weekly income are read in constant time.
+ */
+class DogColumns {
+
+    private int size = 0;
+    private int[] ids = new int[16];
+    private byte[] ages = new byte[16];
+    private byte[] kennelDays = new byte[16];
+    private String[] names = new String[16];
+    private String[] breeds = new String[16];
+
+    private final NGramIndex nameIndex = new NGramIndex();
+    private final NGramIndex breedIndex = new NGramIndex();
+
+    private BitSet male = new BitSet();
+    private BitSet dangerous = new BitSet();
+    private BitSet neutered = new BitSet();
+
+    /**
+     * Kennel occupancy per weekday: bit i of dayRosters[day] is set when dog i is in the kennel that day.
+     */
+    private BitSet[] dayRosters = newDayRosters();
+
+    private int dangerousCount = 0;
+    private int neuteredCount = 0;
+    private int kennelDayCount = 0;
+    private long weeklyIncomeCents = 0;
+
+    //-------------------------------------
+    //  Maintenance
+    //-------------------------------------
+
+    /**
+     * @return number of positions held
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Empties every column.
+     */
+    void clear() {
+        size = 0;
+        male = new BitSet();
+        dangerous = new BitSet();
+        neutered = new BitSet();
+        dayRosters = newDayRosters();
+        nameIndex.clear();
+        breedIndex.clear();
+        dangerousCount = 0;
+        neuteredCount = 0;
+        kennelDayCount = 0;
+        weeklyIncomeCents = 0;
+    }
+
+    /**
+     * Copies the dog's current values into the given position, growing the columns when the position
+     * is the next free one.
+     *
+     * @param index position of the dog in dogsArray (at most {@link #size()})
+     * @param dog   the dog held at that position
+     */
+    void set(int index, Dog dog) {
+        if (index == size) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                kennelDays = Arrays.copyOf(kennelDays, capacity);
+                names = Arrays.copyOf(names, capacity);
+                breeds = Arrays.copyOf(breeds, capacity);
+            }
+            size++;
+        } else {
+            count(index, -1);
+            nameIndex.remove(index, names[index]);
+            breedIndex.remove(index, breeds[index]);
+        }
+
+        ids[index] = dog.getId();
+        ages[index] = (byte) dog.getAge();
+        kennelDays[index] = (byte) dog.getKennelDays();
+        // a dog's name or breed may be null; it is searched as "", as the snapshot stores it
+        names[index] = dog.getName() == null ? "" : dog.getName();
+        breeds[index] = dog.getBreed() == null ? "" : dog.getBreed();
+        nameIndex.add(index, names[index]);
+        breedIndex.add(index, breeds[index]);
+        male.set(index, dog.getSex() == 'M');
+        dangerous.set(index, dog.isDangerousBreed());
+        neutered.set(index, dog.isNeutered());
+        for (int day = 0; day < Dog.DAYS_IN_WEEK; day++) {
+            dayRosters[day].set(index, (dog.getKennelDays() & (1 << day)) != 0);
+        }
+        count(index, 1);
+    }
+
+    /**
+     * Removes the row at the given position, moving every later row down by one, as
+     * {@link java.util.ArrayList#remove(int)} does to the daycare's list.
+     *
+     * @param index position of the row to remove (less than {@link #size()})
+     */
+    void remove(int index) {
+        count(index, -1);
+        nameIndex.removeSlot(index, names[index]);
+        breedIndex.removeSlot(index, breeds[index]);
+
+        int moved = size - index - 1;
+        System.arraycopy(ids, index + 1, ids, index, moved);
+        System.arraycopy(ages, index + 1, ages, index, moved);
+        System.arraycopy(kennelDays, index + 1, kennelDays, index, moved);
+        System.arraycopy(names, index + 1, names, index, moved);
+        System.arraycopy(breeds, index + 1, breeds, index, moved);
+        size--;
+        names[size] = null;
+        breeds[size] = null;
+
+        NGramIndex.removeBit(male, index);
+        NGramIndex.removeBit(dangerous, index);
+        NGramIndex.removeBit(neutered, index);
+        for (BitSet roster : dayRosters) {
+            NGramIndex.removeBit(roster, index);
+        }
+    }
+
+    /**
+     * Adds (sign 1) or takes off (sign -1) the row at the given position from the running totals.
+     */
+    private void count(int index, int sign) {
+        int days = Integer.bitCount(kennelDays[index]);
+        boolean isDangerous = dangerous.get(index);
+        if (isDangerous) dangerousCount += sign;
+        if (neutered.get(index)) neuteredCount += sign;
+        kennelDayCount += sign * days;
+        weeklyIncomeCents += sign * days * Dog.dailyRateInCents(isDangerous);
+    }
+
+    private static BitSet[] newDayRosters() {
+        BitSet[] rosters = new BitSet[Dog.DAYS_IN_WEEK];
+        for (int day = 0; day < rosters.length; day++) {
+            rosters[day] = new BitSet();
+        }
+        return rosters;
+    }
+
+    //-------------------------------------
+    //  Column access
+    //-------------------------------------
+
+    int getId(int index) {
+        return ids[index];
+    }
+
+    int getAge(int index) {
+        return ages[index];
+    }
+
+    int getKennelDays(int index) {
+        return kennelDays[index];
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    String getBreed(int index) {
+        return breeds[index];
+    }
+
+    boolean isMale(int index) {
+        return male.get(index);
+    }
+
+    boolean isDangerous(int index) {
+        return dangerous.get(index);
+    }
+
+    boolean isNeutered(int index) {
+        return neutered.get(index);
+    }
+
+    /**
+     * @return positions of dogs whose name contains the given text, ignoring case
+     */
+    BitSet nameContains(String part) {
+        return confirm(nameIndex, names, part);
+    }
+
+    /**
+     * @return positions of dogs whose breed contains the given text, ignoring case
+     */
+    BitSet breedContains(String part) {
+        return confirm(breedIndex, breeds, part);
+    }
+
+    /**
+     * Looks the text up in the index and, where the index can only give candidates, checks each candidate row.
+     */
+    private BitSet confirm(NGramIndex index, String[] column, String part) {
+        BitSet result = index.candidates(part);
+        if (!NGramIndex.isExact(part)) {
+            String folded = part.toLowerCase();
+            for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+                if (!column[i].toLowerCase().contains(folded)) result.clear(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return positions of dogs of the given sex ('M' or 'F'); empty for anything else
+     */
+    BitSet bySex(char sex) {
+        BitSet result = (BitSet) male.clone();
+        if (sex == 'F') {
+            result.flip(0, size);
+        } else if (sex != 'M') {
+            result.clear();
+        }
+        return result;
+    }
+
+    /**
+     * @return positions of dangerous dogs
+     */
+    BitSet dangerous() {
+        return (BitSet) dangerous.clone();
+    }
+
+    /**
+     * @return positions of neutered dogs
+     */
+    BitSet neutered() {
+        return (BitSet) neutered.clone();
+    }
+
+    /**
+     * @param day index of the day (0=Monday, 4=Friday)
+     * @return positions of dogs in the kennel on that day
+     */
+    BitSet onDay(int day) {
+        return (BitSet) dayRosters[day].clone();
+    }
+
+    /**
+     * Works out which dogs are in the kennel on more than the given number of days by carrying
+     * "at least k days" sets across the week's rosters.
+     *
+     * @param days threshold of days
+     * @return positions of the matching dogs
+     */
+    BitSet stayingMoreThan(int days) {
+        if (days >= Dog.DAYS_IN_WEEK) return new BitSet();
+
+        BitSet[] atLeast = new BitSet[Dog.DAYS_IN_WEEK + 1];
+        atLeast[0] = new BitSet();
+        atLeast[0].set(0, size);
+        if (days < 0) return atLeast[0];
+
+        for (int k = 1; k < atLeast.length; k++) {
+            atLeast[k] = new BitSet();
+        }
+        for (BitSet roster : dayRosters) {
+            for (int k = Dog.DAYS_IN_WEEK; k >= 1; k--) {
+                BitSet carried = (BitSet) atLeast[k - 1].clone();
+                carried.and(roster);
+                atLeast[k].or(carried);
+            }
+        }
+        return atLeast[days + 1];
+    }
+
+    //-------------------------------------
+    //  Aggregates
+    //-------------------------------------
+
+    int countDangerous() {
+        return dangerousCount;
+    }
+
+    int countNeutered() {
+        return neuteredCount;
+    }
+
+    int countMale() {
+        return male.cardinality();
+    }
+
+    int countOnDay(int day) {
+        return dayRosters[day].cardinality();
+    }
+
+    /**
+     * @return kennel days booked across all dogs for the week
+     */
+    int totalKennelDays() {
+        return kennelDayCount;
+    }
+
+    /**
+     * @return combined weekly bill in cents
+     */
+    long weeklyIncomeCents() {
+        return weeklyIncomeCents;
+    }
+}
@@ -0,0 +1,323 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import utils.Helper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The DogQuery class combines the daycare's filters (breed, gender, neutered, dangerous, days in the kennel,
+ * owner, plus age ranges and day masks) into one query. Every filter added must match.
+ * <p>
+ * When the query is run, a small planner estimates how many dogs each indexed filter lets through and starts
+ * from the smallest candidate set; the remaining filters are checked row by row against the column store as
+ * the stream is consumed. Setting the same filter twice keeps the last value.
+ * <pre>
+ *     dayCare.query().breedContains("lab").sex('M').ageBetween(2, 6).inKennelOn(0b00011).stream()
+ * </pre>
+ */
+public class DogQuery {
+
+    private final DayCare dayCare;
+
+    private String namePart;
+    private String breedPart;
+    private char sex;
+    private Boolean neutered;
+    private Boolean dangerous;
+    private int minAge = 0;
+    private int maxAge = Integer.MAX_VALUE;
+    private int dayMask = 0;
+    private Integer moreThanDays;
+    private Integer ownerID;
+    private String ownerNamePart;
+
+    /**
+     * Access path chosen the last time the query was run, e.g. "breed" or "scan".
+     */
+    private String accessPath = "scan";
+
+    /**
+     * Creates an unfiltered query; use {@link DayCare#query()}.
+     */
+    DogQuery(DayCare dayCare) {
+        this.dayCare = dayCare;
+    }
+
+    //-------------------------------------
+    //  Filters
+    //-------------------------------------
+
+    /**
+     * @param part text the dog's name must contain, ignoring case
+     * @return this query
+     */
+    public DogQuery nameContains(String part) {
+        this.namePart = part.toLowerCase();
+        return this;
+    }
+
+    /**
+     * @param part text the dog's breed must contain, ignoring case
+     * @return this query
+     */
+    public DogQuery breedContains(String part) {
+        this.breedPart = part.toLowerCase();
+        return this;
+    }
+
+    /**
+     * @param sex 'M' or 'F' (either case); anything else matches no dogs
+     * @return this query
+     */
+    public DogQuery sex(char sex) {
+        this.sex = Character.toUpperCase(sex);
+        return this;
+    }
+
+    /**
+     * @param neutered whether the dog must be neutered or not
+     * @return this query
+     */
+    public DogQuery neutered(boolean neutered) {
+        this.neutered = neutered;
+        return this;
+    }
+
+    /**
+     * @param dangerous whether the dog must be dangerous or not
+     * @return this query
+     */
+    public DogQuery dangerous(boolean dangerous) {
+        this.dangerous = dangerous;
+        return this;
+    }
+
+    /**
+     * @param minAge youngest age allowed (inclusive)
+     * @param maxAge oldest age allowed (inclusive)
+     * @return this query
+     */
+    public DogQuery ageBetween(int minAge, int maxAge) {
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * @param dayMask days the dog must be in the kennel on, one bit per day (bit 0 = Monday)
+     * @return this query
+     */
+    public DogQuery inKennelOn(int dayMask) {
+        this.dayMask = dayMask & Dog.ALL_DAYS_MASK;
+        return this;
+    }
+
+    /**
+     * @param days the dog must be in the kennel on more than this many days
+     * @return this query
+     */
+    public DogQuery staysMoreThan(int days) {
+        this.moreThanDays = days;
+        return this;
+    }
+
+    /**
+     * @param ownerID ID of an owner the dog must be registered to
+     * @return this query
+     */
+    public DogQuery ownedBy(int ownerID) {
+        this.ownerID = ownerID;
+        return this;
+    }
+
+    /**
+     * @param part text one of the dog's owners' names must contain, ignoring case
+     * @return this query
+     */
+    public DogQuery ownerNameContains(String part) {
+        this.ownerNamePart = part.toLowerCase();
+        return this;
+    }
+
+    //-------------------------------------
+    //  Running the query
+    //-------------------------------------
+
+    /**
+     * Plans the query and returns the matching dogs in daycare order. Only the starting candidate set is
+     * worked out up front; the other filters are applied lazily as the stream is consumed, so the daycare
+     * should not be changed until the stream has been used.
+     *
+     * @return stream of matching dogs
+     */
+    public Stream<Dog> stream() {
+        ArrayList<Dog> dogs = dayCare.getDogsArray();
+        return plan().stream()
+                .filter(this::matches)
+                .mapToObj(dogs::get);
+    }
+
+    /**
+     * @return list of matching dogs in daycare order
+     */
+    public List<Dog> list() {
+        return stream().collect(Collectors.toList());
+    }
+
+    /**
+     * @return number of matching dogs
+     */
+    public long count() {
+        return stream().count();
+    }
+
+    /**
+     * @return the index the planner started from the last time the query was run ("scan" if none)
+     */
+    String getAccessPath() {
+        return accessPath;
+    }
+
+    //-------------------------------------
+    //  Planner
+    //-------------------------------------
+
+    /**
+     * Picks the indexed filter expected to let the fewest dogs through and returns its candidate positions.
+     * Flag and day filters are estimated from running counts; text and owner filters are looked up and
+     * measured, as that lookup is already a small fraction of a scan.
+     */
+    private BitSet plan() {
+        DogColumns columns = dayCare.getColumns();
+        int size = columns.size();
+
+        accessPath = "scan";
+        long best = size;
+        Supplier<BitSet> bestPath = () -> {
+            BitSet all = new BitSet();
+            all.set(0, size);
+            return all;
+        };
+
+        if (ownerID != null && dayCare.countDogsOfOwner(ownerID) < best) {
+            best = dayCare.countDogsOfOwner(ownerID);
+            bestPath = () -> dayCare.positionsOfOwner(ownerID);
+            accessPath = "owner";
+        }
+        if (sex != 0) {
+            int estimate = sex == 'M' ? columns.countMale() : sex == 'F' ? size - columns.countMale() : 0;
+            if (estimate < best) {
+                best = estimate;
+                bestPath = () -> columns.bySex(sex);
+                accessPath = "sex";
+            }
+        }
+        if (neutered != null) {
+            int estimate = neutered ? columns.countNeutered() : size - columns.countNeutered();
+            if (estimate < best) {
+                best = estimate;
+                bestPath = () -> flagged(columns.neutered(), neutered, size);
+                accessPath = "neutered";
+            }
+        }
+        if (dangerous != null) {
+            int estimate = dangerous ? columns.countDangerous() : size - columns.countDangerous();
+            if (estimate < best) {
+                best = estimate;
+                bestPath = () -> flagged(columns.dangerous(), dangerous, size);
+                accessPath = "dangerous";
+            }
+        }
+        for (int day = 0; day < Dog.DAYS_IN_WEEK; day++) {
+            final int onDay = day;
+            if ((dayMask & (1 << day)) != 0 && columns.countOnDay(day) < best) {
+                best = columns.countOnDay(day);
+                bestPath = () -> columns.onDay(onDay);
+                accessPath = "day";
+            }
+        }
+
+        // looked-up paths: once computed they are exact or near exact, so use them directly when smallest
+        BitSet lookedUp = null;
+        if (namePart != null) {
+            BitSet candidates = columns.nameContains(namePart);
+            if (candidates.cardinality() < best) {
+                best = candidates.cardinality();
+                lookedUp = candidates;
+                accessPath = "name";
+            }
+        }
+        if (breedPart != null) {
+            BitSet candidates = columns.breedContains(breedPart);
+            if (candidates.cardinality() < best) {
+                best = candidates.cardinality();
+                lookedUp = candidates;
+                accessPath = "breed";
+            }
+        }
+        if (ownerNamePart != null) {
+            BitSet candidates = dayCare.positionsOfOwnersNamed(ownerNamePart);
+            if (candidates.cardinality() < best) {
+                best = candidates.cardinality();
+                lookedUp = candidates;
+                accessPath = "ownerName";
+            }
+        }
+        if (moreThanDays != null) {
+            BitSet candidates = columns.stayingMoreThan(moreThanDays);
+            if (candidates.cardinality() < best) {
+                lookedUp = candidates;
+                accessPath = "stay";
+            }
+        }
+
+        return lookedUp != null ? lookedUp : bestPath.get();
+    }
+
+    /**
+     * @return the positions with the flag set, or the other positions when the flag must be clear
+     */
+    private static BitSet flagged(BitSet set, boolean wanted, int size) {
+        if (!wanted) {
+            set.flip(0, size);
+        }
+        return set;
+    }
+
+    /**
+     * Checks every filter against the row at the given position.
+     */
+    private boolean matches(int index) {
+        DogColumns columns = dayCare.getColumns();
+
+        if (namePart != null && !columns.getName(index).toLowerCase().contains(namePart)) return false;
+        if (breedPart != null && !columns.getBreed(index).toLowerCase().contains(breedPart)) return false;
+        if (sex != 0 && (!Helper.MFSexCheck(sex) || columns.isMale(index) != (sex == 'M'))) return false;
+        if (neutered != null && columns.isNeutered(index) != neutered) return false;
+        if (dangerous != null && columns.isDangerous(index) != dangerous) return false;
+        if (columns.getAge(index) < minAge || columns.getAge(index) > maxAge) return false;
+        if ((columns.getKennelDays(index) & dayMask) != dayMask) return false;
+        if (moreThanDays != null && Integer.bitCount(columns.getKennelDays(index)) <= moreThanDays) return false;
+
+        if (ownerID != null || ownerNamePart != null) {
+            Dog dog = dayCare.getDogsArray().get(index);
+            if (ownerID != null && dog.getOwnerByID(ownerID) == null) return false;
+            if (ownerNamePart != null && !hasOwnerNamed(dog, ownerNamePart)) return false;
+        }
+        return true;
+    }
+
+    private static boolean hasOwnerNamed(Dog dog, String foldedPart) {
+        for (Owner owner : dog.getOwners()) {
+            if (owner != null && owner.getName().toLowerCase().contains(foldedPart)) return true;
+        }
+        return false;
+    }
+}
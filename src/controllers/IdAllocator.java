@@ -0,0 +1,112 @@
+package controllers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out IDs from a range, e.g. dog IDs (1000 to 9999) or owner IDs (100 to 999), to any number of threads
+ * without locking.
+ * <p>
+ * {@link #next()} takes one ID with a compare-and-set on a single counter, so an ID is only ever handed out
+ * once, and one thread never waits for another to finish. A thread about to insert many dogs can take a whole
+ * {@link Block} with {@link #reserve(int)} in one step and then number them from the block on its own, without
+ * touching the shared counter again.
+ * <p>
+ * The counter only moves forward, even when a daycare is loaded again while other threads hold the allocator.
+ * IDs that were handed out or reserved but never used are skipped, not reused. {@link #advanceTo(int)} moves it
+ * past IDs already in use, e.g. dogs loaded from a file or added with an ID chosen by hand, so that they are
+ * never handed out again.
+ */
+public final class IdAllocator {
+
+    /**
+     * IDs reserved by one thread, handed out from first to last by that thread alone.
+     */
+    public static final class Block {
+        private int next;
+        private final int end;
+
+        private Block(int first, int end) {
+            this.next = first;
+            this.end = end;
+        }
+
+        /**
+         * @return true if the block has IDs left
+         */
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        /**
+         * @return the next ID of the block, or -1 if it is used up
+         */
+        public int next() {
+            return next < end ? next++ : -1;
+        }
+
+        /**
+         * @return number of IDs left in the block
+         */
+        public int remaining() {
+            return end - next;
+        }
+    }
+
+    private final int last;
+    private final AtomicInteger next;
+
+    /**
+     * @param first the first ID to hand out
+     * @param last  the last ID that may be handed out
+     */
+    public IdAllocator(int first, int last) {
+        this.last = last;
+        this.next = new AtomicInteger(first);
+    }
+
+    /**
+     * Takes the next ID.
+     *
+     * @return the ID, or -1 if every ID in the range has been handed out
+     */
+    public int next() {
+        while (true) {
+            int id = next.get();
+            if (id > last) return -1;
+            if (next.compareAndSet(id, id + 1)) return id;
+        }
+    }
+
+    /**
+     * Reserves up to the given number of consecutive IDs for the calling thread. Fewer are reserved when the
+     * range is nearly used up.
+     *
+     * @param count number of IDs wanted
+     * @return the reserved IDs, which is empty if none are left
+     */
+    public Block reserve(int count) {
+        while (true) {
+            int first = next.get();
+            int end = (int) Math.min((long) last + 1, (long) first + Math.max(count, 0));
+            if (end <= first) return new Block(first, first);
+            if (next.compareAndSet(first, end)) return new Block(first, end);
+        }
+    }
+
+    /**
+     * @return the ID the next call to {@link #next()} would hand out, which may be past the last ID
+     */
+    public int peek() {
+        return next.get();
+    }
+
+    /**
+     * Makes sure no ID below the given one is handed out from now on. Does nothing if the counter is already
+     * there or past it.
+     *
+     * @param id the lowest ID that may still be handed out
+     */
+    public void advanceTo(int id) {
+        next.accumulateAndGet(id, Math::max);
+    }
+}
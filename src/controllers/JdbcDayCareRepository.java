@@ -0,0 +1,420 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps a daycare in SQL tables, typically in an embedded, in-process database (e.g. H2, HSQLDB or SQLite
+ * through their JDBC drivers, which must be on the class path):
+ * <pre>
+ *     daycare    (id, name, max_dogs, dog_auto_id, owner_auto_id)   a single row, id 1
+ *     dog        (id, seq, name, breed, dangerous, age, sex, neutered)   seq keeps the daycare's order
+ *     owner      (id, name, phone)
+ *     dog_owner  (dog_id, ordinal, owner_id)   indexed by owner
+ *     attendance (dog_id, weekday)             one row per booked day (0 = Monday), indexed by day
+ * </pre>
+ * The tables are created on first use if they do not exist. {@link #upsert(DayCare, Dog)} and
+ * {@link #delete(DayCare, int)} touch only the rows of that dog, its owners and the daycare row, so a
+ * change to one dog costs the same however many dogs are stored. Each operation runs in one transaction.
+ * <p>
+ * Dogs are stored by ID, so a dog's ID should not change once it is stored; delete it under the old ID and
+ * upsert it again instead.
+ */
+public final class JdbcDayCareRepository implements DayCareRepository {
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS daycare (id INT PRIMARY KEY, name VARCHAR(100), max_dogs INT,"
+                    + " dog_auto_id INT, owner_auto_id INT)",
+            "CREATE TABLE IF NOT EXISTS dog (id INT PRIMARY KEY, seq INT NOT NULL, name VARCHAR(100),"
+                    + " breed VARCHAR(100), dangerous BOOLEAN, age INT, sex CHAR(1), neutered BOOLEAN)",
+            "CREATE INDEX IF NOT EXISTS dog_seq ON dog (seq)",
+            "CREATE TABLE IF NOT EXISTS owner (id INT PRIMARY KEY, name VARCHAR(100), phone VARCHAR(100))",
+            "CREATE TABLE IF NOT EXISTS dog_owner (dog_id INT NOT NULL, ordinal INT NOT NULL,"
+                    + " owner_id INT NOT NULL, PRIMARY KEY (dog_id, ordinal))",
+            "CREATE INDEX IF NOT EXISTS dog_owner_owner ON dog_owner (owner_id)",
+            "CREATE TABLE IF NOT EXISTS attendance (dog_id INT NOT NULL, weekday INT NOT NULL,"
+                    + " PRIMARY KEY (dog_id, weekday))",
+            "CREATE INDEX IF NOT EXISTS attendance_weekday ON attendance (weekday)",
+    };
+
+    private static final String INSERT_DOG =
+            "INSERT INTO dog (id, seq, name, breed, dangerous, age, sex, neutered) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_DOG_OWNER = "INSERT INTO dog_owner (dog_id, ordinal, owner_id) VALUES (?, ?, ?)";
+    private static final String INSERT_ATTENDANCE = "INSERT INTO attendance (dog_id, weekday) VALUES (?, ?)";
+
+    private final String url;
+    private Connection connection;
+    private boolean schemaReady;
+
+    /**
+     * @param url JDBC URL of the database, e.g. {@code jdbc:h2:./daycare}; connected on first use
+     */
+    public JdbcDayCareRepository(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @param connection an open connection, which {@link #close()} leaves open
+     */
+    public JdbcDayCareRepository(Connection connection) {
+        this.url = null;
+        this.connection = connection;
+    }
+
+    //-------------------------------------
+    //  Whole daycare
+    //-------------------------------------
+
+    @Override
+    public void load(DayCare dayCare) throws Exception {
+        Connection db = connection();
+        String name = "";
+        int maxNumberOfDogs = 10;
+        int dogAutoID = 1000;
+        int ownerAutoID = 100;
+        HashMap<Integer, Owner> owners = new HashMap<>();
+        HashMap<Integer, ArrayList<Owner>> ownersByDog = new HashMap<>();
+        HashMap<Integer, Integer> kennelDays = new HashMap<>();
+        ArrayList<Dog> dogs = new ArrayList<>();
+
+        try (Statement statement = db.createStatement()) {
+            try (ResultSet rows = statement.executeQuery(
+                    "SELECT name, max_dogs, dog_auto_id, owner_auto_id FROM daycare WHERE id = 1")) {
+                if (rows.next()) {
+                    name = rows.getString(1);
+                    maxNumberOfDogs = rows.getInt(2);
+                    dogAutoID = rows.getInt(3);
+                    ownerAutoID = rows.getInt(4);
+                }
+            }
+            try (ResultSet rows = statement.executeQuery("SELECT id, name, phone FROM owner")) {
+                while (rows.next()) {
+                    owners.put(rows.getInt(1), new Owner(rows.getInt(1), rows.getString(2), rows.getString(3)));
+                }
+            }
+            try (ResultSet rows = statement.executeQuery(
+                    "SELECT dog_id, owner_id FROM dog_owner ORDER BY dog_id, ordinal")) {
+                while (rows.next()) {
+                    Owner owner = owners.get(rows.getInt(2));
+                    if (owner != null) {
+                        ownersByDog.computeIfAbsent(rows.getInt(1), k -> new ArrayList<>()).add(owner);
+                    }
+                }
+            }
+            try (ResultSet rows = statement.executeQuery("SELECT dog_id, weekday FROM attendance")) {
+                while (rows.next()) {
+                    kennelDays.merge(rows.getInt(1), 1 << rows.getInt(2), (a, b) -> a | b);
+                }
+            }
+            try (ResultSet rows = statement.executeQuery(
+                    "SELECT id, name, breed, dangerous, age, sex, neutered FROM dog ORDER BY seq")) {
+                while (rows.next()) {
+                    int id = rows.getInt(1);
+                    String sex = rows.getString(6);
+                    Dog dog = new Dog(id, rows.getString(2), rows.getString(3), rows.getBoolean(4), rows.getInt(5),
+                            sex == null || sex.isEmpty() ? 'F' : sex.charAt(0), rows.getBoolean(7),
+                            ownersByDog.getOrDefault(id, new ArrayList<>()));
+                    dog.setKennelDays(kennelDays.getOrDefault(id, 0));
+                    dogs.add(dog);
+                }
+            }
+        }
+
+        dayCare.close();
+        dayCare.restore(name, maxNumberOfDogs, dogs, dogAutoID, ownerAutoID);
+    }
+
+    @Override
+    public void save(DayCare dayCare) throws Exception {
+        inTransaction(db -> {
+            try (Statement statement = db.createStatement()) {
+                for (String table : new String[]{"attendance", "dog_owner", "dog", "owner", "daycare"}) {
+                    statement.executeUpdate("DELETE FROM " + table);
+                }
+            }
+            writeSettings(db, dayCare);
+
+            LinkedHashMap<Integer, Owner> owners = new LinkedHashMap<>();
+            for (Dog dog : dayCare.getDogsArray()) {
+                for (Owner owner : dog.getOwners()) {
+                    if (owner != null) owners.putIfAbsent(owner.getId(), owner);
+                }
+            }
+            try (PreparedStatement insert = db.prepareStatement("INSERT INTO owner (id, name, phone) VALUES (?, ?, ?)")) {
+                for (Owner owner : owners.values()) {
+                    bindOwner(insert, owner);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+
+            try (PreparedStatement dogs = db.prepareStatement(INSERT_DOG);
+                 PreparedStatement links = db.prepareStatement(INSERT_DOG_OWNER);
+                 PreparedStatement days = db.prepareStatement(INSERT_ATTENDANCE)) {
+                int seq = 0;
+                for (Dog dog : dayCare.getDogsArray()) {
+                    bindDog(dogs, dog, seq++);
+                    dogs.addBatch();
+                    addOwnerLinks(links, dog);
+                    addAttendance(days, dog);
+                }
+                dogs.executeBatch();
+                links.executeBatch();
+                days.executeBatch();
+            }
+        });
+    }
+
+    //-------------------------------------
+    //  Single dogs
+    //-------------------------------------
+
+    @Override
+    public void upsert(DayCare dayCare, Dog dog) throws Exception {
+        inTransaction(db -> {
+            writeSettings(db, dayCare);
+
+            int updated;
+            try (PreparedStatement update = db.prepareStatement(
+                    "UPDATE dog SET name = ?, breed = ?, dangerous = ?, age = ?, sex = ?, neutered = ? WHERE id = ?")) {
+                update.setString(1, dog.getName());
+                update.setString(2, dog.getBreed());
+                update.setBoolean(3, dog.isDangerousBreed());
+                update.setInt(4, dog.getAge());
+                update.setString(5, String.valueOf(dog.getSex()));
+                update.setBoolean(6, dog.isNeutered());
+                update.setInt(7, dog.getId());
+                updated = update.executeUpdate();
+            }
+            if (updated == 0) {
+                int seq;
+                try (Statement statement = db.createStatement();
+                     ResultSet rows = statement.executeQuery("SELECT COALESCE(MAX(seq), -1) + 1 FROM dog")) {
+                    rows.next();
+                    seq = rows.getInt(1);
+                }
+                try (PreparedStatement insert = db.prepareStatement(INSERT_DOG)) {
+                    bindDog(insert, dog, seq);
+                    insert.executeUpdate();
+                }
+            }
+
+            for (Owner owner : dog.getOwners()) {
+                if (owner != null) writeOwner(db, owner);
+            }
+            ArrayList<Integer> previousOwners = unlinkOwners(db, dog.getId());
+            try (PreparedStatement links = db.prepareStatement(INSERT_DOG_OWNER)) {
+                addOwnerLinks(links, dog);
+                links.executeBatch();
+            }
+            deleteUnusedOwners(db, previousOwners);
+
+            deleteWhereDog(db, "attendance", dog.getId());
+            try (PreparedStatement days = db.prepareStatement(INSERT_ATTENDANCE)) {
+                addAttendance(days, dog);
+                days.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public void delete(DayCare dayCare, int dogID) throws Exception {
+        inTransaction(db -> {
+            writeSettings(db, dayCare);
+            deleteWhereDog(db, "attendance", dogID);
+            ArrayList<Integer> previousOwners = unlinkOwners(db, dogID);
+            deleteUnusedOwners(db, previousOwners);
+            try (PreparedStatement delete = db.prepareStatement("DELETE FROM dog WHERE id = ?")) {
+                delete.setInt(1, dogID);
+                delete.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Closes the connection, if this repository opened it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (url == null || connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            connection = null;
+            schemaReady = false;
+        }
+    }
+
+    //-------------------------------------
+    //  Helpers
+    //-------------------------------------
+
+    private interface Work {
+        void run(Connection db) throws SQLException;
+    }
+
+    /**
+     * Runs the work in one transaction, rolling it back if it fails.
+     */
+    private void inTransaction(Work work) throws SQLException {
+        Connection db = connection();
+        boolean autoCommit = db.getAutoCommit();
+        db.setAutoCommit(false);
+        try {
+            work.run(db);
+            db.commit();
+        } catch (SQLException | RuntimeException e) {
+            db.rollback();
+            throw e;
+        } finally {
+            db.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return the connection, opened and with the tables created on first use
+     */
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = DriverManager.getConnection(url);
+        }
+        if (!schemaReady) {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            schemaReady = true;
+        }
+        return connection;
+    }
+
+    private static void writeSettings(Connection db, DayCare dayCare) throws SQLException {
+        int updated;
+        try (PreparedStatement update = db.prepareStatement(
+                "UPDATE daycare SET name = ?, max_dogs = ?, dog_auto_id = ?, owner_auto_id = ? WHERE id = 1")) {
+            bindSettings(update, dayCare);
+            updated = update.executeUpdate();
+        }
+        if (updated == 0) {
+            try (PreparedStatement insert = db.prepareStatement(
+                    "INSERT INTO daycare (name, max_dogs, dog_auto_id, owner_auto_id, id) VALUES (?, ?, ?, ?, 1)")) {
+                bindSettings(insert, dayCare);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private static void bindSettings(PreparedStatement statement, DayCare dayCare) throws SQLException {
+        statement.setString(1, dayCare.getName());
+        statement.setInt(2, dayCare.getMaxNumberOfDogs());
+        statement.setInt(3, dayCare.getDogAutoID());
+        statement.setInt(4, dayCare.getOwnerAutoID());
+    }
+
+    private static void writeOwner(Connection db, Owner owner) throws SQLException {
+        int updated;
+        try (PreparedStatement update = db.prepareStatement("UPDATE owner SET name = ?, phone = ? WHERE id = ?")) {
+            update.setString(1, owner.getName());
+            update.setString(2, owner.getPhoneNumber());
+            update.setInt(3, owner.getId());
+            updated = update.executeUpdate();
+        }
+        if (updated == 0) {
+            try (PreparedStatement insert = db.prepareStatement("INSERT INTO owner (id, name, phone) VALUES (?, ?, ?)")) {
+                bindOwner(insert, owner);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private static void bindOwner(PreparedStatement statement, Owner owner) throws SQLException {
+        statement.setInt(1, owner.getId());
+        statement.setString(2, owner.getName());
+        statement.setString(3, owner.getPhoneNumber());
+    }
+
+    private static void bindDog(PreparedStatement statement, Dog dog, int seq) throws SQLException {
+        statement.setInt(1, dog.getId());
+        statement.setInt(2, seq);
+        statement.setString(3, dog.getName());
+        statement.setString(4, dog.getBreed());
+        statement.setBoolean(5, dog.isDangerousBreed());
+        statement.setInt(6, dog.getAge());
+        statement.setString(7, String.valueOf(dog.getSex()));
+        statement.setBoolean(8, dog.isNeutered());
+    }
+
+    private static void addOwnerLinks(PreparedStatement links, Dog dog) throws SQLException {
+        int ordinal = 0;
+        for (Owner owner : dog.getOwners()) {
+            if (owner == null) continue;
+            links.setInt(1, dog.getId());
+            links.setInt(2, ordinal++);
+            links.setInt(3, owner.getId());
+            links.addBatch();
+        }
+    }
+
+    private static void addAttendance(PreparedStatement days, Dog dog) throws SQLException {
+        for (int day = 0; day < Dog.DAYS_IN_WEEK; day++) {
+            if (dog.isInKennel(day)) {
+                days.setInt(1, dog.getId());
+                days.setInt(2, day);
+                days.addBatch();
+            }
+        }
+    }
+
+    private static void deleteWhereDog(Connection db, String table, int dogID) throws SQLException {
+        try (PreparedStatement delete = db.prepareStatement("DELETE FROM " + table + " WHERE dog_id = ?")) {
+            delete.setInt(1, dogID);
+            delete.executeUpdate();
+        }
+    }
+
+    /**
+     * Removes the dog's owner links.
+     *
+     * @return the IDs of the owners it was linked to
+     */
+    private static ArrayList<Integer> unlinkOwners(Connection db, int dogID) throws SQLException {
+        ArrayList<Integer> ownerIDs = new ArrayList<>();
+        try (PreparedStatement select = db.prepareStatement("SELECT owner_id FROM dog_owner WHERE dog_id = ?")) {
+            select.setInt(1, dogID);
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) ownerIDs.add(rows.getInt(1));
+            }
+        }
+        deleteWhereDog(db, "dog_owner", dogID);
+        return ownerIDs;
+    }
+
+    /**
+     * Deletes those of the given owners that no dog is linked to any more.
+     */
+    private static void deleteUnusedOwners(Connection db, ArrayList<Integer> ownerIDs) throws SQLException {
+        try (PreparedStatement delete = db.prepareStatement(
+                "DELETE FROM owner WHERE id = ? AND NOT EXISTS (SELECT 1 FROM dog_owner WHERE owner_id = ?)")) {
+            for (int ownerID : ownerIDs) {
+                delete.setInt(1, ownerID);
+                delete.setInt(2, ownerID);
+                delete.addBatch();
+            }
+            delete.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package controllers;
+
+import models.Dog;
+import models.DogListener;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The dogs of a snapshot opened lazily: a {@link BinarySnapshot.Index} plus the dogs decoded from it so far.
+ * The counts and weekly income are totalled from the index when it is opened.
+ * <p>
+ * A dog is decoded the first time it is asked for. The most recently used dogs are kept in a bounded cache;
+ * beyond that a dog is only kept while someone else holds it, so asking again returns the same object
+ * rather than a second copy. A change made to one of these dogs through its setters is passed on to the
+ * given listener, which is expected to load the daycare in full.
+ */
+final class LazyDogs {
+
+    private final BinarySnapshot.Index index;
+
+    /**
+     * First position of each dog ID.
+     */
+    private final HashMap<Integer, Integer> positions;
+
+    private final LinkedHashMap<Integer, Dog> cache;
+
+    /**
+     * Every dog handed out so far, by position, for as long as it is held.
+     */
+    private final WeakReference<Dog>[] decoded;
+
+    private final DogListener onChange;
+
+    private int dangerousCount;
+    private int neuteredCount;
+    private int kennelDayCount;
+    private long weeklyIncomeCents;
+    private final int[] dayCounts = new int[Dog.DAYS_IN_WEEK];
+
+    /**
+     * @param index     the snapshot's index
+     * @param cacheSize most dogs kept decoded when nobody else holds them
+     * @param onChange  told about changes made to decoded dogs
+     */
+    @SuppressWarnings("unchecked")
+    LazyDogs(BinarySnapshot.Index index, int cacheSize, DogListener onChange) {
+        this.index = index;
+        this.onChange = onChange;
+        this.decoded = (WeakReference<Dog>[]) new WeakReference<?>[index.size()];
+
+        positions = new HashMap<>(index.size() * 2);
+        for (int i = index.size() - 1; i >= 0; i--) {
+            positions.put(index.id(i), i);
+
+            int kennelDays = index.kennelDays(i);
+            int days = Integer.bitCount(kennelDays);
+            if (index.isDangerous(i)) dangerousCount++;
+            if (index.isNeutered(i)) neuteredCount++;
+            kennelDayCount += days;
+            weeklyIncomeCents += days * Dog.dailyRateInCents(index.isDangerous(i));
+            for (int day = 0; day < Dog.DAYS_IN_WEEK; day++) {
+                if ((kennelDays & (1 << day)) != 0) dayCounts[day]++;
+            }
+        }
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Dog> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return the snapshot's index
+     */
+    BinarySnapshot.Index index() {
+        return index;
+    }
+
+    /**
+     * @return number of dogs
+     */
+    int size() {
+        return index.size();
+    }
+
+    int countDangerous() {
+        return dangerousCount;
+    }
+
+    int countNeutered() {
+        return neuteredCount;
+    }
+
+    int countOnDay(int day) {
+        return dayCounts[day];
+    }
+
+    /**
+     * @return kennel days booked across all dogs for the week
+     */
+    int totalKennelDays() {
+        return kennelDayCount;
+    }
+
+    /**
+     * @return combined weekly bill in cents
+     */
+    long weeklyIncomeCents() {
+        return weeklyIncomeCents;
+    }
+
+    /**
+     * @return position of the first dog with the given ID, or -1
+     */
+    int positionOf(int id) {
+        return positions.getOrDefault(id, -1);
+    }
+
+    /**
+     * @return position of the given dog object, if it was handed out by {@link #get(int)}, or -1
+     */
+    int positionOf(Dog dog) {
+        Integer position = positions.get(dog.getId());
+        if (position != null && held(position) == dog) return position;
+
+        // the dog's ID was changed, or another dog has it first
+        for (int i = 0; i < decoded.length; i++) {
+            if (decoded[i] != null && decoded[i].get() == dog) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the dog at the given position, decoding it if it is not already held
+     */
+    Dog get(int position) {
+        Dog dog = cache.get(position);
+        if (dog == null) {
+            dog = held(position);
+            if (dog == null) {
+                dog = index.dog(position);
+                dog.addListener(onChange);
+                decoded[position] = new WeakReference<>(dog);
+            }
+            cache.put(position, dog);
+        }
+        return dog;
+    }
+
+    /**
+     * @return the dog at the given position if it has been handed out and is still held, else null
+     */
+    Dog held(int position) {
+        return decoded[position] == null ? null : decoded[position].get();
+    }
+
+    /**
+     * Stops passing on changes to the dogs handed out, once the daycare has been loaded in full.
+     */
+    void release() {
+        for (WeakReference<Dog> reference : decoded) {
+            Dog dog = reference == null ? null : reference.get();
+            if (dog != null) dog.removeListener(onChange);
+        }
+        cache.clear();
+    }
+}
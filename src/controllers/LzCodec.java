@@ -0,0 +1,311 @@
+package controllers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A small, fast LZ77 codec in the style of LZ4: no entropy coding, just literals and back-references found
+ * through a hash of the next four bytes. It trades some of GZIP's ratio for much quicker compression and
+ * decompression.
+ * <p>
+ * A stream is {@code int magic "DCLZ"} followed by blocks of up to 64 KiB of input, each stored as
+ * {@code int raw length, int stored length, bytes}, and ends with a raw length of 0. A negative stored length
+ * marks a block kept as it was because it did not compress. A compressed block is a run of sequences:
+ * <pre>
+ *     byte   token: literal count (high 4 bits), match length - 4 (low 4 bits); 15 = more in extra bytes
+ *     bytes  extra literal count, each byte added until one below 255
+ *     bytes  the literals
+ *     short  match offset, little-endian, 1 to 65535 bytes back     (absent in the last sequence)
+ *     bytes  extra match length, as for the literal count           (absent in the last sequence)
+ * </pre>
+ */
+final class LzCodec {
+
+    static final int MAGIC = 0x44434C5A;
+
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = (1 << 16) - 1;
+    private static final int HASH_BITS = 14;
+
+    private LzCodec() {
+    }
+
+    //-------------------------------------
+    //  Blocks
+    //-------------------------------------
+
+    /**
+     * @return the most bytes {@link #compress} can produce from the given number of bytes
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses one block.
+     *
+     * @param src    the bytes to compress, from offset 0
+     * @param length number of bytes
+     * @param dst    receives the compressed block; at least {@link #maxCompressedLength(int)} long
+     * @param table  scratch hash table of 2^14 entries, reused between blocks
+     * @return length of the compressed block
+     */
+    static int compress(byte[] src, int length, byte[] dst, int[] table) {
+        Arrays.fill(table, -1);
+        int out = 0;
+        int anchor = 0;
+        int i = 0;
+        while (i <= length - MIN_MATCH) {
+            int sequence = readInt(src, i);
+            int hash = (sequence * 0x9E3779B1) >>> (32 - HASH_BITS);
+            int ref = table[hash];
+            table[hash] = i;
+            if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                i++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < length && src[ref + matchLength] == src[i + matchLength]) {
+                matchLength++;
+            }
+            out = writeSequence(src, anchor, i - anchor, dst, out, i - ref, matchLength);
+            i += matchLength;
+            anchor = i;
+        }
+        return writeSequence(src, anchor, length - anchor, dst, out, 0, 0);
+    }
+
+    private static int writeSequence(byte[] src, int literalsAt, int literals, byte[] dst, int out,
+                                     int offset, int matchLength) {
+        int matchCode = offset == 0 ? 0 : matchLength - MIN_MATCH;
+        int tokenAt = out++;
+        dst[tokenAt] = (byte) ((Math.min(literals, 15) << 4) | Math.min(matchCode, 15));
+        if (literals >= 15) out = writeLength(dst, out, literals - 15);
+        System.arraycopy(src, literalsAt, dst, out, literals);
+        out += literals;
+        if (offset == 0) return out;
+
+        dst[out++] = (byte) offset;
+        dst[out++] = (byte) (offset >>> 8);
+        if (matchCode >= 15) out = writeLength(dst, out, matchCode - 15);
+        return out;
+    }
+
+    private static int writeLength(byte[] dst, int out, int length) {
+        while (length >= 255) {
+            dst[out++] = (byte) 255;
+            length -= 255;
+        }
+        dst[out++] = (byte) length;
+        return out;
+    }
+
+    /**
+     * Decompresses one block.
+     *
+     * @param src       the compressed block, from offset 0
+     * @param length    length of the compressed block
+     * @param dst       receives the bytes, from offset 0
+     * @param rawLength number of bytes the block holds
+     * @throws IOException if the block is corrupt
+     */
+    static void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+        try {
+            int in = 0;
+            int out = 0;
+            while (true) {
+                int token = src[in++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int more;
+                    do {
+                        more = src[in++] & 0xFF;
+                        literals += more;
+                    } while (more == 255);
+                }
+                System.arraycopy(src, in, dst, out, literals);
+                in += literals;
+                out += literals;
+                if (in >= length) break;
+
+                int offset = (src[in++] & 0xFF) | (src[in++] & 0xFF) << 8;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int more;
+                    do {
+                        more = src[in++] & 0xFF;
+                        matchLength += more;
+                    } while (more == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = out - offset;
+                if (offset == 0 || ref < 0 || out + matchLength > rawLength) {
+                    throw new IOException("Corrupt LZ block");
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, out, matchLength);
+                } else {
+                    // the match overlaps what it writes, e.g. a run of one repeated byte
+                    for (int k = 0; k < matchLength; k++) {
+                        dst[out + k] = dst[ref + k];
+                    }
+                }
+                out += matchLength;
+            }
+            if (out != rawLength) throw new IOException("Corrupt LZ block");
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZ block", e);
+        }
+    }
+
+    private static int readInt(byte[] bytes, int at) {
+        return (bytes[at] & 0xFF) | (bytes[at + 1] & 0xFF) << 8 | (bytes[at + 2] & 0xFF) << 16 | bytes[at + 3] << 24;
+    }
+
+    //-------------------------------------
+    //  Streams
+    //-------------------------------------
+
+    /**
+     * Compresses what is written to it, one block at a time, onto another stream.
+     * {@link #finish()} ends the stream without closing the one beneath.
+     */
+    static final class Output extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+        private final int[] table = new int[1 << HASH_BITS];
+        private int filled;
+        private boolean finished;
+
+        Output(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (filled == block.length) writeBlock();
+            block[filled++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            while (len > 0) {
+                if (filled == block.length) writeBlock();
+                int n = Math.min(len, block.length - filled);
+                System.arraycopy(bytes, off, block, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (filled == 0) return;
+            int length = compress(block, filled, compressed, table);
+            out.writeInt(filled);
+            if (length < filled) {
+                out.writeInt(length);
+                out.write(compressed, 0, length);
+            } else {
+                out.writeInt(-filled);
+                out.write(block, 0, filled);
+            }
+            filled = 0;
+        }
+
+        /**
+         * Writes the last block and the end of the stream, and flushes the stream beneath.
+         */
+        void finish() throws IOException {
+            if (finished) return;
+            writeBlock();
+            out.writeInt(0);
+            out.flush();
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            out.close();
+        }
+    }
+
+    /**
+     * Decompresses a stream written by {@link Output}.
+     */
+    static final class Input extends InputStream {
+
+        private final DataInputStream in;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private byte[] compressed = new byte[0];
+        private int position;
+        private int limit;
+        private boolean ended;
+
+        Input(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            if (this.in.readInt() != MAGIC) throw new IOException("Not an LZ stream");
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !nextBlock()) return -1;
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (position == limit && !nextBlock()) return -1;
+            int n = Math.min(len, limit - position);
+            System.arraycopy(block, position, bytes, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (ended) return false;
+            try {
+                int rawLength = in.readInt();
+                if (rawLength == 0) {
+                    ended = true;
+                    return false;
+                }
+                int stored = in.readInt();
+                if (rawLength < 0 || rawLength > BLOCK_SIZE || stored > maxCompressedLength(BLOCK_SIZE)) {
+                    throw new IOException("Corrupt LZ stream");
+                }
+                if (stored < 0) {
+                    if (-stored != rawLength) throw new IOException("Corrupt LZ stream");
+                    in.readFully(block, 0, rawLength);
+                } else {
+                    if (compressed.length < stored) compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+                    in.readFully(compressed, 0, stored);
+                    decompress(compressed, stored, block, rawLength);
+                }
+                position = 0;
+                limit = rawLength;
+                return true;
+            } catch (EOFException e) {
+                throw new IOException("LZ stream cut short", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the changes made to a daycare since its last snapshot.
+ * <p>
+ * Each change is recorded as a small record: a dog appended, a dog written at a position, a position removed,
+ * the list cleared, an owner's details changed on all of their dogs, or the daycare's settings. Records are
+ * held in memory until {@link #sync()}, which appends them to the journal file and forces them to disk, so
+ * the cost of a save follows the size of the change.
+ * <p>
+ * Journal files sit next to the snapshot as {@code <snapshot>.journal.<generation>}. A snapshot of
+ * generation S already holds every journal numbered below S; the state of the daycare is the snapshot plus
+ * the journals numbered S and above, replayed in order. Compaction closes the current journal, starts the
+ * next one and writes a snapshot numbered after the closed journal, which can then be deleted.
+ * <p>
+ * Each record is stored as {@code int length, int CRC-32, body}. A record cut short by a crash fails its
+ * check and ends the replay of that journal. With a {@link Compression} other than NONE, a sync that writes
+ * enough records at once writes them as one batch record holding the compressed records.
+ */
+final class MutationJournal implements Closeable {
+
+    static final int MAGIC = 0x44434A4C;
+    static final short VERSION = 1;
+
+    private static final byte APPEND = 1;
+    private static final byte SET = 2;
+    private static final byte REMOVE = 3;
+    private static final byte CLEAR = 4;
+    private static final byte SETTINGS = 5;
+    private static final byte OWNER = 6;
+    private static final byte BATCH = 7;
+
+    /**
+     * Smallest sync, in bytes of records, written as a compressed batch.
+     */
+    static final int COMPRESSION_THRESHOLD = 512;
+
+    private static final int DANGEROUS_FLAG = 1;
+    private static final int NEUTERED_FLAG = 2;
+
+    /**
+     * Receives the changes read back from a journal.
+     */
+    interface Target {
+
+        void append(Dog dog);
+
+        void set(int index, Dog dog);
+
+        void remove(int index);
+
+        void clear();
+
+        void settings(String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID);
+
+        void owner(int id, String name, String phoneNumber);
+    }
+
+    private final long generation;
+    private final FileChannel channel;
+    private final Compression compression;
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(body);
+    private final CRC32 crc = new CRC32();
+
+    private MutationJournal(long generation, FileChannel channel, Compression compression) {
+        this.generation = generation;
+        this.channel = channel;
+        this.compression = compression;
+    }
+
+    //-------------------------------------
+    //  Files
+    //-------------------------------------
+
+    /**
+     * Starts a new, empty journal numbered after the given generation's snapshot.
+     *
+     * @param snapshot    the snapshot file the journal belongs to
+     * @param generation  the journal's number
+     * @param compression compresses the records of large syncs
+     * @return the open journal
+     * @throws IOException if the file cannot be created
+     */
+    static MutationJournal create(Path snapshot, long generation, Compression compression) throws IOException {
+        Path file = journalFile(snapshot, generation);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + Long.BYTES);
+        header.putInt(MAGIC).putShort(VERSION).putLong(generation).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        return new MutationJournal(generation, channel, compression);
+    }
+
+    /**
+     * @return the journal file with the given number
+     */
+    static Path journalFile(Path snapshot, long generation) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".journal." + generation);
+    }
+
+    /**
+     * @return the snapshot's journal files by number, lowest first
+     */
+    static TreeMap<Long, Path> journalFiles(Path snapshot) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        Path directory = snapshot.toAbsolutePath().getParent();
+        String prefix = snapshot.getFileName() + ".journal.";
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path entry : entries) {
+                try {
+                    files.put(Long.parseLong(entry.getFileName().toString().substring(prefix.length())), entry);
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Deletes the snapshot's journals numbered below the given generation.
+     */
+    static void deleteBefore(Path snapshot, long generation) throws IOException {
+        for (Path file : journalFiles(snapshot).headMap(generation).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @return true if any journal numbered at or after the snapshot's generation holds a record
+     */
+    static boolean hasRecords(Path snapshot, long generation) throws IOException {
+        for (Path file : journalFiles(snapshot).tailMap(generation).values()) {
+            if (Files.size(file) > Integer.BYTES + Short.BYTES + Long.BYTES) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replays every journal numbered at or after the snapshot's generation, in order.
+     *
+     * @param snapshot   the snapshot file
+     * @param generation the generation of the loaded snapshot
+     * @param target     receives the changes
+     * @return the highest journal number replayed, or generation - 1 if there were none
+     * @throws IOException if a journal cannot be read
+     */
+    static long replay(Path snapshot, long generation, Target target) throws IOException {
+        long last = generation - 1;
+        for (var entry : journalFiles(snapshot).tailMap(generation).entrySet()) {
+            replay(ByteBuffer.wrap(Files.readAllBytes(entry.getValue())), target);
+            last = entry.getKey();
+        }
+        return last;
+    }
+
+    private static void replay(ByteBuffer in, Target target) throws IOException {
+        if (in.remaining() < Integer.BYTES + Short.BYTES + Long.BYTES) {
+            // created but its header never reached the disk
+            return;
+        }
+        if (in.getInt() != MAGIC || in.getShort() != VERSION) {
+            throw new IOException("Not a daycare journal");
+        }
+        in.getLong();
+        replayRecords(in, target);
+    }
+
+    private static void replayRecords(ByteBuffer in, Target target) throws IOException {
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= 2 * Integer.BYTES) {
+            int length = in.getInt();
+            int expected = in.getInt();
+            if (length < 0 || length > in.remaining()) return;
+
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            crc.reset();
+            crc.update(bytes);
+            if ((int) crc.getValue() != expected) return;
+
+            apply(new DataInputStream(new ByteArrayInputStream(bytes)), target);
+        }
+    }
+
+    private static void apply(DataInputStream in, Target target) throws IOException {
+        switch (in.readByte()) {
+            case APPEND -> target.append(readDog(in));
+            case SET -> target.set(in.readInt(), readDog(in));
+            case REMOVE -> target.remove(in.readInt());
+            case CLEAR -> target.clear();
+            case SETTINGS -> target.settings(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+            case OWNER -> target.owner(in.readInt(), in.readUTF(), in.readUTF());
+            case BATCH -> replayRecords(ByteBuffer.wrap(Compression.decode(in).readAllBytes()), target);
+            default -> throw new IOException("Unknown journal record");
+        }
+    }
+
+    //-------------------------------------
+    //  Recording
+    //-------------------------------------
+
+    /**
+     * @return the journal's number
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return bytes in the journal file and waiting to be written
+     * @throws IOException if the file size cannot be read
+     */
+    long size() throws IOException {
+        return channel.size() + pending.size();
+    }
+
+    void logAppend(Dog dog) {
+        write(APPEND, -1, dog);
+    }
+
+    void logSet(int index, Dog dog) {
+        write(SET, index, dog);
+    }
+
+    void logRemove(int index) {
+        write(REMOVE, index, null);
+    }
+
+    void logClear() {
+        write(CLEAR, -1, null);
+    }
+
+    void logSettings(String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID) {
+        try {
+            record.writeByte(SETTINGS);
+            writeText(record, name);
+            record.writeInt(maxNumberOfDogs);
+            record.writeInt(dogAutoID);
+            record.writeInt(ownerAutoID);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        endRecord();
+    }
+
+    void logOwner(Owner owner) {
+        try {
+            record.writeByte(OWNER);
+            record.writeInt(owner.getId());
+            writeText(record, owner.getName());
+            writeText(record, owner.getPhoneNumber());
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        endRecord();
+    }
+
+    private void write(byte op, int index, Dog dog) {
+        try {
+            record.writeByte(op);
+            if (index >= 0) record.writeInt(index);
+            if (dog != null) writeDog(record, dog);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        endRecord();
+    }
+
+    private void endRecord() {
+        crc.reset();
+        crc.update(body.toByteArray());
+        DataOutputStream out = new DataOutputStream(pending);
+        try {
+            out.writeInt(body.size());
+            out.writeInt((int) crc.getValue());
+            body.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        body.reset();
+    }
+
+    /**
+     * Appends the records logged since the last sync to the journal file and forces them to disk.
+     *
+     * @throws IOException if writing fails
+     */
+    void sync() throws IOException {
+        if (pending.size() == 0) return;
+        if (compression != Compression.NONE && pending.size() >= COMPRESSION_THRESHOLD) {
+            byte[] records = pending.toByteArray();
+            byte[] packed = compression.compress(records);
+            if (packed.length < records.length) {
+                pending.reset();
+                record.writeByte(BATCH);
+                record.write(packed);
+                endRecord();
+            }
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(pending.toByteArray());
+        channel.position(channel.size());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        pending.reset();
+    }
+
+    /**
+     * Closes the journal file. Records not yet synced are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    //-------------------------------------
+    //  Dog records
+    //-------------------------------------
+
+    private static void writeDog(DataOutputStream out, Dog dog) throws IOException {
+        out.writeInt(dog.getId());
+        writeText(out, dog.getName());
+        writeText(out, dog.getBreed());
+        out.writeByte((dog.isDangerousBreed() ? DANGEROUS_FLAG : 0) | (dog.isNeutered() ? NEUTERED_FLAG : 0));
+        out.writeByte(dog.getAge());
+        out.writeByte(dog.getSex());
+        out.writeByte(dog.getKennelDays());
+        out.writeShort(dog.getOwners().size());
+        for (Owner owner : dog.getOwners()) {
+            out.writeInt(owner.getId());
+            writeText(out, owner.getName());
+            writeText(out, owner.getPhoneNumber());
+        }
+    }
+
+    /**
+     * Writes a string, or "" for null, as the snapshot does.
+     */
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        out.writeUTF(text == null ? "" : text);
+    }
+
+    private static Dog readDog(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String name = in.readUTF();
+        String breed = in.readUTF();
+        int flags = in.readByte();
+        int age = in.readByte();
+        char sex = (char) in.readByte();
+        int kennelDays = in.readByte();
+
+        ArrayList<Owner> owners = new ArrayList<>();
+        for (int count = in.readUnsignedShort(); count > 0; count--) {
+            owners.add(new Owner(in.readInt(), in.readUTF(), in.readUTF()));
+        }
+
+        Dog dog = new Dog(id, name, breed, (flags & DANGEROUS_FLAG) != 0, age, sex, (flags & NEUTERED_FLAG) != 0, owners);
+        dog.setKennelDays(kennelDays);
+        return dog;
+    }
+}
@@ -0,0 +1,110 @@
+package controllers;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Formats the rows of a listing, on a fork-join pool once there are more rows than the threshold.
+ * <p>
+ * The rows are cut into chunks of at most the threshold, each formatted into its own buffer by a task on the
+ * common pool. The chunks are written out in order, each as soon as it and every chunk before it are done,
+ * so output starts once the first chunk is formatted and the text is exactly what formatting the rows one
+ * after another gives. Only a few chunks per pool thread are formatted ahead of the one being written, so a
+ * listing of any length is held in memory a few chunks at a time. Row formatters run on several threads at
+ * once and must only read shared state; the daycare must not be changed while a listing is being formatted.
+ */
+final class ParallelFormatter {
+
+    /**
+     * Formats a single row of a listing.
+     */
+    interface RowFormatter {
+
+        /**
+         * @param row number of the row (0 to count - 1)
+         * @param out buffer to append the row's text to
+         */
+        void format(int row, StringBuilder out);
+    }
+
+    /**
+     * Chunks formatted ahead of the one being written, per thread of the pool.
+     */
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    /**
+     * Formats the rows of one chunk into its buffer.
+     */
+    private static final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RowFormatter formatter;
+        private final int from;
+        private final int to;
+        private final StringBuilder text = new StringBuilder();
+
+        private Chunk(RowFormatter formatter, int from, int to) {
+            this.formatter = formatter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                formatter.format(i, text);
+            }
+        }
+    }
+
+    private ParallelFormatter() {
+    }
+
+    /**
+     * Formats rows 0 to count - 1 in order and writes them out. Up to the threshold the rows are written one
+     * at a time on the calling thread; above it they are formatted in parallel chunks of at most threshold rows.
+     *
+     * @param count     number of rows
+     * @param threshold most rows formatted on the calling thread, and the chunk size above that (at least 1)
+     * @param formatter formats one row
+     * @param out       where to write
+     * @throws IOException if writing fails
+     */
+    static void writeRows(int count, int threshold, RowFormatter formatter, Appendable out) throws IOException {
+        if (count <= threshold) {
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                row.setLength(0);
+                formatter.format(i, row);
+                out.append(row);
+            }
+            return;
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int ahead = Math.max(2, pool.getParallelism() * CHUNKS_AHEAD_PER_THREAD);
+        ArrayDeque<Chunk> inFlight = new ArrayDeque<>(ahead);
+        int next = 0;
+        try {
+            while (next < count || !inFlight.isEmpty()) {
+                while (next < count && inFlight.size() < ahead) {
+                    int end = (int) Math.min(count, (long) next + threshold);
+                    Chunk chunk = new Chunk(formatter, next, end);
+                    pool.execute(chunk);
+                    inFlight.add(chunk);
+                    next = end;
+                }
+                Chunk chunk = inFlight.remove();
+                chunk.join();
+                out.append(chunk.text);
+            }
+        } finally {
+            // chunks are left only when a formatter or the output failed; their text would be thrown away
+            for (Chunk chunk : inFlight) {
+                chunk.cancel(false);
+            }
+        }
+    }
+}
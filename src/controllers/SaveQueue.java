@@ -0,0 +1,103 @@
+package controllers;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes files on a background executor that runs one task at a time, in order.
+ * <p>
+ * Requests are coalesced per file: a request made while an earlier one for the same file is still waiting
+ * to start replaces it, and both callers get the same future. A burst of saves therefore writes the file
+ * once, with the latest state. A request made while the file is being written waits for that write.
+ */
+final class SaveQueue {
+
+    /**
+     * Writes one file.
+     */
+    interface Write {
+        void run() throws Exception;
+    }
+
+    private static final class Pending {
+        private Write write;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Pending(Write write) {
+            this.write = write;
+        }
+    }
+
+    private final Executor executor;
+
+    /**
+     * Requests not yet started, by file.
+     */
+    private final HashMap<Path, Pending> waiting = new HashMap<>();
+
+    /**
+     * Future of the latest request queued; every earlier request finishes before it.
+     */
+    private CompletableFuture<Void> last;
+
+    /**
+     * @param executor runs the writes; must run one task at a time, in the order submitted
+     */
+    SaveQueue(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queues a write of a file, or replaces the write already waiting for that file.
+     *
+     * @param file  the file written
+     * @param write writes it
+     * @return completes when the file has been written, or exceptionally with the reason it was not
+     */
+    synchronized CompletableFuture<Void> submit(Path file, Write write) {
+        Pending pending = waiting.get(file);
+        if (pending != null) {
+            pending.write = write;
+            return pending.done;
+        }
+
+        Pending queued = new Pending(write);
+        waiting.put(file, queued);
+        last = queued.done;
+        executor.execute(() -> run(file, queued));
+        return queued.done;
+    }
+
+    private void run(Path file, Pending pending) {
+        Write write;
+        synchronized (this) {
+            waiting.remove(file);
+            write = pending.write;
+        }
+        try {
+            write.run();
+            pending.done.complete(null);
+        } catch (Throwable e) {
+            pending.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Waits until every write queued so far has finished. Failures are left to the writes' own futures.
+     */
+    void awaitIdle() {
+        CompletableFuture<Void> latest;
+        synchronized (this) {
+            latest = last;
+        }
+        if (latest == null) return;
+        try {
+            latest.join();
+        } catch (CompletionException e) {
+            // reported through the future returned by submit
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package controllers;
+
+import models.Dog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps a daycare in a directory of shard files, so loading and saving can use several cores and disks.
+ * <p>
+ * Dogs are split by ID range (1000 to 9999) into a fixed number of shards, each a binary snapshot (see
+ * {@link BinarySnapshot}) of its own dogs. A manifest holds the daycare's name, limit and auto IDs, the
+ * generation of each shard file and the order of the dogs, so the merged daycare lists them as they were
+ * saved. Shards are read and written in parallel.
+ * <p>
+ * Shard files are named {@code shard-<shard>-<generation>.dat} and never overwritten: new shard files are
+ * written first and the manifest is replaced last, so a save that stops part way leaves the previous
+ * manifest and the shard files it names. A change to one dog rewrites only that dog's shard and the manifest,
+ * plus the shard it was in when an ID change has moved it to another.
+ */
+public final class ShardedDayCareRepository implements DayCareRepository {
+
+    public static final int DEFAULT_SHARD_COUNT = 4;
+    static final String MANIFEST_FILE_NAME = "manifest.dat";
+
+    static final int MAGIC = 0x4443534D;
+    static final short VERSION = 1;
+
+    private static final int FIRST_ID = 1000;
+    private static final int LAST_ID = 9999;
+
+    /**
+     * The contents of a manifest: the daycare's own fields, the generation of each shard's file and the IDs
+     * of the dogs in daycare order.
+     */
+    record Manifest(String name, int maxNumberOfDogs, int dogAutoID, int ownerAutoID,
+                    long[] shardGenerations, int[] dogIDs) {
+
+        int shardCount() {
+            return shardGenerations.length;
+        }
+
+        long latestGeneration() {
+            return Arrays.stream(shardGenerations).max().orElse(0);
+        }
+    }
+
+    /**
+     * Reads or writes one shard.
+     */
+    private interface ShardTask<T> {
+        T run(int shard) throws IOException;
+    }
+
+    private final Path directory;
+    private final int shardCount;
+    private final Executor executor;
+
+    /**
+     * The manifest last read or written, or null before the first.
+     */
+    private Manifest manifest;
+
+    /**
+     * @param directory the directory holding the manifest and shards
+     */
+    public ShardedDayCareRepository(Path directory) {
+        this(directory, DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * @param directory  the directory holding the manifest and shards
+     * @param shardCount number of shards written by {@link #save(DayCare)}; a stored daycare keeps the count
+     *                   it was saved with until it is saved again
+     */
+    public ShardedDayCareRepository(Path directory, int shardCount) {
+        this(directory, shardCount, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param directory  the directory holding the manifest and shards
+     * @param shardCount number of shards written by {@link #save(DayCare)}
+     * @param executor   reads and writes the shards
+     */
+    public ShardedDayCareRepository(Path directory, int shardCount, Executor executor) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        }
+        this.directory = directory;
+        this.shardCount = shardCount;
+        this.executor = executor;
+    }
+
+    @Override
+    public void load(DayCare dayCare) throws Exception {
+        Manifest read = readManifest();
+        ArrayList<ArrayList<Dog>> shards = inParallel(read.shardCount(),
+                shard -> BinarySnapshot.read(shardFile(shard, read.shardGenerations()[shard])).dogs());
+
+        HashMap<Integer, ArrayDeque<Dog>> byID = new HashMap<>(read.dogIDs().length * 2);
+        for (ArrayList<Dog> dogs : shards) {
+            for (Dog dog : dogs) {
+                byID.computeIfAbsent(dog.getId(), id -> new ArrayDeque<>()).add(dog);
+            }
+        }
+        ArrayList<Dog> dogs = new ArrayList<>(read.dogIDs().length);
+        for (int id : read.dogIDs()) {
+            ArrayDeque<Dog> withID = byID.get(id);
+            if (withID == null || withID.isEmpty()) {
+                throw new IOException("Dog " + id + " listed in " + manifestFile() + " is missing from its shard");
+            }
+            dogs.add(withID.poll());
+        }
+
+        dayCare.restore(read.name(), read.maxNumberOfDogs(), dogs, read.dogAutoID(), read.ownerAutoID());
+        manifest = read;
+    }
+
+    @Override
+    public void save(DayCare dayCare) throws Exception {
+        ArrayList<Dog> dogs = dayCare.getDogsArray();
+        ArrayList<ArrayList<Dog>> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(new ArrayList<>());
+        }
+        for (Dog dog : dogs) {
+            shards.get(shardOf(dog.getId(), shardCount)).add(dog);
+        }
+
+        Files.createDirectories(directory);
+        Manifest current = currentManifest();
+        long generation = current == null ? 1 : current.latestGeneration() + 1;
+        long[] generations = new long[shardCount];
+        Arrays.fill(generations, generation);
+
+        inParallel(shardCount, shard -> {
+            writeShard(dayCare, shard, generation, shards.get(shard));
+            return null;
+        });
+        writeManifest(dayCare, generations);
+    }
+
+    @Override
+    public void upsert(DayCare dayCare, Dog dog) throws Exception {
+        storeChange(dayCare, dog.getId());
+    }
+
+    @Override
+    public void delete(DayCare dayCare, int dogID) throws Exception {
+        storeChange(dayCare, dogID);
+    }
+
+    /**
+     * Rewrites the shard holding the given dog ID, and any other shard whose dog IDs no longer match the
+     * manifest (the old shard of a dog whose ID has changed), then the manifest. Saves in full when nothing
+     * is stored yet.
+     */
+    private void storeChange(DayCare dayCare, int dogID) throws Exception {
+        Manifest current = currentManifest();
+        if (current == null) {
+            save(dayCare);
+            return;
+        }
+
+        int count = current.shardCount();
+        BitSet changed = changedShards(current, dayCare.getDogsArray());
+        changed.set(shardOf(dogID, count));
+        HashMap<Integer, ArrayList<Dog>> shards = new HashMap<>();
+        for (int shard = changed.nextSetBit(0); shard >= 0; shard = changed.nextSetBit(shard + 1)) {
+            shards.put(shard, new ArrayList<>());
+        }
+        for (Dog dog : dayCare.getDogsArray()) {
+            ArrayList<Dog> dogs = shards.get(shardOf(dog.getId(), count));
+            if (dogs != null) dogs.add(dog);
+        }
+
+        long[] generations = current.shardGenerations().clone();
+        long generation = current.latestGeneration() + 1;
+        for (int shard = changed.nextSetBit(0); shard >= 0; shard = changed.nextSetBit(shard + 1)) {
+            generations[shard] = generation;
+            writeShard(dayCare, shard, generation, shards.get(shard));
+        }
+        writeManifest(dayCare, generations);
+    }
+
+    /**
+     * @return the shards of the dog IDs that are listed in the manifest a different number of times than
+     * they are held by the daycare
+     */
+    private static BitSet changedShards(Manifest current, ArrayList<Dog> dogs) {
+        HashMap<Integer, Integer> counts = new HashMap<>(current.dogIDs().length * 2);
+        for (int id : current.dogIDs()) {
+            counts.merge(id, 1, Integer::sum);
+        }
+        for (Dog dog : dogs) {
+            counts.merge(dog.getId(), -1, Integer::sum);
+        }
+        BitSet changed = new BitSet(current.shardCount());
+        counts.forEach((id, difference) -> {
+            if (difference != 0) changed.set(shardOf(id, current.shardCount()));
+        });
+        return changed;
+    }
+
+    /**
+     * @return the shard a dog ID belongs to, out of the given number of equal ID ranges
+     */
+    static int shardOf(int dogID, int shardCount) {
+        int id = Math.max(FIRST_ID, Math.min(LAST_ID, dogID));
+        return (int) ((long) (id - FIRST_ID) * shardCount / (LAST_ID - FIRST_ID + 1));
+    }
+
+    /**
+     * @return the manifest file
+     */
+    Path manifestFile() {
+        return directory.resolve(MANIFEST_FILE_NAME);
+    }
+
+    /**
+     * @return the file holding the given generation of a shard
+     */
+    Path shardFile(int shard, long generation) {
+        return directory.resolve("shard-" + shard + "-" + generation + ".dat");
+    }
+
+    //-------------------------------------
+    //  Shards
+    //-------------------------------------
+
+    private void writeShard(DayCare dayCare, int shard, long generation, ArrayList<Dog> dogs) throws IOException {
+        AtomicFile.write(shardFile(shard, generation), out -> dayCare.getCompression().writeTo(out,
+                stream -> BinarySnapshot.write(stream, dayCare.getName(), dayCare.getMaxNumberOfDogs(),
+                        dayCare.getDogAutoID(), dayCare.getOwnerAutoID(), 0, dogs)));
+    }
+
+    /**
+     * Runs a task for every shard on the executor and waits for all of them, so none is still running when
+     * this returns or throws.
+     *
+     * @return the tasks' results, by shard
+     * @throws IOException the first failure, once every task has finished
+     */
+    private <T> ArrayList<T> inParallel(int count, ShardTask<T> task) throws IOException {
+        ArrayList<CompletableFuture<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.run(current);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        ArrayList<T> results = new ArrayList<>(count);
+        Throwable failure = null;
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null) failure = e.getCause();
+            }
+        }
+        if (failure instanceof UncheckedIOException unchecked) throw unchecked.getCause();
+        if (failure instanceof RuntimeException runtime) throw runtime;
+        if (failure instanceof Error error) throw error;
+        if (failure != null) throw new IOException(failure);
+        return results;
+    }
+
+    //-------------------------------------
+    //  Manifest
+    //-------------------------------------
+
+    /**
+     * @return the manifest last read or written, reading it if there is one on disk, else null
+     */
+    private Manifest currentManifest() throws IOException {
+        if (manifest == null && Files.exists(manifestFile())) {
+            manifest = readManifest();
+        }
+        return manifest;
+    }
+
+    private Manifest readManifest() throws IOException {
+        Path file = manifestFile();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a daycare shard manifest: " + file);
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported shard manifest version " + version + ": " + file);
+            }
+            String name = in.readUTF();
+            int maxNumberOfDogs = in.readInt();
+            int dogAutoID = in.readInt();
+            int ownerAutoID = in.readInt();
+            long[] generations = new long[in.readInt()];
+            for (int shard = 0; shard < generations.length; shard++) {
+                generations[shard] = in.readLong();
+            }
+            int[] dogIDs = new int[in.readInt()];
+            for (int i = 0; i < dogIDs.length; i++) {
+                dogIDs[i] = in.readInt();
+            }
+            return new Manifest(name, maxNumberOfDogs, dogAutoID, ownerAutoID, generations, dogIDs);
+        }
+    }
+
+    /**
+     * Replaces the manifest with the daycare's fields and dog order and the given shard generations, then
+     * deletes the shard files it no longer names.
+     */
+    private void writeManifest(DayCare dayCare, long[] generations) throws IOException {
+        ArrayList<Dog> dogs = dayCare.getDogsArray();
+        int[] dogIDs = new int[dogs.size()];
+        for (int i = 0; i < dogIDs.length; i++) {
+            dogIDs[i] = dogs.get(i).getId();
+        }
+        Manifest written = new Manifest(dayCare.getName(), dayCare.getMaxNumberOfDogs(), dayCare.getDogAutoID(),
+                dayCare.getOwnerAutoID(), generations, dogIDs);
+
+        AtomicFile.write(manifestFile(), stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(written.name() == null ? "" : written.name());
+            out.writeInt(written.maxNumberOfDogs());
+            out.writeInt(written.dogAutoID());
+            out.writeInt(written.ownerAutoID());
+            out.writeInt(generations.length);
+            for (long generation : generations) {
+                out.writeLong(generation);
+            }
+            out.writeInt(dogIDs.length);
+            for (int id : dogIDs) {
+                out.writeInt(id);
+            }
+            out.flush();
+        });
+        manifest = written;
+        deleteUnusedShards(written);
+    }
+
+    private void deleteUnusedShards(Manifest current) throws IOException {
+        HashSet<Path> used = new HashSet<>();
+        for (int shard = 0; shard < current.shardCount(); shard++) {
+            used.add(shardFile(shard, current.shardGenerations()[shard]));
+        }
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory, "shard-*.dat")) {
+            for (Path shard : shards) {
+                if (!used.contains(shard)) Files.deleteIfExists(shard);
+            }
+        }
+    }
+}
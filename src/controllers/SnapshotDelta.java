@@ -0,0 +1,213 @@
+package controllers;
+
+import models.Dog;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The dogs added, changed and removed since a binary snapshot was written, kept in a diff file beside it
+ * ({@code <snapshot>.diff}) and layered over it on load.
+ * <p>
+ * Layout (big-endian), version 1:
+ * <pre>
+ *     int    magic "DCSD"
+ *     short  version
+ *     long   length of the base snapshot, long CRC-32 of the base snapshot
+ *     int    removed count, then the base positions of the dogs removed
+ *     int    replaced count, then the base positions of the dogs replaced or changed
+ *     bytes  a {@link BinarySnapshot} holding the daycare's fields, the replacing dogs in the order of
+ *            their positions above, then the dogs added since the base, in order
+ * </pre>
+ * The diff always describes the whole difference from the base, so each delta save replaces it. It only
+ * applies to the base it was written against: one written against another version of the snapshot is
+ * ignored. Since dogs are only ever added at the end, the daycare is rebuilt as the base's dogs in order,
+ * without the removed ones and with the replaced ones swapped in, followed by the added ones.
+ */
+final class SnapshotDelta {
+
+    static final int MAGIC = 0x44435344;
+    static final short VERSION = 1;
+
+    /**
+     * Identifies the snapshot a diff was written against.
+     */
+    record Base(long length, long checksum) {
+    }
+
+    private final Base base;
+    private final int[] removed;
+    private final int[] replaced;
+    private final BinarySnapshot.Contents dogs;
+
+    /**
+     * @param base     the snapshot the diff applies to
+     * @param removed  base positions of the dogs removed, ascending
+     * @param replaced base positions of the dogs replaced or changed, ascending
+     * @param dogs     the daycare's fields, the replacing dogs and then the added dogs
+     */
+    SnapshotDelta(Base base, int[] removed, int[] replaced, BinarySnapshot.Contents dogs) {
+        this.base = base;
+        this.removed = removed;
+        this.replaced = replaced;
+        this.dogs = dogs;
+    }
+
+    /**
+     * @return the diff file kept beside a snapshot
+     */
+    static Path fileFor(Path snapshot) {
+        return Path.of(snapshot + ".diff");
+    }
+
+    /**
+     * @return the length and CRC-32 of a snapshot file
+     * @throws IOException if the file cannot be read
+     */
+    static Base base(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return new Base(channel.size(), crc.getValue());
+        }
+    }
+
+    Base base() {
+        return base;
+    }
+
+    BinarySnapshot.Contents contents() {
+        return dogs;
+    }
+
+    /**
+     * @return number of dog records the diff adds, replaces or removes
+     */
+    int recordCount() {
+        return removed.length + dogs.dogs().size();
+    }
+
+    /**
+     * @return the base positions of the dogs removed, ascending
+     */
+    int[] removedPositions() {
+        return removed;
+    }
+
+    /**
+     * @return the base positions of the dogs replaced or changed, ascending
+     */
+    int[] replacedPositions() {
+        return replaced;
+    }
+
+    /**
+     * @return number of dogs added since the base; they are the last of the diff's dogs
+     */
+    int addedCount() {
+        return dogs.dogs().size() - replaced.length;
+    }
+
+    /**
+     * Lays the diff over the base snapshot's dogs.
+     *
+     * @param baseDogs the dogs read from the base snapshot
+     * @return the dogs as they were when the diff was written
+     * @throws IOException if the diff refers to dogs the base does not have
+     */
+    ArrayList<Dog> apply(List<Dog> baseDogs) throws IOException {
+        BitSet gone = new BitSet(baseDogs.size());
+        for (int position : removed) {
+            if (position >= baseDogs.size()) throw new IOException("Diff removes a dog the snapshot does not have");
+            gone.set(position);
+        }
+
+        ArrayList<Dog> changed = dogs.dogs();
+        ArrayList<Dog> result = new ArrayList<>(baseDogs.size() - removed.length + addedCount());
+        int next = 0;
+        for (int position = 0; position < baseDogs.size(); position++) {
+            if (next < replaced.length && replaced[next] == position) {
+                result.add(changed.get(next++));
+            } else if (!gone.get(position)) {
+                result.add(baseDogs.get(position));
+            }
+        }
+        if (next != replaced.length) throw new IOException("Diff replaces a dog the snapshot does not have");
+        result.addAll(changed.subList(replaced.length, changed.size()));
+        return result;
+    }
+
+    /**
+     * Replaces the diff file beside a snapshot.
+     *
+     * @param snapshot the base snapshot
+     * @throws IOException if writing fails
+     */
+    void write(Path snapshot) throws IOException {
+        AtomicFile.write(fileFor(snapshot), stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(base.length());
+            out.writeLong(base.checksum());
+            writePositions(out, removed);
+            writePositions(out, replaced);
+            out.flush();
+            BinarySnapshot.write(stream, dogs.name(), dogs.maxNumberOfDogs(), dogs.dogAutoID(), dogs.ownerAutoID(),
+                    dogs.generation(), dogs.dogs());
+        });
+    }
+
+    private static void writePositions(DataOutputStream out, int[] positions) throws IOException {
+        out.writeInt(positions.length);
+        for (int position : positions) {
+            out.writeInt(position);
+        }
+    }
+
+    /**
+     * Reads the diff file beside a snapshot, through a memory-mapped view of it.
+     *
+     * @param snapshot the base snapshot
+     * @return the diff, or null if there is none
+     * @throws IOException if the diff cannot be read or is not a supported diff
+     */
+    static SnapshotDelta read(Path snapshot) throws IOException {
+        Path file = fileFor(snapshot);
+        if (!Files.exists(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < Integer.BYTES + Short.BYTES || in.getInt() != MAGIC) {
+                throw new IOException("Not a daycare snapshot diff: " + file);
+            }
+            short version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported daycare snapshot diff version " + version + ": " + file);
+            }
+            Base base = new Base(in.getLong(), in.getLong());
+            int[] removed = readPositions(in);
+            int[] replaced = readPositions(in);
+            return new SnapshotDelta(base, removed, replaced, BinarySnapshot.read(in));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt daycare snapshot diff: " + file, e);
+        }
+    }
+
+    private static int[] readPositions(ByteBuffer in) {
+        int[] positions = new int[in.getInt()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = in.getInt();
+        }
+        return positions;
+    }
+}
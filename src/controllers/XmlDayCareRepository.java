@@ -0,0 +1,40 @@
+package controllers;
+
+import models.Dog;
+
+import java.nio.file.Path;
+
+/**
+ * Keeps a daycare in an XML file. The file is one document, so a change to one dog rewrites the whole file.
+ */
+public final class XmlDayCareRepository implements DayCareRepository {
+
+    private final Path file;
+
+    /**
+     * @param file the XML file
+     */
+    public XmlDayCareRepository(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void load(DayCare dayCare) throws Exception {
+        dayCare.load(file.toString(), DayCare.FileFormat.XML);
+    }
+
+    @Override
+    public void save(DayCare dayCare) throws Exception {
+        dayCare.save(file.toString(), DayCare.FileFormat.XML);
+    }
+
+    @Override
+    public void upsert(DayCare dayCare, Dog dog) throws Exception {
+        save(dayCare);
+    }
+
+    @Override
+    public void delete(DayCare dayCare, int dogID) throws Exception {
+        save(dayCare);
+    }
+}
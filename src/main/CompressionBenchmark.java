@@ -0,0 +1,79 @@
+package main;
+
+import controllers.Compression;
+import controllers.DayCare;
+import models.Dog;
+import models.Owner;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares file size and save/load time of the daycare files for each {@link Compression}, in both the XML
+ * and the binary snapshot format.
+ * <p>
+ * Usage: {@code java main.CompressionBenchmark [dogs] [rounds]} (defaults: 50000 dogs, 5 rounds). Each time
+ * reported is the best of the rounds, after one warm-up round.
+ */
+public class CompressionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int dogs = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        DayCare dayCare = sampleDayCare(dogs);
+        Path directory = Files.createTempDirectory("daycare-benchmark");
+
+        System.out.printf("%d dogs, best of %d rounds%n", dogs, rounds);
+        System.out.printf("%-8s %-6s %12s %10s %10s%n", "format", "codec", "bytes", "save ms", "load ms");
+        for (DayCare.FileFormat format : DayCare.FileFormat.values()) {
+            for (Compression compression : Compression.values()) {
+                Path file = directory.resolve("daycare-" + compression + (format == DayCare.FileFormat.XML ? ".xml" : ".dat"));
+                dayCare.setCompression(compression);
+
+                long bestSave = Long.MAX_VALUE;
+                long bestLoad = Long.MAX_VALUE;
+                for (int round = 0; round <= rounds; round++) {
+                    long start = System.nanoTime();
+                    dayCare.save(file.toString(), format);
+                    long saved = System.nanoTime();
+                    new DayCare().load(file.toString(), format);
+                    long loaded = System.nanoTime();
+                    if (round > 0) {
+                        bestSave = Math.min(bestSave, saved - start);
+                        bestLoad = Math.min(bestLoad, loaded - saved);
+                    }
+                }
+                System.out.printf("%-8s %-6s %12d %10.1f %10.1f%n", format, compression, Files.size(file),
+                        bestSave / 1e6, bestLoad / 1e6);
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * @return a daycare of the given number of dogs, with owners shared between a few dogs each
+     */
+    private static DayCare sampleDayCare(int dogs) {
+        String[] breeds = {"Boxer", "Poodle", "Beagle", "Collie", "Labrador", "Terrier", "Husky", "Pug"};
+        Random random = new Random(1);
+        ArrayList<Dog> list = new ArrayList<>(dogs);
+        Owner owner = null;
+        for (int i = 0; i < dogs; i++) {
+            if (i % 3 == 0) {
+                owner = new Owner(100 + (i / 3) % 900, "Owner" + i, String.valueOf(870000000 + i));
+            }
+            Dog dog = new Dog(1000 + i % 9000, "Dog" + i, breeds[random.nextInt(breeds.length)],
+                    random.nextInt(10) == 0, random.nextInt(16), random.nextBoolean() ? 'M' : 'F',
+                    random.nextBoolean(), owner);
+            dog.setKennelDays(random.nextInt(32));
+            list.add(dog);
+        }
+        DayCare dayCare = new DayCare("Benchmark", 100);
+        dayCare.setDogsArray(list);
+        return dayCare;
+    }
+}
@@ -0,0 +1,167 @@
+package main;
+
+import controllers.ConcurrentDayCare;
+import controllers.DayCare;
+import models.Dog;
+import models.Owner;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the throughput of {@link ConcurrentDayCare} with a daycare behind one {@code synchronized} lock,
+ * on mixed workloads of reads (lookups, counts, searches and listings) and writes (dog updates), for a
+ * range of thread counts.
+ * <p>
+ * Usage: {@code java main.ConcurrencyBenchmark [dogs] [seconds]} (defaults: 2000 dogs, 1 second per run).
+ * Each run is preceded by an untimed warm-up run of the same length.
+ */
+public class ConcurrencyBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+    private static final int[] READ_PERCENTAGES = {100, 95, 80, 50};
+    private static final String[] BREEDS = {"Boxer", "Poodle", "Beagle", "Collie", "Labrador", "Terrier", "Husky", "Pug"};
+
+    /**
+     * The daycare operations a benchmark thread runs, behind one kind of guard.
+     */
+    private interface Target {
+        void read(int operation, int id);
+
+        void write(int id, Dog dog);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int dogs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        long nanos = (long) (seconds * 1e9);
+
+        System.out.printf("%d dogs, %.1f s per run, operations per second%n", dogs, seconds);
+        System.out.printf("%-8s %-7s %14s %14s %8s%n", "threads", "reads", "synchronized", "stamped", "ratio");
+        for (int readPercentage : READ_PERCENTAGES) {
+            for (int threads : THREAD_COUNTS) {
+                double locked = run(synchronizedTarget(sampleDayCare(dogs)), dogs, threads, readPercentage, nanos);
+                double stamped = run(stampedTarget(new ConcurrentDayCare(sampleDayCare(dogs))), dogs, threads,
+                        readPercentage, nanos);
+                System.out.printf("%-8d %6d%% %14.0f %14.0f %7.2fx%n", threads, readPercentage, locked, stamped,
+                        stamped / locked);
+            }
+        }
+    }
+
+    private static Target synchronizedTarget(DayCare dayCare) {
+        return new Target() {
+            @Override
+            public void read(int operation, int id) {
+                synchronized (dayCare) {
+                    switch (operation) {
+                        case 0 -> dayCare.getDogByID(id);
+                        case 1 -> dayCare.numberOfDogsOnDay(id % Dog.DAYS_IN_WEEK);
+                        case 2 -> dayCare.searchDogsByName(String.valueOf(id % 100));
+                        default -> dayCare.listDogsByBreed(BREEDS[id % BREEDS.length]);
+                    }
+                }
+            }
+
+            @Override
+            public void write(int id, Dog dog) {
+                synchronized (dayCare) {
+                    dayCare.updateDog(id, dog);
+                }
+            }
+        };
+    }
+
+    private static Target stampedTarget(ConcurrentDayCare dayCare) {
+        return new Target() {
+            @Override
+            public void read(int operation, int id) {
+                switch (operation) {
+                    case 0 -> dayCare.getDogByID(id);
+                    case 1 -> dayCare.numberOfDogsOnDay(id % Dog.DAYS_IN_WEEK);
+                    case 2 -> dayCare.searchDogsByName(String.valueOf(id % 100));
+                    default -> dayCare.listDogsByBreed(BREEDS[id % BREEDS.length]);
+                }
+            }
+
+            @Override
+            public void write(int id, Dog dog) {
+                dayCare.updateDog(id, dog);
+            }
+        };
+    }
+
+    /**
+     * Runs the workload on the given number of threads, once to warm up and once timed.
+     *
+     * @return operations per second in the timed run
+     */
+    private static double run(Target target, int dogs, int threads, int readPercentage, long nanos)
+            throws InterruptedException {
+        runOnce(target, dogs, threads, readPercentage, nanos);
+        return runOnce(target, dogs, threads, readPercentage, nanos) * 1e9 / nanos;
+    }
+
+    private static long runOnce(Target target, int dogs, int threads, int readPercentage, long nanos)
+            throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        ArrayList<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long done = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    int id = 1000 + random.nextInt(dogs);
+                    if (random.nextInt(100) < readPercentage) {
+                        // mostly cheap reads, with a listing now and then
+                        int roll = random.nextInt(20);
+                        target.read(roll < 10 ? 0 : roll < 16 ? 1 : roll < 19 ? 2 : 3, id);
+                    } else {
+                        target.write(id, sampleDog(id, random.nextInt(21)));
+                    }
+                    done++;
+                }
+                operations.add(done);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        deadline[0] = System.nanoTime() + nanos;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum();
+    }
+
+    private static Dog sampleDog(int id, int age) {
+        return new Dog(id, "Dog" + id, BREEDS[id % BREEDS.length], id % 10 == 0, age, id % 2 == 0 ? 'M' : 'F',
+                id % 3 == 0, new Owner(100 + id % 900, "Owner" + id % 900, "0871234567"));
+    }
+
+    /**
+     * @return a daycare of the given number of dogs, with IDs from 1000
+     */
+    private static DayCare sampleDayCare(int dogs) {
+        Random random = new Random(1);
+        ArrayList<Dog> list = new ArrayList<>(dogs);
+        for (int i = 0; i < dogs; i++) {
+            Dog dog = sampleDog(1000 + i, random.nextInt(16));
+            dog.setKennelDays(random.nextInt(32));
+            list.add(dog);
+        }
+        DayCare dayCare = new DayCare("Benchmark", 100);
+        dayCare.setDogsArray(list);
+        return dayCare;
+    }
+}
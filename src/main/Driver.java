@@ -1,31 +1,75 @@
 package main;
 
+import controllers.BackgroundLoad;
+import controllers.BulkTransfer;
 import controllers.DayCare;
 import models.*;
 import utils.Helper;
 import utils.ScannerInput;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 public class Driver {
 
     private DayCare dayCare = new DayCare();
 
+    /**
+     * The daycare being loaded in the background at startup, until the menu has switched to it; null otherwise.
+     */
+    private BackgroundLoad loading;
+
+    /**
+     * Main menu options that only read the daycare, so can be answered from part of it during the startup load.
+     */
+    private static final int[] READ_ONLY_OPTIONS = {2, 9, 10, 11, 12, 13};
+
 
     public static void main(String[] args) {
 
-        new Driver();
+        new Driver(!Arrays.asList(args).contains("--wait"));
 
     }
 
+    /**
+     * Constructor that starts the daycare application by loading existing data in the background
+     * and launching the main menu.
+     */
+    public Driver() {
+        this(true);
+    }
+
     /**
      * Constructor that starts the daycare application by attempting to load
      * existing data and launching the main menu.
+     *
+     * @param loadInBackground true to show the menu straight away while the data loads (see {@link BackgroundLoad}),
+     *                         false to wait for the snapshot's index first, as with {@code --wait}
      */
-    public Driver() {
-        start();
+    public Driver(boolean loadInBackground) {
+        if (loadInBackground) {
+            startInBackground();
+        } else {
+            start();
+        }
         runMenu();
+        if (loading != null && !loading.isDone()) {
+            // nothing can have changed while the daycare was still loading
+            return;
+        }
+        try {
+            dayCare = dayCareFor(false);
+            dayCare.close();
+        } catch (Exception e) {
+            System.err.println("Error closing file: " + e);
+        }
     }
 
 
@@ -49,12 +93,67 @@ public class Driver {
 
     }
 
+    /**
+     * Starts loading the daycare data in the background, so the menu appears straight away. If there is
+     * no data yet, prompts the user to create a new daycare.
+     */
+    private void startInBackground() {
+        if (Files.exists(Path.of(DayCare.SNAPSHOT_FILE_NAME)) || Files.exists(Path.of(DayCare.XML_FILE_NAME))) {
+            loading = BackgroundLoad.start();
+        } else {
+            System.out.println("Create new daycare.xml");
+            newDayCare();
+        }
+    }
+
+    /**
+     * Picks the daycare an option works on. Once the startup load is ready that is the loaded daycare. While
+     * it is still running, options that only read are given the dogs loaded so far when the load can offer
+     * them; anything else waits for the load to finish, showing its progress.
+     *
+     * @param readOnly true if the option only reads the daycare
+     * @return the daycare to work on
+     */
+    private DayCare dayCareFor(boolean readOnly) {
+        if (loading == null) return dayCare;
+
+        if (readOnly && !loading.isDone()) {
+            DayCare view = loading.view();
+            if (view != null) {
+                System.out.println("Still loading (" + loading.progress() + "): showing the dogs loaded so far");
+                return view;
+            }
+        }
+        try {
+            while (true) {
+                try {
+                    dayCare = loading.ready().get(250, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    System.out.print("\rLoading: " + loading.progress() + "   ");
+                }
+            }
+            System.out.println("Data was successfully loaded (" + loading.progress() + ")");
+        } catch (ExecutionException e) {
+            System.err.println("Error reading from file: " + e.getCause().getMessage());
+            System.out.println("Create new daycare.xml");
+            newDayCare();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        loading = null;
+        return dayCare;
+    }
+
     /**
      * Displays the main menu and reads user input.
      *
      * @return the selected menu option
      */
     private int mainMenu() {
+        if (loading != null && !loading.isDone()) {
+            System.out.println("Loading in the background: " + loading.progress());
+        }
         return ScannerInput.readNextInt("""
                 ------------------------------------------------------------------
                 |                         Day Care Main Menu                    |
@@ -79,6 +178,10 @@ public class Driver {
                 | 13) Owner Report                                              |
                 ------------------------------------------------------------------
                 | 14) Save DayCare to File                                      |
+                | 15) Export DayCare to XML                                     |
+                | 16) Import DayCare from XML                                   |
+                | 17) Import Dogs from CSV/JSON                                 |
+                | 18) Export Dogs to CSV/JSON                                   |
                 |  0) Exit                                                      |
                 ------------------------------------------------------------------
                 ==>>   """);
@@ -92,6 +195,8 @@ public class Driver {
         int option = mainMenu();
 
         while (option != 0) {
+            int selected = option;
+            dayCare = dayCareFor(Arrays.stream(READ_ONLY_OPTIONS).anyMatch(readOnly -> readOnly == selected));
             switch (option) {
                 case 1 -> addDog();
                 case 2 -> printDogs();
@@ -111,6 +216,10 @@ public class Driver {
                 case 13 -> ownerReport();
 
                 case 14 -> saveDayCare();
+                case 15 -> exportDayCare();
+                case 16 -> importDayCare();
+                case 17 -> importDogs();
+                case 18 -> exportDogs();
                 default -> System.out.println("Invalid option entered: " + option);
             }
 
@@ -152,6 +261,7 @@ public class Driver {
     private void searchMenu() {
         int option = runSearchMenu();
         while (option != 0) {
+            dayCare = dayCareFor(true);
             switch (option) {
                 case 1 -> searchDogsByName();
                 case 2 -> searchDogsByOwnerName();
@@ -179,7 +289,10 @@ public class Driver {
      * Prompts the user for all necessary information and adds the dog if valid.
      */
     private void addDog() {
-        int dogID = dayCare.getDogAutoID();
+        if (dayCare.numberOfDogs() >= dayCare.getMaxNumberOfDogs()) {
+            System.out.println("No Dog Added: the daycare is full");
+            return;
+        }
         String dogName = ScannerInput.readNextLine("Name of the dog: ");
         String dogBreed = ScannerInput.readNextLine("Breed: ");
         boolean dogDangerous = Helper.YNtoBoolean(ScannerInput.readNextChar("Is Dangerous?(Y or N):"));
@@ -187,6 +300,12 @@ public class Driver {
         char dogGender = ScannerInput.readNextChar("Gender?(M or F):");
         boolean dogNeutered = Helper.YNtoBoolean(ScannerInput.readNextChar("Is Neutered? (Y or N):"));
 
+        // the ID is only taken once the dog can be added, so a refused add does not use one up
+        int dogID = dayCare.getDogIDs().next();
+        if (dogID < 0) {
+            System.out.println("No Dog Added: every dog ID is taken");
+            return;
+        }
 
         boolean isAdded = dayCare.addDog(new Dog(dogID, dogName, dogBreed, dogDangerous, dogAge, dogGender, dogNeutered));
 
@@ -202,7 +321,7 @@ public class Driver {
      */
     private void printDogs() {
         System.out.println("List of Dogs are:");
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
 
     }
 
@@ -211,7 +330,7 @@ public class Driver {
      * If the dog with the specified ID exists, prompts the user to update its attributes.
      */
     private void updateDog() {
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
         int dogID = ScannerInput.readNextInt("Enter dog ID: ");
 
         if (dayCare.getDog(dogID) != null) {
@@ -241,7 +360,7 @@ public class Driver {
      * Prompts the user to enter a dog ID and removes the dog if found.
      */
     private void deleteDog() {
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
 
         int dogID = ScannerInput.readNextInt("Enter dog ID: ");
 
@@ -264,7 +383,7 @@ public class Driver {
         boolean[] activeDays = new boolean[5];
         String[] dayNames = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday"};
 
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
 
         int dogID = ScannerInput.readNextInt("Enter Dog ID: ");
         Dog dog = dayCare.getDog(dogID);
@@ -307,10 +426,10 @@ public class Driver {
      * Prompts the user to select a dog and an existing owner.
      */
     private void addExistingOwner() {
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
         int dogID = ScannerInput.readNextInt("Enter dog ID: ");
 
-        System.out.println(dayCare.listOwners());
+        print(dayCare::listOwners);
         int ownerID = ScannerInput.readNextInt("Enter owner ID: ");
 
         boolean isAdded = dayCare.addOwner(dayCare.getOwner(ownerID), dogID);
@@ -328,12 +447,21 @@ public class Driver {
      * Prompts the user for owner details and adds them to the selected dog.
      */
     private void addNewOwner() {
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
         int dogID = ScannerInput.readNextInt("Enter dog ID: ");
+        if (dayCare.getDogByID(dogID) == null) {
+            System.out.println("No Dog Found");
+            return;
+        }
 
         String ownerName = ScannerInput.readNextLine("Name of the owner: ");
         String ownerNumber = ScannerInput.readNextLine("Phone Number of the owner: ");
-        int ownerID = dayCare.getOwnerAutoID();
+        // as for dogs, the ID is only taken once the owner can be added
+        int ownerID = dayCare.getOwnerIDs().next();
+        if (ownerID < 0) {
+            System.out.println("No owner Added: every owner ID is taken");
+            return;
+        }
 
         boolean isAdded = dayCare.addOwner(new Owner(ownerID, ownerName, ownerNumber), dogID);
 
@@ -350,7 +478,7 @@ public class Driver {
      */
     private void listOwners() {
         System.out.println("List of Owners:");
-        System.out.println(dayCare.listOwners());
+        print(dayCare::listOwners);
     }
 
 
@@ -359,11 +487,11 @@ public class Driver {
      * Prompts the user to enter updated details.
      */
     private void updateOwner() {
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
         int dogID = ScannerInput.readNextInt("Enter dog ID: ");
 
         if (dayCare.getDog(dogID) != null) {
-            System.out.println(dayCare.listAllOwnersByDogID(dogID));
+            print(out -> dayCare.listAllOwnersByDogID(dogID, out));
 
             int ownerID = ScannerInput.readNextInt("Enter owner ID: ");
             String ownerName = ScannerInput.readNextLine("Name of the owner: ");
@@ -388,12 +516,12 @@ public class Driver {
      * Prompts the user to choose the dog and owner to remove.
      */
     private void removeOwner() {
-        System.out.println(dayCare.listAllDogs());
+        print(dayCare::listAllDogs);
         int dogID = ScannerInput.readNextInt("Enter dog ID: ");
 
         if (dayCare.getDog(dogID) != null) {
 
-            System.out.println(dayCare.listAllOwnersByDogID(dogID));
+            print(out -> dayCare.listAllOwnersByDogID(dogID, out));
             int ownerID = ScannerInput.readNextInt("Enter owner ID: ");
 
             if (dayCare.removeOwner(ownerID, dogID) != null) {
@@ -415,7 +543,7 @@ public class Driver {
      */
     private void listDangerousDogs() {
         System.out.println("List of dangerous Dogs are:");
-        System.out.println(dayCare.listAllDangerousDogs());
+        print(dayCare::listAllDangerousDogs);
     }
 
     /**
@@ -423,7 +551,7 @@ public class Driver {
      */
     private void listDogsByBreed() {
         String breed = ScannerInput.readNextLine("Breed that we are looking for: ");
-        System.out.println(dayCare.listDogsByBreed(breed));
+        print(out -> dayCare.listDogsByBreed(breed, out));
     }
 
     /**
@@ -431,7 +559,7 @@ public class Driver {
      */
     private void listDogsByGender() {
         char gender = ScannerInput.readNextChar("Gender (M or F):");
-        System.out.println(dayCare.listDogsByGender(gender));
+        print(out -> dayCare.listDogsByGender(gender, out));
     }
 
     /**
@@ -439,18 +567,18 @@ public class Driver {
      */
     private void listNeuteredDogs() {
         System.out.println("List of neutered Dogs are:");
-        System.out.println(dayCare.listNeuteredDogs());
+        print(dayCare::listNeuteredDogs);
     }
 
     /**
      * Lists all dogs owned by people whose name contains the given input.
      */
     private void listAllDogsByOwnerName() {
-        System.out.println(dayCare.listOwners());
+        print(dayCare::listOwners);
 
         String ownerName = ScannerInput.readNextLine("Owner Name: ");
 
-        System.out.println(dayCare.getDogsByOwnersName(ownerName));
+        print(out -> dayCare.getDogsByOwnersName(ownerName, out));
     }
 
     /**
@@ -458,7 +586,7 @@ public class Driver {
      */
     private void listAllDogsThatStayMoreThanDays() {
         int numDays = ScannerInput.readNextInt("Number of days: ");
-        System.out.println(dayCare.listAllDogsThatStayMoreThanDays(numDays));
+        print(out -> dayCare.listAllDogsThatStayMoreThanDays(numDays, out));
     }
 
     /**
@@ -466,7 +594,7 @@ public class Driver {
      */
     private void searchDogsByName() {
         String namePart = ScannerInput.readNextLine("Enter part of the dog’s name to search: ");
-        System.out.println(dayCare.searchDogsByName(namePart));
+        print(out -> dayCare.searchDogsByName(namePart, out));
     }
 
     /**
@@ -474,7 +602,7 @@ public class Driver {
      */
     private void searchDogsByOwnerName() {
         String ownerPart = ScannerInput.readNextLine("Enter part of the owner's name to search: ");
-        System.out.println(dayCare.getDogsByOwnersName(ownerPart));
+        print(out -> dayCare.getDogsByOwnersName(ownerPart, out));
     }
 
     /**
@@ -502,20 +630,19 @@ public class Driver {
     private void weeklyReport() {
         System.out.println("===== WEEKLY REPORT =====");
         System.out.println("Weekly income: " + dayCare.getWeeklyIncome());
-        System.out.println("Week timetable:\n" + listDogsByDayOfTheWeek());
+        System.out.println("Week timetable:");
+        print(this::listDogsByDayOfTheWeek);
     }
 
 
-    private String listDogsByDayOfTheWeek() {
-        StringBuilder result = new StringBuilder();
+    private void listDogsByDayOfTheWeek(Appendable out) throws IOException {
         String[] days = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday"};
 
         for (int i = 0; i < days.length; i++) {
-            result.append(days[i]).append(":\n");
-            result.append(dayCare.listDogsByDayOfWeek(i)).append("\n\n");
+            out.append(days[i]).append(":\n");
+            dayCare.listDogsByDayOfWeek(i, out);
+            out.append("\n\n");
         }
-
-        return result.toString();
     }
 
     private String dogStatistics() {
@@ -538,33 +665,32 @@ public class Driver {
         System.out.println("DayCare Name: " + dayCare.getName());
         System.out.println("Maximum Number of Dogs Allowed: " + dayCare.getMaxNumberOfDogs());
         System.out.println("\n--- All Dogs and Their Owners ---");
-        System.out.println(dayCare.listAllDogs()); // includes owners per dog
+        print(dayCare::listAllDogs); // includes owners per dog
         System.out.println(dogStatistics());
     }
 
     private void ownerReport() {
         System.out.println("===== OWNER REPORT =====");
+        write(dayCare::ownerReport);
+    }
 
-        ArrayList<Owner> owners = dayCare.getOwners();
-
-        if (owners.isEmpty()) {
-            System.out.println("No owners found.");
-            return;
-        }
 
-        for (Owner owner : owners) {
-            System.out.println("Owner: " + owner.getName() + " (ID: " + owner.getId() + ")");
-            System.out.println("Phone: " + owner.getPhoneNumber());
+    /**
+     * Writes a listing straight to the console, row by row, followed by a new line.
+     */
+    private void print(DayCare.Listing listing) {
+        write(listing);
+        System.out.println();
+    }
 
-            ArrayList<Dog> ownedDogs = dayCare.searchDogsByOwner(owner);
-            if (ownedDogs.isEmpty()) {
-                System.out.println("  No dogs assigned.\n");
-            } else {
-                for (Dog dog : ownedDogs) {
-                    System.out.println("  - " + dog.getName() + " (" + dog.getBreed() + ")");
-                }
-                System.out.println();
-            }
+    /**
+     * Writes a listing straight to the console, row by row.
+     */
+    private void write(DayCare.Listing listing) {
+        try {
+            listing.writeTo(System.out);
+        } catch (IOException e) {
+            System.err.println("Error writing listing: " + e);
         }
     }
 
@@ -584,13 +710,14 @@ public class Driver {
     }
 
     /**
-     * Loads daycare data from a file using serialization.
+     * Loads daycare data from a file using serialization. The snapshot is opened lazily, so the menu appears
+     * once its index has been read and the dogs are loaded when first needed.
      *
      * @throws Exception if file reading fails
      */
     private void loadDayCare() throws Exception {
         try {
-            dayCare.load();
+            dayCare.loadLazily();
         } catch (Exception e) {
             System.err.println("Error reading from file: " + e.getMessage());
             throw e;
@@ -598,15 +725,73 @@ public class Driver {
     }
 
     /**
-     * Saves the current daycare data to a file using serialization.
+     * Saves the current daycare data to a file using serialization. Whole snapshots are written in the
+     * background, so the menu comes straight back; a failure is reported when the write finishes.
      */
     private void saveDayCare() {
         try {
-            dayCare.save();
+            dayCare.saveAsync().whenComplete((done, e) -> {
+                if (e != null) System.err.println("Error writing to file: " + e);
+            });
         } catch (Exception e) {
             System.err.println("Error writing to file: " + e);
         }
 
     }
 
+    /**
+     * Writes the current daycare data to daycare.xml in the background.
+     */
+    private void exportDayCare() {
+        try {
+            dayCare.saveAsync(DayCare.XML_FILE_NAME).whenComplete((done, e) -> {
+                if (e != null) System.err.println("Error writing to file: " + e);
+                else System.out.println("DayCare exported to " + DayCare.XML_FILE_NAME);
+            });
+        } catch (Exception e) {
+            System.err.println("Error writing to file: " + e);
+        }
+    }
+
+    /**
+     * Replaces the current daycare data with the contents of daycare.xml.
+     */
+    private void importDayCare() {
+        try {
+            dayCare.load(DayCare.XML_FILE_NAME);
+            System.out.println("DayCare imported from " + DayCare.XML_FILE_NAME);
+        } catch (Exception e) {
+            System.err.println("Error reading from file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the dogs in a CSV or JSON file to the daycare. Records that cannot be imported are written to
+     * an error file beside it.
+     */
+    private void importDogs() {
+        Path source = Path.of(ScannerInput.readNextLine("Enter the CSV or JSON file to import: "));
+        Path errors = Path.of(source + ".errors.txt");
+        try {
+            BulkTransfer.Report report = new BulkTransfer(dayCare).importFile(source, errors);
+            System.out.println("Imported " + report);
+            if (report.rejected() > 0) System.out.println("Rejected records are listed in " + errors);
+        } catch (Exception e) {
+            System.err.println("Error importing dogs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the daycare's dogs to a CSV or JSON file.
+     */
+    private void exportDogs() {
+        Path target = Path.of(ScannerInput.readNextLine("Enter the CSV or JSON file to export to: "));
+        try {
+            BulkTransfer.Report report = new BulkTransfer(dayCare).exportFile(target);
+            System.out.println("Exported " + report);
+        } catch (Exception e) {
+            System.err.println("Error exporting dogs: " + e.getMessage());
+        }
+    }
+
 }
@@ -22,6 +22,16 @@ public class Dog {
      */
     public static final float NONDANGEROUS_DAILY_RATE = 30;
 
+    /**
+     * Number of kennel days in a week (Monday to Friday).
+     */
+    public static final int DAYS_IN_WEEK = 5;
+
+    /**
+     * Attendance mask with every weekday set.
+     */
+    public static final int ALL_DAYS_MASK = (1 << DAYS_IN_WEEK) - 1;
+
     private int id = 1000;
     private String name = "";
     private String breed = "";
@@ -30,7 +40,27 @@ public class Dog {
     private char sex = 'F';
     private boolean neutered = false;
     private ArrayList<Owner> owners = new ArrayList<>();
-    private boolean[] daysInKennel = new boolean[5];
+
+    /**
+     * Kennel attendance packed one bit per day, bit 0 = Monday ... bit 4 = Friday.
+     */
+    private int kennelDays = 0;
+
+    /**
+     * Attendance as stored by older daycare.xml files (one boolean per day).
+     * Only ever set while reading such a file; {@link #readResolve()} folds it into kennelDays.
+     */
+    private boolean[] daysInKennel;
+
+    /**
+     * Listeners told about changes to this dog, e.g. the {@code DayCare} indexes it is part of.
+     */
+    private transient ArrayList<DogListener> listeners;
+
+    /**
+     * Number of changes made through this dog's setters, so a saved copy can tell whether the dog has changed.
+     */
+    private transient long version;
 
     /**
      * Constructs a {@code Dog} with a single owner.
@@ -82,6 +112,22 @@ public class Dog {
         setNeutered(neutered);
     }
 
+    /**
+     * Constructs a copy of a dog, holding the same owner objects. Listeners are not copied.
+     */
+    public Dog(Dog dog) {
+        this.id = dog.id;
+        this.name = dog.name;
+        this.breed = dog.breed;
+        this.dangerous = dog.dangerous;
+        this.age = dog.age;
+        this.sex = dog.sex;
+        this.neutered = dog.neutered;
+        this.owners = new ArrayList<>(dog.owners);
+        this.kennelDays = dog.kennelDays;
+        this.daysInKennel = dog.daysInKennel;
+    }
+
     // ---------------- Getters and Setters ----------------
 
     public int getId() {
@@ -93,7 +139,9 @@ public class Dog {
      */
     public void setId(int id) {
         if (Helper.validRange(id, 1000, 9999)) {
+            fireBeforeChange();
             this.id = id;
+            fireAfterChange();
         }
     }
 
@@ -106,7 +154,9 @@ public class Dog {
      */
     public void setName(String name) {
         if (Helper.validateStringLength(name, 20)) {
+            fireBeforeChange();
             this.name = name;
+            fireAfterChange();
         }
     }
 
@@ -115,7 +165,9 @@ public class Dog {
     }
 
     public void setDangerousBreed(boolean dangerous) {
+        fireBeforeChange();
         this.dangerous = dangerous;
+        fireAfterChange();
     }
 
     public int getAge() {
@@ -127,7 +179,9 @@ public class Dog {
      */
     public void setAge(int age) {
         if (Helper.validRange(age, 0, 20)) {
+            fireBeforeChange();
             this.age = age;
+            fireAfterChange();
         }
     }
 
@@ -140,7 +194,9 @@ public class Dog {
      */
     public void setSex(char sex) {
         if (Helper.MFSexCheck(Character.toUpperCase(sex))) {
+            fireBeforeChange();
             this.sex = Character.toUpperCase(sex);
+            fireAfterChange();
         }
     }
 
@@ -149,7 +205,9 @@ public class Dog {
     }
 
     public void setNeutered(boolean neutered) {
+        fireBeforeChange();
         this.neutered = neutered;
+        fireAfterChange();
     }
 
     public ArrayList<Owner> getOwners() {
@@ -185,7 +243,9 @@ public class Dog {
      */
     public boolean addOwner(Owner owner) {
         if (owner != null && !owners.contains(owner)) {
+            fireBeforeChange();
             owners.add(owner);
+            fireAfterChange();
             return true;
         } else {
             return false;
@@ -198,7 +258,9 @@ public class Dog {
     public Owner updateOwner(int ownerID, Owner owner) {
         int index = getOwnerIndexById(ownerID);
         if (index != -1) {
+            fireBeforeChange();
             owners.set(index, owner);
+            fireAfterChange();
             return owner;
         }
         return null;
@@ -211,18 +273,35 @@ public class Dog {
     public Owner removeOwner(int ownerID) {
         int index = getOwnerIndexById(ownerID);
         if (index != -1) {
-            return owners.remove(getOwnerIndexById(ownerID));
+            fireBeforeChange();
+            Owner removed = owners.remove(index);
+            fireAfterChange();
+            return removed;
         } else {
             return null;
         }
     }
 
+    /**
+     * Returns the week's attendance as a new array, one entry per day.
+     */
     public boolean[] getDaysInKennel() {
-        return daysInKennel;
+        boolean[] days = new boolean[DAYS_IN_WEEK];
+        for (int day = 0; day < DAYS_IN_WEEK; day++) {
+            days[day] = (kennelDays & (1 << day)) != 0;
+        }
+        return days;
     }
 
     public boolean getDaysInKennelByIndex(int index) {
-        return daysInKennel[index];
+        return isInKennel(index);
+    }
+
+    /**
+     * Returns the week's attendance packed one bit per day (bit 0 = Monday).
+     */
+    public int getKennelDays() {
+        return kennelDays;
     }
 
     /**
@@ -230,7 +309,13 @@ public class Dog {
      */
     public void setDaysInKennel(int day, boolean present) {
         if (Helper.validRange(day, 0, 4)) {
-            this.daysInKennel[day] = present;
+            fireBeforeChange();
+            if (present) {
+                kennelDays |= 1 << day;
+            } else {
+                kennelDays &= ~(1 << day);
+            }
+            fireAfterChange();
         }
     }
 
@@ -239,17 +324,107 @@ public class Dog {
      */
     public void setDaysInKennel(boolean[] daysInKennel) {
         if (daysInKennel.length == 5) {
-            this.daysInKennel = daysInKennel.clone();
+            fireBeforeChange();
+            this.kennelDays = toKennelDays(daysInKennel);
+            fireAfterChange();
         }
     }
 
+    /**
+     * Sets kennel attendance for the week from a packed mask (bit 0 = Monday); bits above Friday are ignored.
+     */
+    public void setKennelDays(int kennelDays) {
+        fireBeforeChange();
+        this.kennelDays = kennelDays & ALL_DAYS_MASK;
+        fireAfterChange();
+    }
+
+    /**
+     * Packs one boolean per day into an attendance mask.
+     */
+    private static int toKennelDays(boolean[] days) {
+        int mask = 0;
+        for (int day = 0; day < Math.min(days.length, DAYS_IN_WEEK); day++) {
+            if (days[day]) mask |= 1 << day;
+        }
+        return mask;
+    }
+
+    /**
+     * Called by XStream after reading a dog; converts attendance saved in the old boolean-array layout.
+     */
+    private Object readResolve() {
+        if (daysInKennel != null) {
+            kennelDays = toKennelDays(daysInKennel);
+            daysInKennel = null;
+        }
+        return this;
+    }
+
 
     public String getBreed() {
         return breed;
     }
 
     public void setBreed(String breed) {
+        fireBeforeChange();
         this.breed = breed;
+        fireAfterChange();
+    }
+
+    // ---------------- Listeners ----------------
+
+    /**
+     * Registers a listener to be told about changes to this dog.
+     * A listener registered twice is told twice.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(DogListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes one registration of a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(DogListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Gets the number of changes made to this dog through its setters since it was created or loaded.
+     * The count only ever grows, so a dog whose count differs from a remembered one has changed since.
+     *
+     * @return the dog's change count
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // listeners are told from a copy of the list, so one may add or remove listeners while being told
+
+    private void fireBeforeChange() {
+        if (listeners != null) {
+            for (DogListener listener : listeners.toArray(new DogListener[0])) {
+                listener.beforeDogChange(this);
+            }
+        }
+    }
+
+    private void fireAfterChange() {
+        version++;
+        if (listeners != null) {
+            for (DogListener listener : listeners.toArray(new DogListener[0])) {
+                listener.afterDogChange(this);
+            }
+        }
     }
 
     // ---------------- Utility Methods ----------------
@@ -260,11 +435,7 @@ public class Dog {
      * @return Number of days present in kennel.
      */
     public int numOfDaysInKennel() {
-        int result = 0;
-        for (boolean day : daysInKennel) {
-            if (day) result++;
-        }
-        return result;
+        return Integer.bitCount(kennelDays);
     }
 
     /**
@@ -284,9 +455,26 @@ public class Dog {
      * @return The total weekly bill.
      */
     public float getWeeklyBill() {
-        float total =  numOfDaysInKennel() * (dangerous ? DANGEROUS_DAILY_RATE : NONDANGEROUS_DAILY_RATE);
-        return Math.round(total * 100) / 100f;
+        return getWeeklyBillInCents() / 100f;
+    }
+
+    /**
+     * Calculates the weekly bill in whole cents, so totals across many dogs add up exactly.
+     *
+     * @return The total weekly bill in cents.
+     */
+    public long getWeeklyBillInCents() {
+        return numOfDaysInKennel() * dailyRateInCents(dangerous);
+    }
 
+    /**
+     * Returns the daily rate in cents for a dangerous or non-dangerous dog.
+     *
+     * @param dangerous whether the dog is dangerous
+     * @return daily rate in cents
+     */
+    public static long dailyRateInCents(boolean dangerous) {
+        return Math.round((dangerous ? DANGEROUS_DAILY_RATE : NONDANGEROUS_DAILY_RATE) * 100);
     }
 
     /**
@@ -297,7 +485,7 @@ public class Dog {
      */
     public boolean isInKennel(int day) {
         if (Helper.validRange(day, 0, 4)) {
-            return Helper.validRange(day, 0, 4) && daysInKennel[day];
+            return (kennelDays & (1 << day)) != 0;
         } else return false;
     }
 
@@ -326,7 +514,7 @@ public class Dog {
                 && Objects.equals(getName(), dog.getName())
                 && Objects.equals(getBreed(), dog.getBreed())
                 && Objects.equals(getOwners(), dog.getOwners())
-                && Objects.deepEquals(getDaysInKennel(), dog.getDaysInKennel());
+                && getKennelDays() == dog.getKennelDays();
     }
 
     /**
@@ -0,0 +1,25 @@
+package models;
+
+/**
+ * The {@code DogListener} interface is implemented by anything that keeps derived data about a {@link Dog}
+ * (indexes, counters) and needs to hear about changes made directly through the dog's setters.
+ * <p>
+ * Every applied change is bracketed by a call to {@link #beforeDogChange(Dog)} while the dog still holds its
+ * old values and a call to {@link #afterDogChange(Dog)} once the new values are in place.
+ */
+public interface DogListener {
+
+    /**
+     * Called just before a change is applied to the dog.
+     *
+     * @param dog the dog, still holding its old values
+     */
+    void beforeDogChange(Dog dog);
+
+    /**
+     * Called just after a change has been applied to the dog.
+     *
+     * @param dog the dog, now holding its new values
+     */
+    void afterDogChange(Dog dog);
+}
@@ -1,6 +1,8 @@
 package models;
 
 import utils.Helper;
+
+import java.util.ArrayList;
 import java.util.Objects;
 
 /**
@@ -18,6 +20,12 @@ public class Owner {
     /** Phone number of the owner (10 digits, default "087302000"). */
     private String phoneNumber = "087302000";
 
+    /** Number of changes made through the setters, so a saved copy can tell whether the owner has changed. */
+    private transient long version;
+
+    /** Listeners told about changes to this owner, e.g. the {@code DayCare} indexes it is part of. */
+    private transient ArrayList<OwnerListener> listeners;
+
     /**
      * Constructs an {@code Owner} object with the specified ID, name, and phone number.
      * Validates and truncates the name if necessary, and ensures the phone number is valid.
@@ -32,6 +40,17 @@ public class Owner {
         setPhoneNumber(phoneNumber);
     }
 
+    /**
+     * Constructs a copy of an owner. Listeners are not copied.
+     *
+     * @param owner The owner to copy.
+     */
+    public Owner(Owner owner) {
+        this.id = owner.id;
+        this.name = owner.name;
+        this.phoneNumber = owner.phoneNumber;
+    }
+
     /**
      * Gets the owner's ID.
      *
@@ -48,7 +67,9 @@ public class Owner {
      */
     public void setId(int id) {
         if (Helper.validRange(id, 100, 999)) {
+            fireBeforeChange();
             this.id = id;
+            fireAfterChange();
         }
     }
 
@@ -68,7 +89,9 @@ public class Owner {
      */
     public void setName(String name) {
         if (Helper.validateStringLength(name, 30)) {
+            fireBeforeChange();
             this.name = name;
+            fireAfterChange();
         }
     }
 
@@ -88,7 +111,62 @@ public class Owner {
      */
     public void setPhoneNumber(String phoneNumber) {
         if (Helper.validateStringLength(phoneNumber, 10) && Helper.onlyContainsNumbers(phoneNumber)) {
+            fireBeforeChange();
             this.phoneNumber = phoneNumber;
+            fireAfterChange();
+        }
+    }
+
+    /**
+     * Gets the number of changes made to this owner through its setters. The count only ever grows, so an
+     * owner whose count differs from a remembered one has changed since.
+     *
+     * @return The owner's change count.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Registers a listener to be told about changes to this owner.
+     * A listener registered twice is told twice.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(OwnerListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes one registration of a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(OwnerListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    // listeners are told from a copy of the list, so one may add or remove listeners while being told
+
+    private void fireBeforeChange() {
+        if (listeners != null) {
+            for (OwnerListener listener : listeners.toArray(new OwnerListener[0])) {
+                listener.beforeOwnerChange(this);
+            }
+        }
+    }
+
+    private void fireAfterChange() {
+        version++;
+        if (listeners != null) {
+            for (OwnerListener listener : listeners.toArray(new OwnerListener[0])) {
+                listener.afterOwnerChange(this);
+            }
         }
     }
 
@@ -0,0 +1,25 @@
+package models;
+
+/**
+ * The {@code OwnerListener} interface is implemented by anything that keeps derived data about an {@link Owner}
+ * (indexes, journals) and needs to hear about changes made directly through the owner's setters.
+ * <p>
+ * Every applied change is bracketed by a call to {@link #beforeOwnerChange(Owner)} while the owner still holds
+ * its old values and a call to {@link #afterOwnerChange(Owner)} once the new values are in place.
+ */
+public interface OwnerListener {
+
+    /**
+     * Called just before a change is applied to the owner.
+     *
+     * @param owner the owner, still holding its old values
+     */
+    void beforeOwnerChange(Owner owner);
+
+    /**
+     * Called just after a change has been applied to the owner.
+     *
+     * @param owner the owner, now holding its new values
+     */
+    void afterOwnerChange(Owner owner);
+}
@@ -0,0 +1,230 @@
+package utils;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * This class is a case-folded substring index over short texts, each stored under a numbered slot
+ * (for example a list position or an ID). Every 1, 2 and 3 character slice of a text is mapped to the
+ * set of slots whose text contains it.
+ *
+ * A query of up to three characters is answered exactly from a single posting. A longer query is
+ * answered with the slots holding all of its trigrams, which may include a few false matches, so the
+ * caller should confirm those with {@code contains}.
+ *
+ * Slots may be list positions, where removing one moves every later slot down by one. Rather than shift
+ * every posting on each removal, a removed slot is left as a hole in the stored numbering and slots are
+ * translated past the holes; the postings are compacted once enough holes have built up.
+ */
+public class NGramIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    /**
+     * Least number of holes left before the postings are compacted; more are allowed in a large index.
+     */
+    private static final int MIN_HOLES_BEFORE_COMPACTING = 64;
+
+    private final HashMap<String, BitSet> postings = new HashMap<>();
+    private final BitSet slots = new BitSet();
+
+    /**
+     * Stored slots removed by {@link #removeSlot(int, String)} but not yet compacted away. Postings and
+     * {@link #slots} are numbered with the holes in place.
+     */
+    private final BitSet holes = new BitSet();
+    private int holeCount = 0;
+
+    /**
+     * This method indexes a text under a slot. A slot holds one text at a time, so remove the old text first
+     * when a slot's text changes.
+     *
+     * @param slot The slot number (0 or more).
+     * @param text The text to index.
+     */
+    public void add(int slot, String text) {
+        int stored = stored(slot);
+        String folded = text.toLowerCase();
+        for (int start = 0; start < folded.length(); start++) {
+            for (int end = start + 1; end <= Math.min(start + MAX_GRAM, folded.length()); end++) {
+                postings.computeIfAbsent(folded.substring(start, end), k -> new BitSet()).set(stored);
+            }
+        }
+        slots.set(stored);
+    }
+
+    /**
+     * This method removes the text previously indexed under a slot.
+     *
+     * @param slot The slot number.
+     * @param text The text that was indexed under it.
+     */
+    public void remove(int slot, String text) {
+        clearStored(stored(slot), text);
+    }
+
+    /**
+     * Clears a stored slot from the postings of the text's n-grams.
+     */
+    private void clearStored(int stored, String text) {
+        String folded = text.toLowerCase();
+        for (int start = 0; start < folded.length(); start++) {
+            for (int end = start + 1; end <= Math.min(start + MAX_GRAM, folded.length()); end++) {
+                String gram = folded.substring(start, end);
+                BitSet posting = postings.get(gram);
+                if (posting != null) {
+                    posting.clear(stored);
+                    if (posting.isEmpty()) postings.remove(gram);
+                }
+            }
+        }
+        slots.clear(stored);
+    }
+
+    /**
+     * This method removes the text indexed under a slot and moves every later slot down by one, for slots
+     * that are list positions when an element is removed from the list. Only the postings of the text's
+     * own n-grams are touched; the others are compacted later, many removals at a time.
+     *
+     * @param slot The slot number.
+     * @param text The text that was indexed under it.
+     */
+    public void removeSlot(int slot, String text) {
+        int stored = stored(slot);
+        clearStored(stored, text);
+        holes.set(stored);
+        holeCount++;
+        if (holeCount >= Math.max(MIN_HOLES_BEFORE_COMPACTING, slots.length() >>> 6)) {
+            compact();
+        }
+    }
+
+    /**
+     * @return the stored slot for a slot, which is past every hole at or below it
+     */
+    private int stored(int slot) {
+        int stored = slot;
+        for (int hole = holes.nextSetBit(0); hole >= 0 && hole <= stored; hole = holes.nextSetBit(hole + 1)) {
+            stored++;
+        }
+        return stored;
+    }
+
+    /**
+     * @return the given stored slots as slots, i.e. each moved down by the number of holes below it
+     */
+    private BitSet unstored(BitSet stored) {
+        if (holeCount == 0) return stored;
+        BitSet result = new BitSet();
+        int below = 0;
+        int hole = holes.nextSetBit(0);
+        for (int i = stored.nextSetBit(0); i >= 0; i = stored.nextSetBit(i + 1)) {
+            while (hole >= 0 && hole < i) {
+                below++;
+                hole = holes.nextSetBit(hole + 1);
+            }
+            result.set(i - below);
+        }
+        return result;
+    }
+
+    /**
+     * Renumbers every posting without the holes, in one pass over each.
+     */
+    private void compact() {
+        for (BitSet posting : postings.values()) {
+            BitSet compacted = unstored(posting);
+            posting.clear();
+            posting.or(compacted);
+        }
+        BitSet compacted = unstored(slots);
+        slots.clear();
+        slots.or(compacted);
+        holes.clear();
+        holeCount = 0;
+    }
+
+    /**
+     * This method removes one bit from a bit set, moving every higher bit down by one. The bits are moved
+     * a word at a time.
+     *
+     * @param bits  The bit set to change.
+     * @param index The bit to remove.
+     */
+    public static void removeBit(BitSet bits, int index) {
+        if (index >= bits.length()) {
+            bits.clear(index);
+            return;
+        }
+        long[] words = bits.toLongArray();
+        int first = index >>> 6;
+        long below = (1L << (index & 63)) - 1;
+        for (int i = first; i < words.length; i++) {
+            long carried = i + 1 < words.length ? words[i + 1] << 63 : 0;
+            long shifted = (words[i] >>> 1) | carried;
+            words[i] = i == first ? (words[i] & below) | (shifted & ~below) : shifted;
+        }
+        bits.clear();
+        bits.or(BitSet.valueOf(words));
+    }
+
+    /**
+     * This method empties the index.
+     */
+    public void clear() {
+        postings.clear();
+        slots.clear();
+        holes.clear();
+        holeCount = 0;
+    }
+
+    /**
+     * This method returns the slots whose text may contain the query, ignoring case. The result is exact
+     * for queries of up to three characters; longer queries may return slots that need to be checked.
+     *
+     * @param query The text to look for.
+     * @return A new set of candidate slots.
+     */
+    public BitSet candidates(String query) {
+        String folded = query.toLowerCase();
+        if (folded.isEmpty()) {
+            return copy(slots);
+        }
+        if (folded.length() <= MAX_GRAM) {
+            BitSet posting = postings.get(folded);
+            return posting == null ? new BitSet() : copy(posting);
+        }
+
+        BitSet result = null;
+        for (int start = 0; start + MAX_GRAM <= folded.length(); start++) {
+            BitSet posting = postings.get(folded.substring(start, start + MAX_GRAM));
+            if (posting == null) {
+                return new BitSet();
+            }
+            if (result == null) {
+                result = (BitSet) posting.clone();
+            } else {
+                result.and(posting);
+            }
+        }
+        return unstored(result);
+    }
+
+    /**
+     * @return a new set of the slots in a posting
+     */
+    private BitSet copy(BitSet stored) {
+        return holeCount == 0 ? (BitSet) stored.clone() : unstored(stored);
+    }
+
+    /**
+     * This method returns true when the query is answered exactly by {@link #candidates(String)},
+     * i.e. the candidates do not need checking.
+     *
+     * @param query The text to look for.
+     * @return {@code true} if the query has three characters or fewer.
+     */
+    public static boolean isExact(String query) {
+        return query.toLowerCase().length() <= MAX_GRAM;
+    }
+}
@@ -0,0 +1,99 @@
+package controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicFileTest {
+    private Path directory;
+    private Path target;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        directory = Files.createTempDirectory("atomic");
+        directory.toFile().deleteOnExit();
+        target = directory.resolve("daycare.dat");
+    }
+
+    private long filesInDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void replacesTheContents() throws Exception {
+        AtomicFile.write(target, new byte[]{1, 2, 3});
+        AtomicFile.write(target, new byte[]{4});
+        assertArrayEquals(new byte[]{4}, Files.readAllBytes(target));
+        assertEquals(1, filesInDirectory());
+    }
+
+    @Test
+    void failedWriteLeavesTheTargetAsItWas() throws Exception {
+        AtomicFile.write(target, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> AtomicFile.write(target, out -> {
+            out.write(9);
+            throw new IOException("disk full");
+        }));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(target));
+        assertEquals(1, filesInDirectory());
+    }
+
+    @Test
+    void filesGetTheUsualPermissionsAndKeepThem() throws Exception {
+        if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) return;
+
+        AtomicFile.write(target, new byte[]{1});
+        Path plain = Files.createFile(directory.resolve("plain"));
+        assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(target));
+
+        Set<PosixFilePermission> groupReadable = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(target, groupReadable);
+        AtomicFile.write(target, new byte[]{2});
+        assertEquals(groupReadable, Files.getPosixFilePermissions(target));
+    }
+
+    @Test
+    void writersOfOneFileDoNotShareATemporaryFile() throws Exception {
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            byte value = (byte) t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 50; i++) {
+                        AtomicFile.write(target, out -> {
+                            for (int b = 0; b < 10_000; b++) out.write(value);
+                        });
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), String.valueOf(failures.peek()));
+        byte[] contents = Files.readAllBytes(target);
+        assertEquals(10_000, contents.length);
+        for (byte b : contents) {
+            assertEquals(contents[0], b);
+        }
+        assertEquals(1, filesInDirectory());
+    }
+}
@@ -0,0 +1,111 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackgroundLoadTest {
+    private Path directory;
+    private Path snapshot;
+    private DayCare saved;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        directory = Files.createTempDirectory("background");
+        directory.toFile().deleteOnExit();
+        snapshot = directory.resolve("daycare.dat");
+
+        Owner alice = new Owner(101, "Alice", "0871234567");
+        saved = new DayCare("Paws", 30);
+        saved.addDog(new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice));
+        saved.addDog(new Dog(1002, "Bella", "Poodle", false, 2, 'F', true, alice));
+        saved.save(snapshot.toString());
+    }
+
+    @Test
+    void loadsTheSnapshotWithItsJournal() throws Exception {
+        DayCare journaled = new DayCare();
+        journaled.open(snapshot.toString());
+        journaled.addDog(new Dog(1003, "Max", "Beagle", false, 5, 'M', true, new Owner(102, "Bob", "0877654321")));
+        journaled.save();
+        journaled.close();
+
+        BackgroundLoad load = BackgroundLoad.start(snapshot.toString());
+        DayCare loaded = load.ready().get();
+        assertTrue(loaded.isJournaledTo(snapshot));
+        loaded.close();
+
+        assertEquals(journaled.getDogsArray(), loaded.getDogsArray());
+        assertEquals(journaled.getDogAutoID(), loaded.getDogAutoID());
+        assertNull(load.view());
+
+        BackgroundLoad.Progress progress = load.progress();
+        assertEquals(2, progress.loaded());
+        assertEquals(2, progress.total());
+        assertTrue(progress.recordsPerSecond() > 0);
+        assertTrue(progress.toString().startsWith("2/2 (100%) dogs loaded"));
+    }
+
+    @Test
+    void loadsXml() throws Exception {
+        Path xml = directory.resolve("daycare.xml");
+        saved.save(xml.toString());
+
+        BackgroundLoad load = BackgroundLoad.start(xml.toString());
+        assertEquals(saved.getDogsArray(), load.ready().get().getDogsArray());
+        assertEquals(2, load.progress().loaded());
+    }
+
+    @Test
+    void failureCompletesTheFuture() {
+        BackgroundLoad load = BackgroundLoad.start(directory.resolve("missing.dat").toString());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> load.ready().get());
+        assertTrue(e.getCause() instanceof NoSuchFileException);
+        assertTrue(load.isDone());
+        assertNull(load.view());
+    }
+
+    @Test
+    void viewHoldsCopiesOfTheDogsLoadedSoFar() throws Exception {
+        ArrayList<Dog> dogs = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            dogs.add(new Dog(1000 + i % 9000, "Dog" + i, "Pug", false, i % 20, 'F', false,
+                    new Owner(100 + i % 900, "Owner" + i % 900, "0871234567")));
+        }
+        DayCare large = new DayCare("Big", 100);
+        large.setDogsArray(dogs);
+        large.save(snapshot.toString());
+
+        BackgroundLoad load = BackgroundLoad.start(snapshot.toString());
+        while (!load.isDone()) {
+            DayCare view = load.view();
+            if (view == null) continue;
+            int count = view.numberOfDogs();
+            assertTrue(count <= load.progress().loaded());
+            assertEquals("Big", view.getName());
+            if (count > 0) {
+                assertEquals(dogs.get(count - 1), view.getDogByIndex(count - 1));
+                assertNotSame(dogs.get(count - 1), view.getDogByIndex(count - 1));
+            }
+        }
+        DayCare loaded = load.ready().get();
+        loaded.close();
+        assertEquals(dogs, loaded.getDogsArray());
+        assertEquals(dogs.size(), load.progress().total());
+    }
+
+    @Test
+    void progressIsUnknownBeforeTheSnapshotIsIndexed() {
+        BackgroundLoad.Progress progress = new BackgroundLoad.Progress(0, -1, 1_000_000);
+        assertEquals("0 dogs loaded, 0 records/s", progress.toString());
+    }
+}
@@ -0,0 +1,120 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotTest {
+    private DayCare dayCare;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Owner alice = new Owner(101, "Alice", "0871234567");
+        Dog rex = new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice);
+        Dog bella = new Dog(1002, "Bella", "Boxer", false, 2, 'F', true, alice);
+        bella.addOwner(new Owner(102, "Bob", "0877654321"));
+        rex.setKennelDays(0b10011);
+
+        dayCare = new DayCare("Paws", 30);
+        dayCare.addDog(rex);
+        dayCare.addDog(bella);
+
+        file = Files.createTempFile("daycare", ".dat");
+        file.toFile().deleteOnExit();
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        dayCare.save(file.toString());
+        assertEquals(BinarySnapshot.MAGIC, ByteBuffer.wrap(Files.readAllBytes(file)).getInt());
+
+        DayCare loaded = new DayCare();
+        loaded.load(file.toString());
+        assertEquals("Paws", loaded.getName());
+        assertEquals(30, loaded.getMaxNumberOfDogs());
+        assertEquals(dayCare.getDogAutoID(), loaded.getDogAutoID());
+        assertEquals(dayCare.getOwnerAutoID(), loaded.getOwnerAutoID());
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertEquals(0b10011, loaded.getDogByID(1001).getKennelDays());
+        assertEquals(2, loaded.getDogsByOwnerID(101).size());
+        assertEquals(dayCare.getWeeklyIncomeInCents(), loaded.getWeeklyIncomeInCents());
+    }
+
+    @Test
+    void ownersAreStoredOnceAndShared() throws Exception {
+        dayCare.save(file.toString());
+        BinarySnapshot.Contents contents = BinarySnapshot.read(file);
+        assertSame(contents.dogs().get(0).getOwners().get(0), contents.dogs().get(1).getOwners().get(0));
+        assertEquals("Bob", contents.dogs().get(1).getOwners().get(1).getName());
+    }
+
+    @Test
+    void readsVersion1() throws Exception {
+        // one dog with its owner written out in the dog record, and no owner table
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(BinarySnapshot.MAGIC);
+        out.writeShort(1);
+        String[] strings = {"Paws", "Rex", "Boxer", "Alice", "0871234567"};
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            out.writeInt(string.length());
+            out.writeBytes(string);
+        }
+        out.writeInt(24);
+        out.writeInt(0);
+        out.writeInt(30);
+        out.writeInt(1002);
+        out.writeInt(102);
+        out.writeLong(0);
+        out.writeInt(1);
+        out.writeInt(30);
+        out.write(new byte[]{0, 0, 3, (byte) 0xE9, 0, 0, 0, 1, 0, 0, 0, 2, 1, 4, 'M', 0b10011, 0, 1});
+        out.writeInt(101);
+        out.writeInt(3);
+        out.writeInt(4);
+        Files.write(file, bytes.toByteArray());
+
+        DayCare loaded = new DayCare();
+        loaded.load(file.toString());
+        assertEquals(dayCare.getDogByID(1001), loaded.getDogByID(1001));
+        assertEquals(0b10011, loaded.getDogByID(1001).getKennelDays());
+    }
+
+    @Test
+    void formatByFlag() throws Exception {
+        dayCare.save(file.toString(), DayCare.FileFormat.XML);
+        assertTrue(Files.readString(file).startsWith("<object-stream>"));
+
+        DayCare loaded = new DayCare();
+        loaded.load(file.toString(), DayCare.FileFormat.XML);
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertThrows(IOException.class, () -> new DayCare().load(file.toString(), DayCare.FileFormat.BINARY));
+    }
+
+    @Test
+    void formatByExtension() {
+        assertEquals(DayCare.FileFormat.BINARY, DayCare.FileFormat.forFile("daycare.DAT"));
+        assertEquals(DayCare.FileFormat.XML, DayCare.FileFormat.forFile("daycare.xml"));
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws Exception {
+        dayCare.save(file.toString());
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> new DayCare().load(file.toString()));
+    }
+}
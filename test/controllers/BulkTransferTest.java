@@ -0,0 +1,167 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkTransferTest {
+    private Path directory;
+    private Path errors;
+    private DayCare dayCare;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("bulk");
+        directory.toFile().deleteOnExit();
+        errors = directory.resolve("errors.txt");
+        dayCare = new DayCare("Paws", 100);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+
+    @Nested
+    class Csv {
+        @Test
+        void importsValidRowsAndRejectsTheRest() throws IOException {
+            Path source = write("dogs.csv", """
+                    id,name,breed,dangerous,age,sex,neutered,days,owner id,owner name,owner phone
+                    1001,Rex,Boxer,N,3,m,Y,YNYNN,101,"Murphy, Ann",0871234567,102,Bob,0861111111
+                    1002,Fido,Poodle,N,25,M,N,NNNNN,101,Ann,0871234567
+                    1003,Bella,"Cocker \"\"Spaniel\"\"",Y,4,F,N,YYYYY
+                    1001,Twin,Pug,N,2,M,N,NNNNN
+                    1004,Max,Pug,N,2,X,N,NNNNN
+                    1005,Odd,Pug,N,2,M,N
+                    1006,"Quote"d,Pug,N,2,M,N,NNNNN
+
+                    1007,"Multi
+                    Line",Collie,N,5,F,Y,NNNNY,103,Cara,12ab
+                    """);
+
+            BulkTransfer.Report report = new BulkTransfer(dayCare, 2).importFile(source, errors);
+
+            assertEquals(2, report.records());
+            assertEquals(6, report.rejected());
+            assertEquals(2, dayCare.numberOfDogs());
+            assertEquals(1004, dayCare.getDogAutoID());
+
+            Dog rex = dayCare.getDogByID(1001);
+            assertEquals('M', rex.getSex());
+            assertTrue(rex.isNeutered());
+            assertArrayEquals(new boolean[]{true, false, true, false, false}, rex.getDaysInKennel());
+            assertEquals("Murphy, Ann", rex.getOwnerByID(101).getName());
+            assertEquals("0861111111", rex.getOwnerByID(102).getPhoneNumber());
+            assertEquals("Cocker \"Spaniel\"", dayCare.getDogByID(1003).getBreed());
+
+            List<String> lines = Files.readAllLines(errors);
+            assertEquals(6, lines.size());
+            assertTrue(lines.get(0).startsWith("line 3: age must be a whole number from 0 to 20: 25: 1002,Fido"));
+            assertTrue(lines.get(1).startsWith("line 5: dog ID 1001 is already taken"));
+            assertTrue(lines.get(2).startsWith("line 6: sex must be M or F"));
+            assertTrue(lines.get(3).startsWith("line 7: expected 8 fields"));
+            assertTrue(lines.get(4).startsWith("line 8: text after the closing quote"));
+            assertTrue(lines.get(5).startsWith("line 10: owner phone must be up to 10 digits"));
+        }
+
+        @Test
+        void rejectsDogsBeyondTheLimit() throws IOException {
+            dayCare = new DayCare("Paws", 10);
+            StringBuilder csv = new StringBuilder("id,name,breed,dangerous,age,sex,neutered,days\n");
+            for (int i = 0; i < 12; i++) {
+                csv.append(2000 + i).append(",Dog").append(i).append(",Pug,N,1,F,N,NNNNN\n");
+            }
+            csv.append("2010,Again,Pug,N,1,F,N,NNNNN\n");
+
+            BulkTransfer.Report report = new BulkTransfer(dayCare, 4).importFile(write("full.csv", csv.toString()), errors);
+
+            assertEquals(10, report.records());
+            assertEquals(3, report.rejected());
+            assertEquals(10, dayCare.numberOfDogs());
+            assertTrue(Files.readString(errors).contains("the daycare is full"));
+            assertFalse(Files.readString(errors).contains("already taken"));
+        }
+
+        @Test
+        void refusesAFileWithoutTheHeader() throws IOException {
+            Path source = write("bad.csv", "1001,Rex,Boxer,N,3,M,Y,YNYNN\n");
+            assertThrows(IOException.class, () -> new BulkTransfer(dayCare).importFile(source, errors));
+        }
+    }
+
+    @Nested
+    class Json {
+        @Test
+        void importsValidElementsAndSkipsBrokenOnes() throws IOException {
+            Path source = write("dogs.json", """
+                    [
+                      {"id": 1001, "name": "Rex", "breed": "Boxer", "dangerous": false, "age": 3, "sex": "M",
+                       "neutered": true, "days": "YNYNN", "owners": [{"id": 101, "name": "Ann \\"A\\"", "phone": "0871234567"}]},
+                      {"id": 1002, "name": "Fido", "breed": [1, 2}, "age": 3},
+                      {"id": 1003, "name": "Bella", "breed": "Beagle", "dangerous": "Y", "age": 4, "sex": "F",
+                       "neutered": "N", "days": "NNNNN"},
+                      {"id": 1004, "name": "Max", "breed": "Pug", "dangerous": false, "age": -1, "sex": "M",
+                       "neutered": false, "days": "NNNNN"},
+                      "not a dog"
+                    ]
+                    """);
+
+            BulkTransfer.Report report = new BulkTransfer(dayCare).importFile(source, errors);
+
+            assertEquals(2, report.records());
+            assertEquals(3, report.rejected());
+            assertEquals("Ann \"A\"", dayCare.getDogByID(1001).getOwnerByID(101).getName());
+            assertTrue(dayCare.getDogByID(1003).isDangerousBreed());
+
+            List<String> lines = Files.readAllLines(errors);
+            assertTrue(lines.get(0).startsWith("line 4: unexpected '}'"));
+            assertTrue(lines.get(1).startsWith("line 7: age must be a whole number"));
+            assertTrue(lines.get(2).startsWith("line 9: not a JSON object"));
+        }
+    }
+
+    @Nested
+    class Export {
+        @BeforeEach
+        void setUp() {
+            Owner ann = new Owner(101, "Murphy, Ann", "0871234567");
+            Dog rex = new Dog(1001, "Rex", "Boxer \"B\"", true, 3, 'M', false, ann);
+            rex.setKennelDays(0b10101);
+            dayCare.addDog(rex);
+            dayCare.addDog(new Dog(1002, "Fido", "Poodle", false, 5, 'F', true, ann));
+        }
+
+        @Test
+        void exportedFilesImportBack() throws IOException {
+            for (String name : new String[]{"out.csv", "out.json"}) {
+                Path file = directory.resolve(name);
+                assertEquals(2, new BulkTransfer(dayCare).exportFile(file).records());
+
+                DayCare copy = new DayCare("Copy", 100);
+                BulkTransfer.Report report = new BulkTransfer(copy).importFile(file, errors);
+
+                assertEquals(2, report.records(), name);
+                assertEquals(0, report.rejected(), name);
+                assertEquals(dayCare.getDogsArray(), copy.getDogsArray(), name);
+                assertEquals(0b10101, copy.getDogByID(1001).getKennelDays(), name);
+                assertSame(copy.getDogByID(1001).getOwnerByID(101), copy.getDogByID(1002).getOwnerByID(101));
+            }
+        }
+
+        @Test
+        void formatComesFromTheExtension() {
+            assertEquals(BulkTransfer.Format.CSV, BulkTransfer.Format.of(Path.of("dogs.CSV")));
+            assertEquals(BulkTransfer.Format.JSON, BulkTransfer.Format.of(Path.of("dogs.json.gz")));
+            assertThrows(IllegalArgumentException.class, () -> BulkTransfer.Format.of(Path.of("dogs.xml")));
+        }
+    }
+}
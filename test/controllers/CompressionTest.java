@@ -0,0 +1,138 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+    private Path directory;
+    private DayCare dayCare;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("compression");
+        directory.toFile().deleteOnExit();
+
+        Owner alice = new Owner(101, "Alice", "0871234567");
+        ArrayList<Dog> dogs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Dog dog = new Dog(1000 + i, "Dog" + i, i % 2 == 0 ? "Boxer" : "Poodle", i % 7 == 0, i % 15, 'M', false, alice);
+            dog.setKennelDays(i % 32);
+            dogs.add(dog);
+        }
+        dayCare = new DayCare("Paws", 100);
+        dayCare.setDogsArray(dogs);
+    }
+
+    private static byte[] roundTrip(Compression compression, byte[] bytes) throws IOException {
+        byte[] packed = compression.compress(bytes);
+        return Compression.decode(new ByteArrayInputStream(packed)).readAllBytes();
+    }
+
+    @Nested
+    class Codecs {
+        @Test
+        void lzRoundTripsRepetitiveAndRandomBytes() throws IOException {
+            byte[] repetitive = "<boolean>false</boolean>".repeat(20000).getBytes();
+            byte[] random = new byte[200_000];
+            new Random(42).nextBytes(random);
+
+            assertArrayEquals(repetitive, roundTrip(Compression.LZ, repetitive));
+            assertArrayEquals(random, roundTrip(Compression.LZ, random));
+            assertArrayEquals(new byte[0], roundTrip(Compression.LZ, new byte[0]));
+            assertArrayEquals(new byte[]{7}, roundTrip(Compression.LZ, new byte[]{7}));
+            assertTrue(Compression.LZ.compress(repetitive).length < repetitive.length / 20);
+        }
+
+        @Test
+        void decodeDetectsTheCodec() throws IOException {
+            byte[] text = "plain text, not compressed".getBytes();
+            assertArrayEquals(text, Compression.decode(new ByteArrayInputStream(text)).readAllBytes());
+            assertArrayEquals(text, roundTrip(Compression.GZIP, text));
+
+            byte[] packed = Compression.GZIP.compress(text);
+            ByteBuffer decoded = Compression.decode(ByteBuffer.wrap(packed));
+            assertEquals(text.length, decoded.remaining());
+        }
+
+        @Test
+        void corruptLzBlockIsAnIOException() {
+            byte[] packed = Compression.LZ.compress("abcabcabcabcabcabcabcabc".repeat(100).getBytes());
+            byte[] cut = Arrays.copyOf(packed, packed.length - 8);
+            assertThrows(IOException.class, () -> Compression.decode(new ByteArrayInputStream(cut)).readAllBytes());
+
+            ByteBuffer.wrap(packed).putInt(8, 100_000);
+            assertThrows(IOException.class, () -> Compression.decode(new ByteArrayInputStream(packed)).readAllBytes());
+        }
+    }
+
+    @Nested
+    class Files_ {
+        @Test
+        void compressedSnapshotsLoadAndAreSmaller() throws Exception {
+            Path plain = directory.resolve("plain.dat");
+            dayCare.save(plain.toString());
+            for (Compression compression : new Compression[]{Compression.GZIP, Compression.LZ}) {
+                Path file = directory.resolve(compression + ".dat");
+                dayCare.setCompression(compression);
+                dayCare.save(file.toString());
+                assertTrue(Files.size(file) < Files.size(plain));
+
+                DayCare loaded = new DayCare();
+                loaded.load(file.toString());
+                assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+            }
+        }
+
+        @Test
+        void compressedXmlLoads() throws Exception {
+            Path file = directory.resolve("daycare.xml");
+            dayCare.setCompression(Compression.GZIP);
+            dayCare.save(file.toString());
+            assertEquals(0x1F, Files.readAllBytes(file)[0] & 0xFF);
+
+            DayCare loaded = new DayCare();
+            loaded.load(file.toString());
+            assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        }
+
+        @Test
+        void largeJournalSyncsAreCompressed() throws Exception {
+            long plain = journalSizeAfterChanges(Compression.NONE);
+            long compressed = journalSizeAfterChanges(Compression.LZ);
+            assertTrue(compressed < plain);
+        }
+
+        private long journalSizeAfterChanges(Compression compression) throws Exception {
+            Path snapshot = directory.resolve(compression + ".dat");
+            dayCare.setCompression(compression);
+            dayCare.save(snapshot.toString());
+            dayCare.open(snapshot.toString());
+            for (int i = 0; i < 100; i++) {
+                dayCare.getDogByID(1000 + i).setBreed("Collie");
+            }
+            dayCare.save();
+            dayCare.close();
+
+            DayCare loaded = new DayCare();
+            loaded.open(snapshot.toString());
+            loaded.close();
+            assertEquals("Collie", loaded.getDogByID(1099).getBreed());
+            assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+            return Files.size(MutationJournal.journalFile(snapshot.toAbsolutePath(), 1));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentDayCareTest {
+    private ConcurrentDayCare dayCare;
+    private Owner alice;
+
+    @BeforeEach
+    void setUp() {
+        alice = new Owner(101, "Alice", "0871234567");
+        dayCare = new ConcurrentDayCare("Paws", 100);
+        dayCare.addDog(new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice));
+        dayCare.addDog(new Dog(1002, "Bella", "Poodle", false, 2, 'F', true, alice));
+    }
+
+    @Test
+    void delegatesToTheDayCare() {
+        assertEquals(2, dayCare.numberOfDogs());
+        assertEquals(1, dayCare.numberOfDangerousDogs());
+        assertEquals("Rex", dayCare.getDogByID(1001).getName());
+        assertTrue(dayCare.searchDogsByName("ell").contains("Bella"));
+        assertEquals(2, dayCare.searchDogsByOwnerName("ali").size());
+
+        assertNotNull(dayCare.updateDog(1002, new Dog(1002, "Bella", "Poodle", true, 3, 'F', true, alice)));
+        assertEquals(2, dayCare.numberOfDangerousDogs());
+        assertNotNull(dayCare.removeDog(1001));
+        assertEquals(1, dayCare.getDogsArray().size());
+
+        StringBuilder out = new StringBuilder();
+        assertDoesNotThrow(() -> dayCare.write(out, d -> d::listAllDogs));
+        assertEquals(dayCare.listAllDogs(), out.toString());
+    }
+
+    @Test
+    void readsSeeWholeChangesWhileWritersRun() throws InterruptedException {
+        ArrayList<Dog> dogs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            dogs.add(new Dog(2000 + i, "Dog" + i, "Pug", false, 1, 'M', false, alice));
+        }
+        DayCare plain = new DayCare("Big", 100);
+        plain.setDogsArray(dogs);
+        ConcurrentDayCare shared = new ConcurrentDayCare(plain);
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch done = new CountDownLatch(4);
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int writer = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        int id = 2000 + (i * 7 + writer) % 1000;
+                        shared.updateDog(id, new Dog(id, "Dog", "Pug", i % 2 == 0, 1, 'M', false, alice));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }));
+            threads.add(new Thread(() -> {
+                try {
+                    while (done.getCount() > 2) {
+                        assertEquals(1000, shared.numberOfDogs());
+                        int dangerous = shared.numberOfDangerousDogs();
+                        assertTrue(dangerous >= 0 && dangerous <= 1000);
+                        assertFalse(shared.listDogsByBreed("Pug").isEmpty());
+                        assertNotNull(shared.getDogByID(2500));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), String.valueOf(failures.peek()));
+        assertEquals(1000, shared.numberOfDogs());
+    }
+
+    @Test
+    void compoundStepsAreAtomic() throws InterruptedException {
+        ConcurrentDayCare shared = new ConcurrentDayCare("Paws", 100);
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    shared.withWriteLock(d -> d.addDog(
+                            new Dog(d.getDogAutoID(), "Dog", "Pug", false, 1, 'M', false, alice)));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        HashSet<Integer> ids = new HashSet<>();
+        for (Dog dog : shared.getDogsArray()) {
+            ids.add(dog.getId());
+        }
+        assertEquals(100, ids.size());
+    }
+
+    @Test
+    void idsAreTakenWithoutTheLock() throws InterruptedException {
+        ConcurrentDayCare shared = new ConcurrentDayCare("Paws", 100);
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    shared.addDog(new Dog(shared.getDogIDs().next(), "Dog", "Pug", false, 1, 'M', false, alice));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        HashSet<Integer> ids = new HashSet<>();
+        for (Dog dog : shared.getDogsArray()) {
+            ids.add(dog.getId());
+        }
+        assertEquals(100, ids.size());
+        assertEquals(1100, shared.getDogAutoID());
+    }
+}
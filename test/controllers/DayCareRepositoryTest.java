@@ -0,0 +1,130 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DayCareRepositoryTest {
+    private Path directory;
+    private DayCare dayCare;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        directory = Files.createTempDirectory("repository");
+        directory.toFile().deleteOnExit();
+
+        Owner alice = new Owner(101, "Alice", "0871234567");
+        Dog rex = new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice);
+        rex.setKennelDays(0b10011);
+        dayCare = new DayCare("Paws", 30);
+        dayCare.addDog(rex);
+        dayCare.addDog(new Dog(1002, "Bella", "Poodle", false, 2, 'F', true, alice));
+    }
+
+    @Test
+    void locationPicksTheBackend() {
+        assertTrue(DayCareRepository.forLocation("daycare.xml") instanceof XmlDayCareRepository);
+        assertTrue(DayCareRepository.forLocation("daycare.dat") instanceof BinaryDayCareRepository);
+        assertTrue(DayCareRepository.forLocation("jdbc:h2:./daycare") instanceof JdbcDayCareRepository);
+        assertTrue(DayCareRepository.forLocation(directory.toString()) instanceof ShardedDayCareRepository);
+    }
+
+    @Test
+    void xmlRoundTrip() throws Exception {
+        DayCareRepository repository = DayCareRepository.forLocation(directory.resolve("daycare.xml").toString());
+        repository.save(dayCare);
+        dayCare.getDogByID(1002).setAge(7);
+        repository.upsert(dayCare, dayCare.getDogByID(1002));
+
+        DayCare loaded = new DayCare();
+        repository.load(loaded);
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertEquals(7, loaded.getDogByID(1002).getAge());
+    }
+
+    @Test
+    void binaryChangesGoToTheJournal() throws Exception {
+        Path snapshot = directory.resolve("daycare.dat");
+        DayCareRepository repository = new BinaryDayCareRepository(snapshot);
+        repository.save(dayCare);
+
+        DayCare opened = new DayCare();
+        repository.load(opened);
+        long snapshotSize = Files.size(snapshot);
+        opened.removeDog(1001);
+        repository.delete(opened, 1001);
+        opened.getDogByID(1002).setNeutered(false);
+        repository.upsert(opened, opened.getDogByID(1002));
+        opened.close();
+
+        assertEquals(snapshotSize, Files.size(snapshot));
+        DayCare loaded = new DayCare();
+        repository.load(loaded);
+        loaded.close();
+        assertEquals(1, loaded.numberOfDogs());
+        assertFalse(loaded.getDogByID(1002).isNeutered());
+    }
+
+    @Test
+    void shardsMergeInSavedOrder() throws Exception {
+        Owner bob = new Owner(102, "Bob", "0861234567");
+        dayCare.addDog(new Dog(9000, "Max", "Collie", false, 5, 'M', false, bob));
+        dayCare.addDog(new Dog(4000, "Luna", "Beagle", false, 3, 'F', true, dayCare.getDogByID(1001).getOwners().get(0)));
+
+        ShardedDayCareRepository repository = new ShardedDayCareRepository(directory.resolve("shards"), 3);
+        repository.save(dayCare);
+        assertTrue(Files.exists(repository.manifestFile()));
+        assertTrue(Files.exists(repository.shardFile(0, 1)));
+        assertTrue(Files.exists(repository.shardFile(2, 1)));
+
+        DayCare loaded = new DayCare();
+        repository.load(loaded);
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertEquals(dayCare.getName(), loaded.getName());
+        assertEquals(dayCare.getDogAutoID(), loaded.getDogAutoID());
+        assertSame(loaded.getDogByID(1001).getOwners().get(0), loaded.getDogByID(4000).getOwners().get(0));
+    }
+
+    @Test
+    void shardedChangeRewritesOneShard() throws Exception {
+        dayCare.addDog(new Dog(9000, "Max", "Collie", false, 5, 'M', false, new Owner(102, "Bob", "0861234567")));
+        ShardedDayCareRepository repository = new ShardedDayCareRepository(directory.resolve("shards"), 2);
+        repository.save(dayCare);
+
+        dayCare.getDogByID(9000).setAge(6);
+        repository.upsert(dayCare, dayCare.getDogByID(9000));
+        dayCare.removeDog(1002);
+        repository.delete(dayCare, 1002);
+
+        assertTrue(Files.exists(repository.shardFile(0, 3)));
+        assertTrue(Files.exists(repository.shardFile(1, 2)));
+        assertFalse(Files.exists(repository.shardFile(0, 1)));
+        assertFalse(Files.exists(repository.shardFile(1, 1)));
+
+        DayCare loaded = new DayCare();
+        new ShardedDayCareRepository(directory.resolve("shards")).load(loaded);
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertEquals(6, loaded.getDogByID(9000).getAge());
+    }
+
+    @Test
+    void shardedIdChangeLeavesTheOldShard() throws Exception {
+        ShardedDayCareRepository repository = new ShardedDayCareRepository(directory.resolve("shards"), 2);
+        repository.save(dayCare);
+
+        dayCare.getDogByID(1002).setId(9500);
+        repository.upsert(dayCare, dayCare.getDogByID(9500));
+
+        assertTrue(Files.exists(repository.shardFile(1, 2)));
+        assertEquals(1, BinarySnapshot.read(repository.shardFile(0, 2)).dogs().size());
+        DayCare loaded = new DayCare();
+        new ShardedDayCareRepository(directory.resolve("shards")).load(loaded);
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+    }
+}
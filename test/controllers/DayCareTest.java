@@ -6,7 +6,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -212,10 +216,53 @@ class DayCareTest {
             dayCare.updateDog(1001, dog2);
             assertEquals(dog2, dayCare.getDogsArray().get(0));
             Dog dg = new Dog(1001, "dog1234", "Br1234", true, 10, 'm',  true, owner1 );
-            dayCare.addDog(new Dog(dayCare.getDogAutoID(), "dog1234", "Br1234", true, 10, 'm',  true, owner1 ));
+            dayCare.addDog(new Dog(1001, "dog1234", "Br1234", true, 10, 'm',  true, owner1 ));
             assertEquals(new Dog(1001, "dog1234", "Br1234", true, 10, 'm',  true, owner1 ),
                     dayCare.updateDog(1001,dg));
         }
+        @Test
+        void indexFollowsRemovalsAndIdChanges() {
+            dayCare.addDog(dog1);
+            dayCare.addDog(dog2);
+            dayCare.addDog(dog3);
+            dayCare.addDog(new Dog(1002, "Twin", "Pug", false, 1, 'M', false, owner1));
+            dayCare.removeDog(1001);
+            assertEquals(dog2, dayCare.getDogByID(1002));
+            assertEquals(dog3, dayCare.getDogByID(dog3.getId()));
+
+            dog2.setId(1050);
+            assertEquals(dog2, dayCare.getDogByID(1050));
+            assertEquals("Twin", dayCare.getDogByID(1002).getName());
+            dayCare.updateDog(1050, new Dog(1060, "Max", "Beagle", false, 5, 'M', false, owner2));
+            assertNull(dayCare.getDogByID(1050));
+            assertEquals(1061, dayCare.getDogAutoID());
+            assertEquals(3, dayCare.numberOfDogs());
+            assertTrue(dayCare.searchDogsByName("twi").contains("Twin"));
+        }
+
+        @Test
+        void dogAddedTwiceFollowsChanges() {
+            dayCare.addDog(dog1);
+            dayCare.addDog(dog2);
+            dayCare.addDog(dog1);
+
+            dog1.setId(1050);
+            assertNull(dayCare.getDogByID(1001));
+            assertSame(dog1, dayCare.getDogByID(1050));
+            dog1.addOwner(owner2);
+            assertEquals(3, dayCare.getDogsByOwnerID(102).size());
+
+            dayCare.removeDog(1050);
+            dog1.setName("Buster");
+            assertTrue(dayCare.searchDogsByName("bust").contains("Buster"));
+            dayCare.removeDog(1050);
+            assertEquals(List.of(dog2), dayCare.getDogsByOwnerID(102));
+
+            dog1.setId(1070);
+            assertNull(dayCare.getDogByID(1070));
+            assertEquals(1, dayCare.numberOfDogs());
+        }
+
         @Test
         void updateDogInvalidIndex() {
             assertNull(dayCare.updateDog(0, dog2)); // No dogs in the list yet
@@ -253,6 +300,46 @@ class DayCareTest {
             assertNull(popDayCare.getDog("no dog of this name"));
         }
         @Test
+        void getDogByIDFollowsChanges() {
+            assertEquals(dog2, popDayCare.getDog(1002));
+            assertEquals(dog3, popDayCare.getDog(1003));
+
+            popDayCare.removeDog(1001);
+            assertNull(popDayCare.getDog(1001));
+            assertEquals(dog2, popDayCare.getDog(1002));
+            assertEquals(dog3, popDayCare.getDog(1003));
+
+            dog3.setId(2003);  // changed directly on the dog
+            assertNull(popDayCare.getDog(1003));
+            assertEquals(dog3, popDayCare.getDog(2003));
+
+            Dog replacement = new Dog(1004, "Rex", "Boxer", false, 4, 'M', false);
+            popDayCare.updateDog(1002, replacement);
+            assertNull(popDayCare.getDog(1002));
+            assertEquals(replacement, popDayCare.getDog(1004));
+            assertEquals(replacement, popDayCare.getDog(0));
+        }
+        @Test
+        void ownersAreSharedAcrossDogs() {
+            assertEquals(3, popDayCare.getOwners().size());
+            assertEquals(owner2, popDayCare.getOwner(102));
+            assertNull(popDayCare.getOwner(104));
+
+            Owner sameBob = new Owner(102, "Bob", "0877654321");
+            dog3.addOwner(sameBob);
+            assertSame(popDayCare.getOwner(102), dog3.getOwnerByID(102));
+            assertEquals(2, popDayCare.getDogsByOwnerID(102).size());
+
+            assertEquals(owner2, popDayCare.updateOwner(1003, 102, new Owner(102, "Robert", "0871111111")));
+            assertEquals("Robert", dog2.getOwnerByID(102).getName());
+
+            popDayCare.removeOwner(102, 1002);
+            popDayCare.removeOwner(102, 1003);
+            assertNull(popDayCare.getOwner(102));
+            assertTrue(popDayCare.getDogsByOwnerID(102).isEmpty());
+            assertEquals(2, popDayCare.getOwners().size());
+        }
+        @Test
         void getDogsByOwnersName(){
             dog1.addOwner(owner2);
             dog1.addOwner(owner3);
@@ -344,6 +431,121 @@ class Listing {
 
     }
 
+    @Test
+    void partialMatchSearches() {
+        assertTrue(popDayCare.searchDogsByName("uDD").contains("1: ID: 1001"));
+        assertTrue(popDayCare.searchDogsByName("ella").contains("3: ID: 1003"));
+        assertEquals("No dogs found with that name.", popDayCare.searchDogsByName("bellx"));
+        assertEquals(3, popDayCare.searchDogsByName("").split("\n").length);
+
+        dog2.setName("Maximus");  // renamed directly on the dog
+        assertTrue(popDayCare.searchDogsByName("ximu").contains("Maximus"));
+        assertEquals(dog2, popDayCare.getDog("Maximus"));
+        assertNull(popDayCare.getDog("Max"));
+
+        assertTrue(popDayCare.listDogsByBreed("BEAG").contains("Maximus"));
+        assertEquals("No dog that Breed at the moment", popDayCare.listDogsByBreed("labradoodle"));
+
+        assertEquals(1, popDayCare.searchDogsByOwnerName("caro").size());
+        dog1.addOwner(new Owner(105, "Caroline", "0870000000"));
+        assertEquals(2, popDayCare.searchDogsByOwnerName("caro").size());
+        assertEquals(dog1, popDayCare.searchDogsByOwnerName("caro").get(0));
+        assertTrue(popDayCare.listDogsByOwnerName("line").contains("Caroline"));
+        assertTrue(popDayCare.searchDogsByOwnerName("zz").isEmpty());
+
+        popDayCare.getOwner(105).setName("Zelda");  // renamed directly on the shared owner
+        assertEquals(1, popDayCare.searchDogsByOwnerName("zel").size());
+        assertEquals(1, popDayCare.searchDogsByOwnerName("caro").size());
+        popDayCare.getOwner(105).setId(106);
+        assertNull(popDayCare.getOwner(105));
+        assertEquals(dog1, popDayCare.getDogsByOwnerID(106).get(0));
+        assertEquals(1, popDayCare.searchDogsByOwnerName("zel").size());
+    }
+
+    @Test
+    void listDogsByDayOfWeek() {
+        assertEquals("Invalid day selected", popDayCare.listDogsByDayOfWeek(5));
+        assertEquals("No Dogs in the kennel on Monday", popDayCare.listDogsByDayOfWeek(0));
+
+        dog1.setDaysInKennel(0, true);
+        dog3.setDaysInKennel(new boolean[]{true, false, false, false, true});
+        String monday = popDayCare.listDogsByDayOfWeek(0);
+        assertTrue(monday.contains("Buddy"));
+        assertFalse(monday.contains("Max"));
+        assertTrue(monday.contains("Bella"));
+        assertTrue(monday.contains("Total dogs: 2"));
+        assertEquals(2, popDayCare.numberOfDogsOnDay(0));
+        assertEquals(1, popDayCare.numberOfDogsOnDay(4));
+        assertEquals(3, popDayCare.totalKennelDays());
+
+        popDayCare.removeDog(1001);
+        assertEquals(1, popDayCare.numberOfDogsOnDay(0));
+        assertFalse(popDayCare.listDogsByDayOfWeek(0).contains("Buddy"));
+    }
+
+    @Test
+    void streamedListingsMatchStrings() throws Exception {
+        dog1.setDaysInKennel(0, true);
+        dog3.setDaysInKennel(0, true);
+
+        StringWriter out = new StringWriter();
+        popDayCare.listAllDogs(out);
+        assertEquals(popDayCare.listAllDogs(), out.toString());
+
+        out = new StringWriter();
+        popDayCare.listDogsByDayOfWeek(0, out);
+        assertEquals(popDayCare.listDogsByDayOfWeek(0), out.toString());
+
+        out = new StringWriter();
+        popDayCare.listDogsByOwnerName("o", out);
+        assertEquals(popDayCare.listDogsByOwnerName("o"), out.toString());
+
+        StringBuilder none = new StringBuilder();
+        dayCare.listNeuteredDogs(none);
+        assertEquals("There are no dogs registered at the moment", none.toString());
+    }
+
+    @Test
+    void ownerReport() {
+        assertEquals("No owners found.\n", dayCare.ownerReport());
+
+        dog2.addOwner(owner1);
+        ArrayList<Owner> seen = new ArrayList<>();
+        popDayCare.forEachOwner((owner, dogs) -> {
+            seen.add(owner);
+            if (owner.getId() == 101) assertEquals(2, dogs.size());
+            if (owner.getId() == 103) assertEquals(dog3, dogs.get(0));
+        });
+        assertEquals(popDayCare.getOwners(), seen);
+
+        String report = popDayCare.ownerReport();
+        assertTrue(report.startsWith("Owner: Alice (ID: 101)\nPhone: 0871234567\n  - Buddy (Labrador)\n  - Max (Beagle)\n\n"));
+        assertTrue(report.contains("Owner: Carol (ID: 103)\nPhone: 0879876543\n  - Bella (Poodle)\n\n"));
+    }
+
+    @Test
+    void parallelListingsMatchSequential() {
+        dog1.setDaysInKennel(new boolean[]{true, true, false, false, true});
+        dog3.setDaysInKennel(0, true);
+        dog2.addOwner(owner1);
+
+        popDayCare.setParallelThreshold(Integer.MAX_VALUE);
+        String allDogs = popDayCare.listAllDogs();
+        String monday = popDayCare.listDogsByDayOfWeek(0);
+        String males = popDayCare.listDogsByGender('M');
+        String owners = popDayCare.ownerReport();
+
+        popDayCare.setParallelThreshold(1);
+        assertEquals(1, popDayCare.getParallelThreshold());
+        assertEquals(allDogs, popDayCare.listAllDogs());
+        assertEquals(monday, popDayCare.listDogsByDayOfWeek(0));
+        assertEquals(males, popDayCare.listDogsByGender('M'));
+        assertEquals(owners, popDayCare.ownerReport());
+
+        popDayCare.setParallelThreshold(0);
+        assertEquals(1, popDayCare.getParallelThreshold());
+    }
+
     @Test
     void listAllDangerousDogs() {
         String allDangerousDogs = popDayCare.listAllDangerousDogs();
@@ -407,6 +609,26 @@ class Calculations {
         assertTrue(dayCare.getWeeklyIncome() == 60.0);
     }
 
+@Test
+    void runningTotalsFollowChanges() {
+        dog1.setDaysInKennel(new boolean[]{true, true, true, false, false});
+        dog2.setDangerousBreed(true);
+        dog2.setDaysInKennel(4, true);
+        assertEquals(3 * 3000 + 4000, popDayCare.getWeeklyIncomeInCents());
+        assertEquals(130.0, popDayCare.getWeeklyIncome());
+        assertEquals(4, popDayCare.totalKennelDays());
+
+        popDayCare.updateDog(1002, new Dog(1002, "Max", "Beagle", false, 5, 'M', true));
+        assertEquals(9000, popDayCare.getWeeklyIncomeInCents());
+        assertEquals(0, popDayCare.numberOfDangerousDogs());
+        assertEquals(3, popDayCare.numberOfNeuteredDogs());
+
+        popDayCare.removeDog(1001);
+        assertEquals(0, popDayCare.getWeeklyIncomeInCents());
+        assertEquals(2, popDayCare.numberOfNeuteredDogs());
+        assertEquals(2, popDayCare.numberOfDogs());
+    }
+
 @Test
     void numberOfDangerousDogs() {
         assertEquals(0, popDayCare.numberOfDangerousDogs());
@@ -425,4 +647,49 @@ class Calculations {
     assertEquals(1.33, popDayCare.getAverageNumDaysPerWeek(), 0.01);
      }
    }
+
+    @Nested
+    class Persistence {
+        @Test
+        void saveAndLoadRoundTrip() throws Exception {
+            File file = File.createTempFile("daycare", ".xml");
+            file.deleteOnExit();
+            dog1.setDaysInKennel(new boolean[]{true, false, true, false, false});
+            dog2.addOwner(owner1);
+            popDayCare.save(file.getPath());
+
+            DayCare loaded = new DayCare();
+            loaded.load(file.getPath());
+            assertEquals("I have thr", loaded.getName());
+            assertEquals(20, loaded.getMaxNumberOfDogs());
+            assertEquals(popDayCare.getDogsArray(), loaded.getDogsArray());
+            assertEquals(0b00101, loaded.getDogByID(1001).getKennelDays());
+            assertEquals(2, loaded.getDogsByOwnerID(101).size());
+            assertEquals(popDayCare.listAllDogs(), loaded.listAllDogs());
+        }
+
+        @Test
+        void saveAsyncWritesTheStateAtTheCall() throws Exception {
+            File file = File.createTempFile("daycare", ".xml");
+            file.deleteOnExit();
+            ArrayList<Dog> saved = new ArrayList<>();
+            for (Dog dog : popDayCare.getDogsArray()) {
+                Dog copy = new Dog(dog);
+                copy.getOwners().replaceAll(Owner::new);
+                saved.add(copy);
+            }
+
+            CompletableFuture<Void> done = popDayCare.saveAsync(file.getPath());
+            popDayCare.removeDog(1001);
+            popDayCare.updateOwner(1002, 102, new Owner(102, "Robert", "0870000000"));
+            done.get();
+
+            DayCare loaded = new DayCare();
+            loaded.load(file.getPath());
+            assertEquals(saved, loaded.getDogsArray());
+            File[] temporary = file.getParentFile().listFiles((directory, name) ->
+                    name.startsWith(file.getName() + ".") && name.endsWith(".tmp"));
+            assertEquals(0, temporary.length);
+        }
+    }
 }
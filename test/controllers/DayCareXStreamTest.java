@@ -0,0 +1,191 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DayCareXStreamTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.createTempFile("daycare", ".xml");
+        file.toFile().deleteOnExit();
+    }
+
+    @Test
+    void sharedInstance() {
+        assertSame(DayCareXStream.get(), DayCareXStream.get());
+    }
+
+    @Test
+    void kennelDaysAreOneToken() {
+        DayCareXStream.KennelDaysConverter converter = new DayCareXStream.KennelDaysConverter();
+        assertEquals("MT--F", converter.toString(0b10011));
+        assertEquals("-----", converter.toString(0));
+        assertEquals(0b10011, converter.fromString("MT--F"));
+        assertEquals(0b10011, converter.fromString("19"));
+    }
+
+    @Test
+    void savesCompactXml() throws Exception {
+        Dog rex = new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, new Owner(101, "Alice", "0871234567"));
+        rex.setKennelDays(0b10011);
+        DayCare dayCare = new DayCare("Paws", 30);
+        dayCare.addDog(rex);
+        dayCare.save(file.toString());
+
+        String xml = Files.readString(file);
+        assertTrue(xml.contains("<daycare name=\"Paws\""));
+        assertTrue(xml.contains("<dog id=\"1001\" name=\"Rex\""));
+        assertTrue(xml.contains("days=\"MT--F\""));
+        assertTrue(xml.contains("<owner id=\"101\" name=\"Alice\" phone=\"0871234567\"/>"));
+        assertFalse(xml.contains("models."));
+
+        DayCare loaded = new DayCare();
+        loaded.load(file.toString());
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertEquals(0b10011, loaded.getDogByID(1001).getKennelDays());
+    }
+
+    @Test
+    void ownersAreWrittenOnce() throws Exception {
+        Owner alice = new Owner(101, "Alice", "0871234567");
+        DayCare dayCare = new DayCare("Paws", 30);
+        dayCare.addDog(new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice));
+        dayCare.addDog(new Dog(1002, "Bella", "Poodle", false, 2, 'F', true, alice));
+        dayCare.getDogByID(1002).addOwner(new Owner(102, "Bob", "0877654321"));
+        dayCare.save(file.toString());
+
+        String xml = Files.readString(file);
+        assertEquals(xml.indexOf("name=\"Alice\""), xml.lastIndexOf("name=\"Alice\""));
+        assertTrue(xml.contains("<owners>101 102</owners>"));
+
+        DayCare loaded = new DayCare();
+        loaded.load(file.toString());
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertSame(loaded.getDogByID(1001).getOwners().get(0), loaded.getDogByID(1002).getOwners().get(0));
+    }
+
+    @Test
+    void readsEarlierLayouts() throws Exception {
+        Files.writeString(file, """
+                <object-stream>
+                  <controllers.DayCare>
+                    <dogsArray>
+                      <models.Dog>
+                        <id>1001</id>
+                        <name>Rex</name>
+                        <breed>Boxer</breed>
+                        <dangerous>true</dangerous>
+                        <age>4</age>
+                        <sex>M</sex>
+                        <neutered>false</neutered>
+                        <owners>
+                          <models.Owner>
+                            <id>101</id>
+                            <name>Alice</name>
+                            <phoneNumber>0871234567</phoneNumber>
+                          </models.Owner>
+                        </owners>
+                        <daysInKennel>
+                          <boolean>true</boolean>
+                          <boolean>false</boolean>
+                          <boolean>true</boolean>
+                          <boolean>false</boolean>
+                          <boolean>false</boolean>
+                        </daysInKennel>
+                      </models.Dog>
+                      <models.Dog>
+                        <id>1002</id>
+                        <name>Bella</name>
+                        <breed>Poodle</breed>
+                        <dangerous>false</dangerous>
+                        <age>2</age>
+                        <sex>F</sex>
+                        <neutered>true</neutered>
+                        <owners/>
+                        <kennelDays>19</kennelDays>
+                      </models.Dog>
+                    </dogsArray>
+                    <name>Paws</name>
+                    <maxNumberOfDogs>30</maxNumberOfDogs>
+                    <dogAutoID>1002</dogAutoID>
+                    <ownerAutoID>101</ownerAutoID>
+                  </controllers.DayCare>
+                </object-stream>
+                """);
+
+        DayCare loaded = new DayCare();
+        loaded.load(file.toString());
+        assertEquals("Paws", loaded.getName());
+        assertEquals(30, loaded.getMaxNumberOfDogs());
+        // the saved auto IDs lag behind the dog and owner already in the file, so loading moves past them
+        assertEquals(1003, loaded.getDogAutoID());
+        assertEquals(102, loaded.getOwnerAutoID());
+        assertEquals(0b00101, loaded.getDogByID(1001).getKennelDays());
+        assertEquals("0871234567", loaded.getOwner(101).getPhoneNumber());
+        assertEquals(0b10011, loaded.getDogByID(1002).getKennelDays());
+    }
+
+    @Test
+    void readsEarlierLayoutsWithSharedOwners() throws Exception {
+        Files.writeString(file, """
+                <object-stream>
+                  <controllers.DayCare>
+                    <dogsArray>
+                      <models.Dog>
+                        <id>1001</id>
+                        <name>Rex</name>
+                        <breed>Boxer</breed>
+                        <dangerous>true</dangerous>
+                        <age>4</age>
+                        <sex>M</sex>
+                        <neutered>false</neutered>
+                        <owners>
+                          <models.Owner>
+                            <id>101</id>
+                            <name>Alice</name>
+                            <phoneNumber>0871234567</phoneNumber>
+                          </models.Owner>
+                        </owners>
+                        <kennelDays>5</kennelDays>
+                      </models.Dog>
+                      <models.Dog>
+                        <id>1002</id>
+                        <name>Bella</name>
+                        <breed>Poodle</breed>
+                        <dangerous>false</dangerous>
+                        <age>2</age>
+                        <sex>F</sex>
+                        <neutered>true</neutered>
+                        <owners>
+                          <models.Owner reference="../../../models.Dog/owners/models.Owner"/>
+                        </owners>
+                        <kennelDays>19</kennelDays>
+                      </models.Dog>
+                    </dogsArray>
+                    <name>Paws</name>
+                    <maxNumberOfDogs>30</maxNumberOfDogs>
+                    <dogAutoID>1002</dogAutoID>
+                    <ownerAutoID>101</ownerAutoID>
+                  </controllers.DayCare>
+                </object-stream>
+                """);
+
+        DayCare loaded = new DayCare();
+        loaded.load(file.toString());
+        assertEquals("Paws", loaded.getName());
+        assertEquals(30, loaded.getMaxNumberOfDogs());
+        assertEquals(1003, loaded.getDogAutoID());
+        assertEquals(102, loaded.getOwnerAutoID());
+        assertSame(loaded.getDogByID(1001).getOwners().get(0), loaded.getDogByID(1002).getOwners().get(0));
+        assertEquals(2, loaded.searchDogsByOwnerName("ali").size());
+    }
+}
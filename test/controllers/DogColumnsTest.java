@@ -0,0 +1,178 @@
+package controllers;
+
+import models.Dog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DogColumnsTest {
+    private DogColumns columns;
+    private Dog rex, bella, max;
+
+    @BeforeEach
+    void setUp() {
+        rex = new Dog(1001, "Rex", "Boxer", true, 4, 'M', false);
+        bella = new Dog(1002, "Bella", "Poodle", false, 2, 'F', true);
+        max = new Dog(1003, "Max", "Beagle", false, 7, 'M', true);
+        rex.setDaysInKennel(new boolean[]{true, true, false, false, false});
+        bella.setDaysInKennel(new boolean[]{true, false, true, true, false});
+
+        columns = new DogColumns();
+        columns.set(0, rex);
+        columns.set(1, bella);
+        columns.set(2, max);
+    }
+
+    @Nested
+    class Maintenance {
+        @Test
+        void setAndGrow() {
+            assertEquals(3, columns.size());
+            assertEquals(1002, columns.getId(1));
+            assertEquals(7, columns.getAge(2));
+            assertEquals(0b01101, columns.getKennelDays(1));
+
+            for (int i = 3; i < 40; i++) {
+                columns.set(i, max);
+            }
+            assertEquals(40, columns.size());
+            assertEquals(1003, columns.getId(39));
+        }
+
+        @Test
+        void runningTotalsFollowOverwrites() {
+            assertEquals(1, columns.countDangerous());
+            bella.setDangerousBreed(true);
+            bella.setNeutered(false);
+            columns.set(1, bella);
+            assertEquals(2, columns.countDangerous());
+            assertEquals(1, columns.countNeutered());
+            assertEquals(5 * 4000, columns.weeklyIncomeCents());
+
+            bella.setKennelDays(0);
+            columns.set(1, bella);
+            assertEquals(2, columns.totalKennelDays());
+            assertEquals(2 * 4000, columns.weeklyIncomeCents());
+        }
+
+        @Test
+        void overwriteAndClear() {
+            columns.set(0, max);
+            assertEquals(1003, columns.getId(0));
+            assertEquals(0, columns.countDangerous());
+            assertEquals(1, columns.countOnDay(0));
+
+            columns.clear();
+            assertEquals(0, columns.size());
+            assertEquals(0, columns.countNeutered());
+            assertEquals(0, columns.totalKennelDays());
+            assertEquals(0, columns.weeklyIncomeCents());
+        }
+
+        @Test
+        void removeMovesLaterRowsDown() {
+            ArrayList<Dog> dogs = new ArrayList<>();
+            columns.clear();
+            for (int i = 0; i < 150; i++) {
+                Dog dog = new Dog(1000 + i, "Dog" + i, i % 3 == 0 ? "Boxer" : "Pug", i % 4 == 0, i % 20,
+                        i % 2 == 0 ? 'M' : 'F', i % 5 == 0);
+                dog.setKennelDays(i % 32);
+                dogs.add(dog);
+                columns.set(i, dog);
+            }
+            for (int index : new int[]{149, 0, 63, 64, 70, 10}) {
+                dogs.remove(index);
+                columns.remove(index);
+            }
+
+            DogColumns rebuilt = new DogColumns();
+            for (int i = 0; i < dogs.size(); i++) {
+                rebuilt.set(i, dogs.get(i));
+                assertEquals(rebuilt.getId(i), columns.getId(i));
+                assertEquals(rebuilt.getKennelDays(i), columns.getKennelDays(i));
+            }
+            assertEquals(rebuilt.size(), columns.size());
+            assertEquals(rebuilt.nameContains("g1"), columns.nameContains("g1"));
+            assertEquals(rebuilt.nameContains("dog12"), columns.nameContains("dog12"));
+            assertEquals(rebuilt.breedContains("box"), columns.breedContains("box"));
+            assertEquals(rebuilt.bySex('F'), columns.bySex('F'));
+            assertEquals(rebuilt.dangerous(), columns.dangerous());
+            assertEquals(rebuilt.neutered(), columns.neutered());
+            for (int day = 0; day < Dog.DAYS_IN_WEEK; day++) {
+                assertEquals(rebuilt.onDay(day), columns.onDay(day));
+            }
+            assertEquals(rebuilt.weeklyIncomeCents(), columns.weeklyIncomeCents());
+            assertEquals(rebuilt.countDangerous(), columns.countDangerous());
+        }
+
+        @Test
+        void searchesFollowManyRemovalsMixedWithChanges() {
+            ArrayList<Dog> dogs = new ArrayList<>();
+            columns.clear();
+            for (int i = 0; i < 400; i++) {
+                dogs.add(new Dog(1000 + i, "Dog" + i, i % 3 == 0 ? "Boxer" : "Pug", false, 1, 'M', false));
+                columns.set(i, dogs.get(i));
+            }
+            // enough removals to compact the name index more than once, with rows rewritten and added between
+            Random random = new Random(7);
+            for (int round = 0; round < 200; round++) {
+                int index = random.nextInt(dogs.size());
+                dogs.remove(index);
+                columns.remove(index);
+                if (round % 10 == 0) {
+                    int changed = random.nextInt(dogs.size());
+                    dogs.set(changed, new Dog(2000 + round, "Pup" + round, "Collie", false, 1, 'F', false));
+                    columns.set(changed, dogs.get(changed));
+                    dogs.add(new Dog(3000 + round, "Dog" + round, "Pug", false, 1, 'M', false));
+                    columns.set(dogs.size() - 1, dogs.get(dogs.size() - 1));
+                }
+
+                DogColumns rebuilt = new DogColumns();
+                for (int i = 0; i < dogs.size(); i++) {
+                    rebuilt.set(i, dogs.get(i));
+                }
+                assertEquals(rebuilt.nameContains("g1"), columns.nameContains("g1"));
+                assertEquals(rebuilt.nameContains("dog12"), columns.nameContains("dog12"));
+                assertEquals(rebuilt.nameContains("pup"), columns.nameContains("pup"));
+                assertEquals(rebuilt.nameContains(""), columns.nameContains(""));
+                assertEquals(rebuilt.breedContains("coll"), columns.breedContains("coll"));
+            }
+        }
+    }
+
+    @Nested
+    class Queries {
+        @Test
+        void flags() {
+            BitSet males = columns.bySex('M');
+            assertTrue(males.get(0));
+            assertFalse(males.get(1));
+            assertTrue(males.get(2));
+            assertEquals(1, columns.bySex('F').cardinality());
+            assertTrue(columns.bySex('?').isEmpty());
+            assertEquals(1, columns.countDangerous());
+            assertEquals(2, columns.countNeutered());
+        }
+
+        @Test
+        void attendance() {
+            assertEquals(2, columns.countOnDay(0));
+            assertEquals(0, columns.countOnDay(4));
+            assertEquals(5, columns.totalKennelDays());
+            assertEquals((2 * 40 + 3 * 30) * 100, columns.weeklyIncomeCents());
+
+            assertEquals(3, columns.stayingMoreThan(-1).cardinality());
+            assertEquals(2, columns.stayingMoreThan(1).cardinality());
+            BitSet overTwo = columns.stayingMoreThan(2);
+            assertEquals(1, overTwo.cardinality());
+            assertTrue(overTwo.get(1));
+            assertTrue(columns.stayingMoreThan(5).isEmpty());
+        }
+    }
+}
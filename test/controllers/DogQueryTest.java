@@ -0,0 +1,87 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DogQueryTest {
+    private DayCare dayCare;
+    private Dog buddy, max, bella, rex;
+    private Owner alice, bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = new Owner(101, "Alice", "0871234567");
+        bob = new Owner(102, "Bob", "0877654321");
+
+        buddy = new Dog(1001, "Buddy", "Labrador", false, 3, 'M', true, alice);
+        max = new Dog(1002, "Max", "Beagle", false, 5, 'M', false, bob);
+        bella = new Dog(1003, "Bella", "Labradoodle", false, 2, 'F', true, alice);
+        rex = new Dog(1004, "Rex", "Rottweiler", true, 8, 'M', true, bob);
+        buddy.setDaysInKennel(new boolean[]{true, true, true, false, false});
+        bella.setDaysInKennel(new boolean[]{true, false, false, false, true});
+        rex.setDaysInKennel(new boolean[]{true, true, true, true, false});
+
+        dayCare = new DayCare("Query", 20);
+        dayCare.addDog(buddy);
+        dayCare.addDog(max);
+        dayCare.addDog(bella);
+        dayCare.addDog(rex);
+    }
+
+    @Nested
+    class Filters {
+        @Test
+        void noFiltersReturnsEveryDogInOrder() {
+            assertEquals(List.of(buddy, max, bella, rex), dayCare.query().list());
+            assertEquals("scan", dayCare.query().getAccessPath());
+        }
+
+        @Test
+        void combinedFilters() {
+            assertEquals(List.of(buddy, bella), dayCare.query().breedContains("LABR").neutered(true).list());
+            assertEquals(List.of(buddy), dayCare.query().breedContains("lab").sex('m').list());
+            assertEquals(List.of(rex), dayCare.query().sex('M').ageBetween(6, 20).list());
+            assertEquals(List.of(buddy, rex), dayCare.query().inKennelOn(0b00011).list());
+            assertEquals(List.of(rex), dayCare.query().staysMoreThan(3).neutered(true).list());
+            assertEquals(List.of(bella), dayCare.query().ownedBy(101).sex('F').list());
+            assertEquals(List.of(max, rex), dayCare.query().ownerNameContains("bo").list());
+            assertEquals(1, dayCare.query().ownerNameContains("bob").dangerous(true).count());
+            assertEquals(0, dayCare.query().sex('?').count());
+            assertEquals(0, dayCare.query().ownedBy(999).count());
+        }
+
+        @Test
+        void followsChangesToDogs() {
+            max.setDaysInKennel(0, true);
+            max.setDaysInKennel(1, true);
+            assertEquals(List.of(buddy, max, rex), dayCare.query().inKennelOn(0b00011).list());
+            dayCare.removeDog(1001);
+            assertEquals(List.of(max, rex), dayCare.query().inKennelOn(0b00011).list());
+        }
+    }
+
+    @Nested
+    class Planner {
+        @Test
+        void startsFromMostSelectiveIndex() {
+            DogQuery query = dayCare.query().sex('M').dangerous(true);
+            assertEquals(List.of(rex), query.list());
+            assertEquals("dangerous", query.getAccessPath());
+
+            query = dayCare.query().neutered(true).nameContains("bel");
+            assertEquals(List.of(bella), query.list());
+            assertEquals("name", query.getAccessPath());
+
+            query = dayCare.query().inKennelOn(0b10000).ownedBy(102);
+            assertEquals(0, query.count());
+            assertEquals("day", query.getAccessPath());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdAllocatorTest {
+
+    @Nested
+    class Allocating {
+        private IdAllocator ids;
+
+        @BeforeEach
+        void setUp() {
+            ids = new IdAllocator(100, 109);
+        }
+
+        @Test
+        void handsOutEachIdOnceUntilTheRangeIsUsedUp() {
+            for (int id = 100; id <= 109; id++) {
+                assertEquals(id, ids.next());
+            }
+            assertEquals(-1, ids.next());
+            assertEquals(110, ids.peek());
+        }
+
+        @Test
+        void reservesBlocks() {
+            IdAllocator.Block block = ids.reserve(4);
+            assertEquals(4, block.remaining());
+            assertEquals(104, ids.next());
+            assertEquals(100, block.next());
+            assertEquals(101, block.next());
+
+            IdAllocator.Block rest = ids.reserve(10);
+            assertEquals(5, rest.remaining());
+            assertEquals(105, rest.next());
+            assertFalse(ids.reserve(1).hasNext());
+            assertEquals(-1, ids.reserve(1).next());
+        }
+
+        @Test
+        void advancesButNeverGoesBack() {
+            ids.advanceTo(105);
+            assertEquals(105, ids.next());
+            ids.advanceTo(101);
+            assertEquals(106, ids.next());
+        }
+
+        @Test
+        void threadsNeverGetTheSameId() throws InterruptedException {
+            IdAllocator shared = new IdAllocator(0, Integer.MAX_VALUE - 1);
+            List<Integer> taken = Collections.synchronizedList(new ArrayList<>());
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    ArrayList<Integer> mine = new ArrayList<>();
+                    for (int i = 0; i < 5000; i++) {
+                        if (thread % 2 == 0) {
+                            mine.add(shared.next());
+                        } else if (i % 50 == 0) {
+                            IdAllocator.Block block = shared.reserve(50);
+                            while (block.hasNext()) mine.add(block.next());
+                        }
+                    }
+                    taken.addAll(mine);
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(20000, taken.size());
+            assertEquals(20000, new HashSet<>(taken).size());
+            assertEquals(20000, shared.peek());
+        }
+    }
+
+    @Nested
+    class InTheDayCare {
+        private Path snapshot;
+        private DayCare dayCare;
+        private Owner alice;
+
+        @BeforeEach
+        void setUp() throws Exception {
+            Path directory = Files.createTempDirectory("ids");
+            directory.toFile().deleteOnExit();
+            snapshot = directory.resolve("daycare.dat");
+
+            alice = new Owner(101, "Alice", "0871234567");
+            dayCare = new DayCare("Paws", 30);
+            dayCare.addDog(new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice));
+        }
+
+        @Test
+        void idsInUseAreNeverHandedOut() {
+            assertEquals(1002, dayCare.getDogIDs().next());
+            assertEquals(102, dayCare.getOwnerIDs().next());
+
+            dayCare.addDog(new Dog(1010, "Max", "Beagle", false, 5, 'M', true, alice));
+            assertEquals(1011, dayCare.getDogIDs().next());
+        }
+
+        @Test
+        void failedAddsDoNotTakeIds() {
+            assertFalse(dayCare.addOwner(alice, 1001));
+            assertFalse(dayCare.addOwner(new Owner(150, "Bob", "0877654321"), 9999));
+            assertEquals(102, dayCare.getOwnerAutoID());
+        }
+
+        @Test
+        void reservedIdsStayTakenAfterReopening() throws Exception {
+            dayCare.save(snapshot.toString());
+            dayCare.open(snapshot.toString());
+            IdAllocator.Block block = dayCare.getDogIDs().reserve(20);
+            dayCare.addDog(new Dog(block.next(), "Max", "Beagle", false, 5, 'M', true, alice));
+            dayCare.save();
+            dayCare.close();
+
+            DayCare reopened = new DayCare();
+            reopened.open(snapshot.toString());
+            reopened.close();
+            assertEquals(1022, reopened.getDogIDs().next());
+        }
+
+        @Test
+        void reopeningNeverMovesTheCounterBack() throws Exception {
+            dayCare.save(snapshot.toString());
+            IdAllocator ids = dayCare.getDogIDs();
+            int taken = ids.next();
+
+            dayCare.open(snapshot.toString());
+            dayCare.close();
+            assertSame(ids, dayCare.getDogIDs());
+            assertTrue(ids.next() > taken);
+        }
+
+        @Test
+        void loadingMovesPastIdsTheFileLagsBehind() {
+            ArrayList<Dog> dogs = new ArrayList<>();
+            dogs.add(new Dog(1003, "Rex", "Boxer", true, 4, 'M', false, new Owner(104, "Alice", "0871234567")));
+
+            DayCare loaded = new DayCare();
+            loaded.restore("Paws", 30, dogs, 1000, 100);
+            assertEquals(1004, loaded.getDogIDs().next());
+            assertEquals(105, loaded.getOwnerIDs().next());
+        }
+    }
+}
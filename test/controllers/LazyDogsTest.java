@@ -0,0 +1,104 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyDogsTest {
+    private Path snapshot;
+    private DayCare saved, lazy;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path directory = Files.createTempDirectory("lazy");
+        directory.toFile().deleteOnExit();
+        snapshot = directory.resolve("daycare.dat");
+
+        Owner alice = new Owner(101, "Alice", "0871234567");
+        Dog rex = new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice);
+        Dog bella = new Dog(1002, "Bella", "Poodle", false, 2, 'F', true, alice);
+        Dog max = new Dog(1003, "Max", "Beagle", false, 5, 'M', true, new Owner(102, "Bob", "0877654321"));
+        rex.setKennelDays(0b10011);
+        bella.setKennelDays(0b00110);
+
+        saved = new DayCare("Paws", 30);
+        saved.addDog(rex);
+        saved.addDog(bella);
+        saved.addDog(max);
+        saved.save(snapshot.toString());
+
+        lazy = new DayCare();
+        lazy.openLazily(snapshot.toString());
+    }
+
+    @Test
+    void countsAndLookupsComeFromTheIndex() {
+        assertEquals("Paws", lazy.getName());
+        assertEquals(3, lazy.numberOfDogs());
+        assertEquals(1, lazy.numberOfDangerousDogs());
+        assertEquals(2, lazy.numberOfNeuteredDogs());
+        assertEquals(saved.getWeeklyIncomeInCents(), lazy.getWeeklyIncomeInCents());
+        assertEquals(2, lazy.numberOfDogsOnDay(1));
+        assertEquals(5, lazy.totalKennelDays());
+
+        assertEquals(saved.getDogByID(1002), lazy.getDogByID(1002));
+        assertEquals(saved.getDogByIndex(2), lazy.getDogByIndex(2));
+        assertNull(lazy.getDogByID(1004));
+        assertSame(lazy.getDogByID(1001), lazy.getDog(0));
+        assertFalse(lazy.isFullyLoaded());
+    }
+
+    @Test
+    void otherMethodsLoadInFull() {
+        Dog rex = lazy.getDogByID(1001);
+        assertEquals(saved.listAllDogs(), lazy.listAllDogs());
+        assertTrue(lazy.isFullyLoaded());
+        assertSame(rex, lazy.getDogsArray().get(0));
+        assertEquals(saved.getDogsArray(), lazy.getDogsArray());
+        assertEquals(2, lazy.getDogsByOwnerID(101).size());
+    }
+
+    @Test
+    void changesToHandedOutDogsAreKept() throws Exception {
+        lazy.getDogByID(1002).setAge(9);
+        assertTrue(lazy.isFullyLoaded());
+        assertEquals(9, lazy.getDogByID(1002).getAge());
+        lazy.save();
+        lazy.close();
+
+        DayCare reopened = new DayCare();
+        reopened.open(snapshot.toString());
+        reopened.close();
+        assertEquals(9, reopened.getDogByID(1002).getAge());
+        assertEquals(3, reopened.numberOfDogs());
+    }
+
+    @Test
+    void idChangesToHandedOutDogsAreKept() {
+        Dog bella = lazy.getDogByID(1002);
+        bella.setId(1020);
+        assertTrue(lazy.isFullyLoaded());
+        assertSame(bella, lazy.getDogByID(1020));
+        assertNull(lazy.getDogByID(1002));
+        assertEquals(3, lazy.numberOfDogs());
+    }
+
+    @Test
+    void pendingJournalOpensInFull() throws Exception {
+        lazy.removeDog(1003);
+        lazy.save();
+        lazy.close();
+
+        DayCare reopened = new DayCare();
+        reopened.openLazily(snapshot.toString());
+        reopened.close();
+        assertTrue(reopened.isFullyLoaded());
+        assertEquals(2, reopened.numberOfDogs());
+    }
+}
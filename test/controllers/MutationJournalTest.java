@@ -0,0 +1,154 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutationJournalTest {
+    private Path snapshot;
+    private DayCare dayCare;
+    private Dog rex, bella;
+    private Owner alice;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        directory.toFile().deleteOnExit();
+        snapshot = directory.resolve("daycare.dat");
+
+        alice = new Owner(101, "Alice", "0871234567");
+        rex = new Dog(1001, "Rex", "Boxer", true, 4, 'M', false, alice);
+        bella = new Dog(1002, "Bella", "Poodle", false, 2, 'F', true, alice);
+
+        dayCare = new DayCare("Paws", 30);
+        dayCare.addDog(rex);
+        dayCare.save(snapshot.toString());
+        dayCare.open(snapshot.toString());
+    }
+
+    private DayCare reopen() throws Exception {
+        DayCare reopened = new DayCare();
+        reopened.open(snapshot.toString());
+        reopened.close();
+        return reopened;
+    }
+
+    @Test
+    void saveAppendsOnlyTheChanges() throws Exception {
+        long snapshotSize = Files.size(snapshot);
+        dayCare.addDog(bella);
+        dayCare.getDogByID(1001).setDaysInKennel(2, true);
+        dayCare.updateOwner(1002, 101, new Owner(101, "Alicia", "0870000000"));
+        dayCare.setName("Claws");
+        dayCare.save();
+
+        assertEquals(snapshotSize, Files.size(snapshot));
+        assertEquals(1, MutationJournal.journalFiles(snapshot).size());
+
+        DayCare reopened = reopen();
+        assertEquals("Claws", reopened.getName());
+        assertEquals(dayCare.getDogsArray(), reopened.getDogsArray());
+        assertEquals(0b00100, reopened.getDogByID(1001).getKennelDays());
+        assertEquals("Alicia", reopened.getOwner(101).getName());
+        assertEquals(dayCare.getDogAutoID(), reopened.getDogAutoID());
+    }
+
+    @Test
+    void journalsChangesMadeOnOwners() throws Exception {
+        dayCare.getOwner(101).setName("Alicia");
+        dayCare.save();
+
+        DayCare reopened = reopen();
+        assertEquals("Alicia", reopened.getOwner(101).getName());
+        assertEquals(1, reopened.searchDogsByOwnerName("licia").size());
+    }
+
+    @Test
+    void journalsDogsWithoutABreed() throws Exception {
+        dayCare.getDogByID(1001).setBreed(null);
+        dayCare.addDog(new Dog(1003, "Max", null, false, 5, 'M', true, alice));
+        dayCare.save();
+        dayCare.getDogByID(1003).setAge(6);
+        dayCare.save();
+
+        DayCare reopened = reopen();
+        assertEquals("", reopened.getDogByID(1001).getBreed());
+        assertEquals(6, reopened.getDogByID(1003).getAge());
+        assertEquals("Max", reopened.getDogByID(1003).getName());
+    }
+
+    @Test
+    void unsavedChangesAreDropped() throws Exception {
+        dayCare.removeDog(1001);
+        dayCare.close();
+        assertEquals(1, reopen().numberOfDogs());
+    }
+
+    @Test
+    void tornRecordEndsReplay() throws Exception {
+        dayCare.addDog(bella);
+        dayCare.save();
+        dayCare.removeDog(1001);
+        dayCare.save();
+        dayCare.close();
+
+        Path journal = MutationJournal.journalFiles(snapshot).lastEntry().getValue();
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 2));
+
+        DayCare reopened = reopen();
+        assertEquals(2, reopened.numberOfDogs());
+        assertNotNull(reopened.getDogByID(1001));
+    }
+
+    @Test
+    void compactionFoldsTheJournalIntoANewSnapshot() throws Exception {
+        dayCare.setJournalCompactionThreshold(0);
+        dayCare.addDog(bella);
+        dayCare.save();
+        bella.setNeutered(false);
+        dayCare.save();
+        dayCare.close();
+
+        assertEquals(1, MutationJournal.journalFiles(snapshot).size());
+        DayCare reopened = reopen();
+        assertEquals(2, reopened.numberOfDogs());
+        assertFalse(reopened.getDogByID(1002).isNeutered());
+    }
+
+    @Test
+    void fullSaveRestartsTheJournal() throws Exception {
+        dayCare.addDog(bella);
+        dayCare.save();
+        dayCare.save(snapshot.toString());
+        bella.setAge(9);
+        dayCare.save();
+        dayCare.close();
+
+        assertEquals(1, MutationJournal.journalFiles(snapshot).size());
+        assertEquals(9, reopen().getDogByID(1002).getAge());
+    }
+
+    @Test
+    void asyncSaveToTheSnapshotCompactsInTheBackground() throws Exception {
+        dayCare.addDog(bella);
+        CompletableFuture<Void> done = dayCare.saveAsync(snapshot.toString());
+        dayCare.getDogByID(1002).setAge(9);
+        dayCare.save();
+        done.get();
+        dayCare.close();
+
+        assertEquals(1, MutationJournal.journalFiles(snapshot).size());
+        DayCare reopened = reopen();
+        assertEquals(2, reopened.numberOfDogs());
+        assertEquals(9, reopened.getDogByID(1002).getAge());
+    }
+}
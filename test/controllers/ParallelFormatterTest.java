@@ -0,0 +1,66 @@
+package controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelFormatterTest {
+
+    private static String format(int count, int threshold) throws Exception {
+        StringBuilder out = new StringBuilder();
+        ParallelFormatter.writeRows(count, threshold, (i, row) -> row.append(i).append(','), out);
+        return out.toString();
+    }
+
+    @Test
+    void sameTextWhateverTheThreshold() throws Exception {
+        String sequential = format(10_000, Integer.MAX_VALUE);
+        assertTrue(sequential.startsWith("0,1,2,"));
+        assertTrue(sequential.endsWith(",9999,"));
+
+        assertEquals(sequential, format(10_000, 1));
+        assertEquals(sequential, format(10_000, 7));
+        assertEquals(sequential, format(10_000, 4096));
+    }
+
+    @Test
+    void writesChunksBeforeTheLastIsFormatted() throws Exception {
+        AtomicInteger formatted = new AtomicInteger();
+        int[] formattedAtFirstWrite = {-1};
+        StringBuilder text = new StringBuilder();
+        Appendable out = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                if (formattedAtFirstWrite[0] < 0) formattedAtFirstWrite[0] = formatted.get();
+                text.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        };
+
+        ParallelFormatter.writeRows(100_000, 10, (i, row) -> {
+            formatted.incrementAndGet();
+            row.append(i).append(',');
+        }, out);
+
+        assertEquals(format(100_000, Integer.MAX_VALUE), text.toString());
+        assertTrue(formattedAtFirstWrite[0] > 0 && formattedAtFirstWrite[0] < 10_000);
+    }
+
+    @Test
+    void noRows() throws Exception {
+        assertEquals("", format(0, 1));
+        assertEquals("", format(0, 100));
+    }
+}
@@ -0,0 +1,65 @@
+package controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaveQueueTest {
+    private ArrayDeque<Runnable> tasks;
+    private SaveQueue queue;
+    private List<String> written;
+
+    @BeforeEach
+    void setUp() {
+        tasks = new ArrayDeque<>();
+        queue = new SaveQueue(tasks::add);
+        written = new ArrayList<>();
+    }
+
+    private void runAll() {
+        while (!tasks.isEmpty()) tasks.poll().run();
+    }
+
+    @Test
+    void waitingRequestsForAFileAreCoalesced() {
+        CompletableFuture<Void> first = queue.submit(Path.of("a"), () -> written.add("a1"));
+        CompletableFuture<Void> second = queue.submit(Path.of("a"), () -> written.add("a2"));
+        queue.submit(Path.of("b"), () -> written.add("b1"));
+
+        assertSame(first, second);
+        runAll();
+        assertEquals(List.of("a2", "b1"), written);
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    void requestsAfterAWriteHasStartedWriteAgain() {
+        CompletableFuture<Void> first = queue.submit(Path.of("a"), () -> written.add("a1"));
+        tasks.poll().run();
+        CompletableFuture<Void> second = queue.submit(Path.of("a"), () -> written.add("a2"));
+
+        assertNotSame(first, second);
+        runAll();
+        assertEquals(List.of("a1", "a2"), written);
+    }
+
+    @Test
+    void failuresCompleteTheFuture() {
+        CompletableFuture<Void> done = queue.submit(Path.of("a"), () -> {
+            throw new IOException("disk full");
+        });
+        runAll();
+        ExecutionException e = assertThrows(ExecutionException.class, done::get);
+        assertTrue(e.getCause() instanceof IOException);
+        queue.awaitIdle();
+    }
+}
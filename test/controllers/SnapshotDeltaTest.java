@@ -0,0 +1,123 @@
+package controllers;
+
+import models.Dog;
+import models.Owner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotDeltaTest {
+    private Path snapshot;
+    private Path diff;
+    private DayCare dayCare;
+    private Owner alice;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path directory = Files.createTempDirectory("delta");
+        directory.toFile().deleteOnExit();
+        snapshot = directory.resolve("daycare.dat");
+        diff = SnapshotDelta.fileFor(snapshot.toAbsolutePath());
+
+        alice = new Owner(101, "Alice", "0871234567");
+        dayCare = new DayCare("Paws", 30);
+        for (int i = 0; i < 10; i++) {
+            dayCare.addDog(new Dog(1001 + i, "Dog" + i, "Boxer", false, 3, 'M', false, alice));
+        }
+    }
+
+    private DayCare reload() throws Exception {
+        DayCare loaded = new DayCare();
+        loaded.load(snapshot.toString());
+        return loaded;
+    }
+
+    @Test
+    void firstDeltaSaveWritesTheBase() throws Exception {
+        dayCare.saveDelta(snapshot.toString());
+        assertTrue(Files.exists(snapshot));
+        assertTrue(Files.exists(diff));
+        assertEquals(dayCare.getDogsArray(), reload().getDogsArray());
+    }
+
+    @Test
+    void onlyChangedDogsGoToTheDiff() throws Exception {
+        dayCare.saveDelta(snapshot.toString());
+        long baseSize = Files.size(snapshot);
+        long emptyDiff = Files.size(diff);
+
+        dayCare.getDogByID(1003).setAge(9);
+        dayCare.removeDog(1005);
+        dayCare.addDog(new Dog(1011, "Newbie", "Pug", false, 1, 'F', true, alice));
+        dayCare.updateDog(1008, new Dog(1008, "Renamed", "Beagle", false, 2, 'F', false, alice));
+        dayCare.setName("Paws+Claws");
+        dayCare.saveDelta(snapshot.toString());
+
+        assertEquals(baseSize, Files.size(snapshot));
+        assertTrue(Files.size(diff) > emptyDiff);
+
+        DayCare loaded = reload();
+        assertEquals(dayCare.getDogsArray(), loaded.getDogsArray());
+        assertEquals("Paws+Claws", loaded.getName());
+        assertEquals(dayCare.getDogAutoID(), loaded.getDogAutoID());
+    }
+
+    @Test
+    void ownerChangesMarkTheirDogs() throws Exception {
+        dayCare.saveDelta(snapshot.toString());
+        dayCare.updateOwner(1001, 101, new Owner(101, "Alicia", "0871234567"));
+        // every dog shares the owner, which is more than half the base, so the base is rewritten
+        dayCare.saveDelta(snapshot.toString());
+        assertEquals("Alicia", reload().getDogByID(1010).getOwners().get(0).getName());
+    }
+
+    @Test
+    void ownerMergesMarkTheirDogs() throws Exception {
+        dayCare.addDog(new Dog(1011, "Max", "Beagle", false, 5, 'M', true, new Owner(102, "Bob", "0877654321")));
+        dayCare.saveDelta(snapshot.toString());
+        long baseSize = Files.size(snapshot);
+
+        // Bob takes Alice's ID, so Max is given Alice, the owner already registered under it
+        dayCare.getOwner(102).setId(101);
+        dayCare.saveDelta(snapshot.toString());
+        assertEquals(baseSize, Files.size(snapshot));
+
+        Owner owner = reload().getDogByID(1011).getOwners().get(0);
+        assertEquals(101, owner.getId());
+        assertEquals("Alice", owner.getName());
+    }
+
+    @Test
+    void changesLoadedFromTheDiffStayInIt() throws Exception {
+        dayCare.saveDelta(snapshot.toString());
+        dayCare.getDogByID(1002).setBreed("Collie");
+        dayCare.saveDelta(snapshot.toString());
+
+        DayCare loaded = reload();
+        loaded.getDogByID(1004).setBreed("Husky");
+        loaded.saveDelta(snapshot.toString());
+
+        DayCare again = reload();
+        assertEquals("Collie", again.getDogByID(1002).getBreed());
+        assertEquals("Husky", again.getDogByID(1004).getBreed());
+    }
+
+    @Test
+    void diffForAnotherBaseIsIgnored() throws Exception {
+        dayCare.saveDelta(snapshot.toString());
+        dayCare.getDogByID(1002).setBreed("Collie");
+        dayCare.saveDelta(snapshot.toString());
+        byte[] staleDiff = Files.readAllBytes(diff);
+
+        dayCare.getDogByID(1002).setBreed("Poodle");
+        dayCare.save(snapshot.toString());
+        assertFalse(Files.exists(diff));
+        Files.write(diff, staleDiff);
+
+        assertEquals("Poodle", reload().getDogByID(1002).getBreed());
+    }
+}
@@ -41,6 +41,18 @@ class DogTest {
 
             assertEquals(mairead, boda.getOwners().get(0));
         }
+
+        @Test
+        void testCopyConstructor() {
+            buddy.setKennelDays(0b10101);
+            Dog copy = new Dog(buddy);
+            assertEquals(buddy, copy);
+            assertEquals(0b10101, copy.getKennelDays());
+            assertSame(siobhan, copy.getOwners().get(0));
+
+            copy.removeOwner(555);
+            assertEquals(1, buddy.getNumOwners());
+        }
     }
     @Nested
     class Setters {
@@ -165,6 +177,15 @@ class DogTest {
                 else assertTrue(buddy.getDaysInKennel()[i]);
             }
         }
+
+        @Test
+        void settersCountChanges() {
+            long version = buddy.getVersion();
+            buddy.setAge(13);
+            assertEquals(version + 1, buddy.getVersion());
+            buddy.setAge(99); // rejected
+            assertEquals(version + 1, buddy.getVersion());
+        }
     }
 
     @Nested
@@ -202,6 +223,18 @@ class DogTest {
             buddy.setDaysInKennel(5, true);
             assertFalse(buddy.isInKennel(5));
         }
+
+        @Test
+        void getKennelDays() {
+            assertEquals(0, buddy.getKennelDays());
+            buddy.setDaysInKennel(new boolean[]{true, false, true, false, false});
+            assertEquals(0b00101, buddy.getKennelDays());
+            assertEquals(2, buddy.numOfDaysInKennel());
+            buddy.setKennelDays(0b111111); // only Monday to Friday are kept
+            assertEquals(Dog.ALL_DAYS_MASK, buddy.getKennelDays());
+            assertEquals(5, buddy.numOfDaysInKennel());
+            assertTrue(buddy.getDaysInKennelByIndex(4));
+        }
     }
     @Nested
     class Owners{
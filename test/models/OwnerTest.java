@@ -64,6 +64,14 @@ class OwnerTest {
             dOwner1.setPhoneNumber("error");
             assertEquals("1234567890", dOwner1.getPhoneNumber());
         }
+
+        @Test
+        void settersCountChanges() {
+            long version = dOwner1.getVersion();
+            dOwner1.setName("Mary");
+            dOwner1.setPhoneNumber("error"); // rejected
+            assertEquals(version + 1, dOwner1.getVersion());
+        }
     }
     @Nested
     class toString {